@@ -22,40 +22,96 @@
  */
 package org.cubeengine.i18n;
 
+import org.cubeengine.i18n.fallback.BaseLocaleFallback;
+import org.cubeengine.i18n.fallback.FallbackStrategy;
 import org.cubeengine.i18n.language.ClonedLanguage;
 import org.cubeengine.i18n.language.DefinitionLoadingException;
 import org.cubeengine.i18n.language.Language;
+import org.cubeengine.i18n.language.LanguageDefinition;
 import org.cubeengine.i18n.language.LanguageLoader;
+import org.cubeengine.i18n.language.NormalLanguage;
 import org.cubeengine.i18n.language.SourceLanguage;
+import org.cubeengine.i18n.plural.PluralOperands;
+import org.cubeengine.i18n.translation.SymbolTable;
+import org.cubeengine.i18n.translation.TranslationContainer;
 import org.cubeengine.i18n.translation.TranslationLoader;
 import org.cubeengine.i18n.translation.TranslationLoadingException;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class I18nService
 {
+    /**
+     * The default number of locales remembered by the fallback chain cache and the negative cache,
+     * see {@link #setLocaleCacheCapacity(int)}
+     */
+    public static final int DEFAULT_LOCALE_CACHE_CAPACITY = 1024;
+
     private final SourceLanguage sourceLanguage;
     private final TranslationLoader tLoader;
     private final LanguageLoader lLoader;
+    private final SymbolTable symbolTable = new SymbolTable();
+    private final MessageKeyRegistry messageKeys = new MessageKeyRegistry();
     private final Locale defaultLocale;
 
-    private final Map<Locale, Language> languages = new HashMap<Locale, Language>();
+    private final ConcurrentMap<Locale, Language> languages = new ConcurrentHashMap<Locale, Language>();
+    private final ConcurrentMap<Locale, LanguageLoad> loading = new ConcurrentHashMap<Locale, LanguageLoad>();
+    /**
+     * The load each thread is waiting for, to detect languages waiting for each other across threads
+     */
+    private final ConcurrentMap<Thread, LanguageLoad> waiting = new ConcurrentHashMap<Thread, LanguageLoad>();
+    private final ConcurrentMap<Locale, FallbackChain> fallbackChains = new ConcurrentHashMap<Locale, FallbackChain>();
+    private volatile FallbackStrategy fallbackStrategy = new BaseLocaleFallback();
+    private volatile boolean flattening = false;
+    private volatile boolean freezing = false;
+    private volatile boolean fingerprinting = false;
+    private volatile boolean deltaEncoding = false;
+    private volatile int pluralTableSize = 0;
+    private volatile Executor executor = ForkJoinPool.commonPool();
+    private final ConcurrentMap<Locale, CompletableFuture<Language>> asyncLoads = new ConcurrentHashMap<Locale, CompletableFuture<Language>>();
+    private volatile boolean nonBlocking = false;
+
+    private final ConcurrentMap<Locale, NegativeEntry> negativeCache = new ConcurrentHashMap<Locale, NegativeEntry>();
+    private final AtomicLong negativeCacheHits = new AtomicLong();
+    private volatile long negativeCacheTtl = TimeUnit.SECONDS.toNanos(30);
+    private volatile long negativeCacheMaxTtl = TimeUnit.MINUTES.toNanos(30);
+    private volatile long negativeCacheSweptAt = System.nanoTime();
+    private volatile int localeCacheCapacity = DEFAULT_LOCALE_CACHE_CAPACITY;
 
     private I18nService.TranslateFunction translateSingle = new I18nService.TranslateFunction()
     {
-        public String translate(Language input, int n, String singular, String plural)
+        public String translate(Language input, long n, int scale, String singular, String plural)
         {
             return input.getTranslation(singular);
         }
     };
     private I18nService.TranslateFunction translatePlural = new I18nService.TranslateFunction()
     {
-        public String translate(Language input, int n, String singular, String plural)
+        public String translate(Language input, long n, int scale, String singular, String plural)
         {
-            return input.getTranslation(singular, plural, n);
+            return input.getTranslation(singular, plural, n, scale);
         }
     };
 
@@ -79,6 +135,26 @@ public class I18nService
         return tLoader;
     }
 
+    /**
+     * Returns the symbol table interning the messages of all languages loaded by this service
+     *
+     * @return the symbol table
+     */
+    public SymbolTable getSymbolTable()
+    {
+        return this.symbolTable;
+    }
+
+    /**
+     * Returns the registry of the message keys of this service, see {@link #key(String, String)}
+     *
+     * @return the registry
+     */
+    public MessageKeyRegistry getMessageKeys()
+    {
+        return this.messageKeys;
+    }
+
     public final LanguageLoader getLanguageLoader()
     {
         return lLoader;
@@ -89,7 +165,406 @@ public class I18nService
         return defaultLocale;
     }
 
+    public FallbackStrategy getFallbackStrategy()
+    {
+        return fallbackStrategy;
+    }
+
+    /**
+     * Sets the strategy deciding which locales are tried when a locale has no translation for a message.
+     * The default strategy falls back to the base locale of the language.
+     *
+     * @param fallbackStrategy the strategy
+     */
+    public void setFallbackStrategy(FallbackStrategy fallbackStrategy)
+    {
+        if (fallbackStrategy == null)
+        {
+            throw new IllegalArgumentException("The fallback strategy must not be null!");
+        }
+        this.fallbackStrategy = fallbackStrategy;
+        this.fallbackChains.clear();
+    }
+
+    public boolean isFlattening()
+    {
+        return flattening;
+    }
+
+    /**
+     * Enables or disables flattening: every loaded language gets a single table with the translations
+     * of its parents folded in, see {@link NormalLanguage#flatten()}.
+     *
+     * @param flattening whether languages are flattened
+     */
+    public void setFlattening(boolean flattening)
+    {
+        this.flattening = flattening;
+        if (flattening)
+        {
+            this.flattenLanguages();
+        }
+        else
+        {
+            for (Language language : this.languages.values())
+            {
+                if (language instanceof NormalLanguage)
+                {
+                    ((NormalLanguage)language).unflatten();
+                }
+            }
+        }
+    }
+
+    public boolean isFreezing()
+    {
+        return freezing;
+    }
+
+    /**
+     * Enables or disables freezing: the translations of languages loaded afterwards are packed
+     * into immutable containers, see {@link org.cubeengine.i18n.translation.FrozenTranslationContainer}.
+     *
+     * @param freezing whether loaded translations are frozen
+     */
+    public void setFreezing(boolean freezing)
+    {
+        this.freezing = freezing;
+    }
+
+    public boolean isFingerprinting()
+    {
+        return fingerprinting;
+    }
+
+    /**
+     * Enables or disables fingerprinting: the translations of languages loaded afterwards keep a fingerprint
+     * of each message instead of the message, see {@link org.cubeengine.i18n.translation.FingerprintTranslationContainer}.
+     * Their messages are not interned in the symbol table, so they can be collected after loading.
+     * Fingerprinted languages are not flattened and stop the flattening of their children.
+     *
+     * @param fingerprinting whether loaded translations are fingerprinted
+     */
+    public void setFingerprinting(boolean fingerprinting)
+    {
+        this.fingerprinting = fingerprinting;
+    }
+
+    public boolean isDeltaEncoding()
+    {
+        return deltaEncoding;
+    }
+
+    /**
+     * Enables or disables delta encoding: languages loaded afterwards only keep the translations
+     * that differ from the ones of their parent, the others are answered by the parent.
+     * Regional variants like de_AT of de_DE then only retain their differences.
+     * Flattening folds the parents back in, so languages loaded while flattening is enabled are not delta encoded.
+     *
+     * @param deltaEncoding whether loaded languages only keep their differences to their parent
+     */
+    public void setDeltaEncoding(boolean deltaEncoding)
+    {
+        this.deltaEncoding = deltaEncoding;
+    }
+
+    public int getPluralTableSize()
+    {
+        return pluralTableSize;
+    }
+
+    /**
+     * Sets for how many counts, starting at 0, the plural forms of languages loaded afterwards are precomputed,
+     * see {@link org.cubeengine.i18n.plural.LookupTableExpr}, e.g. 1001 covers the counts 0 to 1000.
+     * The tables are disabled by default and with 0. Building a table validates the plural expression,
+     * a language whose expression fails for a count in the table fails to load.
+     *
+     * @param pluralTableSize the number of counts
+     */
+    public void setPluralTableSize(int pluralTableSize)
+    {
+        if (pluralTableSize < 0)
+        {
+            throw new IllegalArgumentException("The plural table size must not be negative!");
+        }
+        this.pluralTableSize = pluralTableSize;
+    }
+
+    /**
+     * Flattens all loaded languages again, e.g. after translations were reloaded.
+     *
+     * @return the number of entries taken from parents
+     */
+    public int flattenLanguages()
+    {
+        int folded = 0;
+        for (Language language : this.languages.values())
+        {
+            if (language instanceof NormalLanguage)
+            {
+                folded += ((NormalLanguage)language).flatten();
+            }
+        }
+        return folded;
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by the flattened tables of all loaded languages
+     *
+     * @return the estimated size
+     */
+    public long getFlatteningOverhead()
+    {
+        long overhead = 0;
+        for (Language language : this.languages.values())
+        {
+            if (language instanceof NormalLanguage)
+            {
+                overhead += ((NormalLanguage)language).getFlatteningOverhead();
+            }
+        }
+        return overhead;
+    }
+
+    public boolean isNonBlocking()
+    {
+        return nonBlocking;
+    }
+
+    /**
+     * Enables or disables non-blocking translations: instead of loading a missing language on the calling thread
+     * its load is started in the background and the message is translated by the languages of the fallback chain
+     * that are already loaded, ending with the source language. Languages failing to load are skipped.
+     *
+     * @param nonBlocking whether translations never wait for a language to load
+     */
+    public void setNonBlocking(boolean nonBlocking)
+    {
+        this.nonBlocking = nonBlocking;
+    }
+
+    public Executor getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * Sets the executor languages are loaded on in the background, by default the common fork join pool.
+     *
+     * @param executor the executor
+     */
+    public void setExecutor(Executor executor)
+    {
+        if (executor == null)
+        {
+            throw new IllegalArgumentException("The executor must not be null!");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Loads the languages for the given locales in parallel on the {@link #getExecutor() executor}.
+     * The parents and originals of the languages are resolved from their definitions first, so every language
+     * is loaded once and only after the languages it depends on, while independent languages load concurrently.
+     * Each definition is loaded once, the loads reuse the definitions the dependencies were resolved from.
+     * Failures do not fail the returned future but are reported for each locale.
+     *
+     * @param locales the locales to load
+     *
+     * @return a future completed with the report once every load has finished
+     */
+    public CompletableFuture<PreloadReport> preload(Collection<Locale> locales)
+    {
+        if (locales == null)
+        {
+            throw new IllegalArgumentException("The locales must not be null!");
+        }
+        final List<Locale> requested = new ArrayList<Locale>(locales);
+        final Executor executor = this.executor;
+        final PreloadReport report = new PreloadReport();
+        final long start = System.nanoTime();
+        final Map<Locale, LanguageDefinition> definitions = new HashMap<Locale, LanguageDefinition>();
+        return this.discoverDependencies(requested, new LinkedHashMap<Locale, List<Locale>>(), definitions, executor).thenCompose(new Function<Map<Locale, List<Locale>>, CompletableFuture<Void>>()
+        {
+            public CompletableFuture<Void> apply(Map<Locale, List<Locale>> dependencies)
+            {
+                Map<Locale, CompletableFuture<Void>> scheduled = new HashMap<Locale, CompletableFuture<Void>>();
+                for (Locale locale : dependencies.keySet())
+                {
+                    schedulePreload(locale, dependencies, definitions, scheduled, new HashSet<Locale>(), report, executor);
+                }
+                return CompletableFuture.allOf(scheduled.values().toArray(new CompletableFuture[scheduled.size()]));
+            }
+        }).thenApply(new Function<Void, PreloadReport>()
+        {
+            public PreloadReport apply(Void ignored)
+            {
+                report.finished(System.nanoTime() - start);
+                return report;
+            }
+        });
+    }
+
+    /**
+     * Collects the given locales with the parents and originals of their languages that are not loaded yet.
+     * The definitions of the given locales are loaded in parallel, then those of the dependencies they name.
+     *
+     * @param locales      the locales to resolve
+     * @param dependencies the dependencies resolved so far, completed with the given locales
+     * @param definitions  the loaded definitions by locale, completed with those of the given locales
+     * @param executor     the executor loading the definitions
+     *
+     * @return a future completed with the dependencies by locale
+     */
+    private CompletableFuture<Map<Locale, List<Locale>>> discoverDependencies(List<Locale> locales, final Map<Locale, List<Locale>> dependencies,
+                                                                           final Map<Locale, LanguageDefinition> definitions, final Executor executor)
+    {
+        final Map<Locale, CompletableFuture<Locale>> resolving = new LinkedHashMap<Locale, CompletableFuture<Locale>>();
+        final Map<Locale, LanguageDefinition> resolved = new ConcurrentHashMap<Locale, LanguageDefinition>();
+        final Set<Locale> undefined = Collections.newSetFromMap(new ConcurrentHashMap<Locale, Boolean>());
+        for (final Locale locale : locales)
+        {
+            if (locale != null && !dependencies.containsKey(locale) && !resolving.containsKey(locale))
+            {
+                resolving.put(locale, CompletableFuture.supplyAsync(new Supplier<Locale>()
+                {
+                    public Locale get()
+                    {
+                        return resolveDependency(locale, resolved, undefined);
+                    }
+                }, executor));
+            }
+        }
+        if (resolving.isEmpty())
+        {
+            return CompletableFuture.completedFuture(dependencies);
+        }
+        return CompletableFuture.allOf(resolving.values().toArray(new CompletableFuture[resolving.size()]))
+                                .thenCompose(new Function<Void, CompletableFuture<Map<Locale, List<Locale>>>>()
+        {
+            public CompletableFuture<Map<Locale, List<Locale>>> apply(Void ignored)
+            {
+                definitions.putAll(resolved);
+                for (Locale locale : undefined)
+                {
+                    definitions.put(locale, null);
+                }
+                List<Locale> next = new ArrayList<Locale>();
+                for (Map.Entry<Locale, CompletableFuture<Locale>> entry : resolving.entrySet())
+                {
+                    Locale dependency = entry.getValue().join();
+                    if (dependency == null)
+                    {
+                        dependencies.put(entry.getKey(), Collections.<Locale>emptyList());
+                    }
+                    else
+                    {
+                        dependencies.put(entry.getKey(), Collections.singletonList(dependency));
+                        next.add(dependency);
+                    }
+                }
+                return discoverDependencies(next, dependencies, definitions, executor);
+            }
+        });
+    }
+
+    /**
+     * Returns the parent or original the language of a locale depends on.
+     * Locales whose definition cannot be loaded have no dependency, loading them reports the failure.
+     *
+     * @param resolved  the loaded definitions by locale, completed with the definition of the locale
+     * @param undefined the locales without definition, completed with the locale if it has none
+     *
+     * @return the dependency or null if there is none or the language is loaded already
+     */
+    private Locale resolveDependency(Locale locale, Map<Locale, LanguageDefinition> resolved, Set<Locale> undefined)
+    {
+        if (this.languages.containsKey(locale))
+        {
+            return null;
+        }
+        try
+        {
+            LanguageDefinition definition = this.lLoader.loadDefinition(locale);
+            if (definition == null)
+            {
+                undefined.add(locale);
+            }
+            else
+            {
+                resolved.put(locale, definition);
+                return definition.getLocale().equals(locale) ? definition.getParent() : definition.getLocale();
+            }
+        }
+        catch (DefinitionLoadingException ignored)
+        {
+            // reported by the load itself
+        }
+        return null;
+    }
+
+    /**
+     * Schedules the load of a locale once the loads of its dependencies completed.
+     * Cyclic dependencies are not waited for, the load itself detects and reports them.
+     */
+    private CompletableFuture<Void> schedulePreload(final Locale locale, Map<Locale, List<Locale>> dependencies, final Map<Locale, LanguageDefinition> definitions,
+                                                    Map<Locale, CompletableFuture<Void>> scheduled, Set<Locale> visiting, final PreloadReport report, Executor executor)
+    {
+        CompletableFuture<Void> future = scheduled.get(locale);
+        if (future != null)
+        {
+            return future;
+        }
+        visiting.add(locale);
+        List<CompletableFuture<Void>> required = new ArrayList<CompletableFuture<Void>>();
+        for (Locale dependency : dependencies.get(locale))
+        {
+            if (!visiting.contains(dependency))
+            {
+                required.add(schedulePreload(dependency, dependencies, definitions, scheduled, visiting, report, executor));
+            }
+        }
+        visiting.remove(locale);
+
+        future = CompletableFuture.allOf(required.toArray(new CompletableFuture[required.size()])).handleAsync(new BiFunction<Void, Throwable, Void>()
+        {
+            public Void apply(Void ignored, Throwable dependencyFailure)
+            {
+                long start = System.nanoTime();
+                try
+                {
+                    report.loaded(locale, getLanguage(locale, definitions), System.nanoTime() - start);
+                }
+                catch (Exception e)
+                {
+                    report.failed(locale, e, System.nanoTime() - start);
+                }
+                return null;
+            }
+        }, executor);
+        scheduled.put(locale, future);
+        return future;
+    }
+
+    /**
+     * Returns the language for the given locale and loads it if necessary.
+     * Concurrent requests for a locale that is not loaded yet share a single load.
+     *
+     * @param locale the locale
+     *
+     * @return the language or null if there is no language for the locale
+     */
     public Language getLanguage(Locale locale) throws TranslationLoadingException, DefinitionLoadingException
+    {
+        return this.getLanguage(locale, null);
+    }
+
+    /**
+     * Returns the language for the given locale and loads it from an already loaded definition if there is one
+     *
+     * @param definitions the loaded definitions by locale, a locale mapped to null has no definition
+     */
+    private Language getLanguage(Locale locale, Map<Locale, LanguageDefinition> definitions) throws TranslationLoadingException, DefinitionLoadingException
     {
         if (locale == null)
         {
@@ -98,20 +573,364 @@ public class I18nService
         Language result = this.languages.get(locale);
         if (result == null)
         {
-            Language language = this.lLoader.loadLanguage(this, locale);
-            if (language == null)
+            NegativeEntry negative = this.negativeCache.get(locale);
+            if (negative != null && negative.retryAt - System.nanoTime() > 0)
             {
+                this.negativeCacheHits.incrementAndGet();
+                negative.rethrow(locale);
                 return null;
             }
-            result = language;
-            if (result instanceof ClonedLanguage)
+            result = this.loadLanguage(locale, definitions);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the language for the given locale, loading it on the {@link #getExecutor() executor} if necessary.
+     * Concurrent requests for a locale that is not loaded yet share a single future.
+     *
+     * @param locale the locale
+     *
+     * @return a future completed with the language or null if there is no language for the locale
+     */
+    public CompletableFuture<Language> getLanguageAsync(final Locale locale)
+    {
+        if (locale == null)
+        {
+            throw new IllegalArgumentException("The locale must not be null!");
+        }
+        Language loaded = this.languages.get(locale);
+        if (loaded != null)
+        {
+            return CompletableFuture.completedFuture(loaded);
+        }
+        CompletableFuture<Language> future = this.asyncLoads.get(locale);
+        if (future != null)
+        {
+            return future;
+        }
+        final CompletableFuture<Language> load = new CompletableFuture<Language>();
+        future = this.asyncLoads.putIfAbsent(locale, load);
+        if (future != null)
+        {
+            return future;
+        }
+        try
+        {
+            this.executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        load.complete(getLanguage(locale));
+                    }
+                    catch (Throwable t)
+                    {
+                        load.completeExceptionally(t);
+                    }
+                    finally
+                    {
+                        asyncLoads.remove(locale, load);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.asyncLoads.remove(locale, load);
+            load.completeExceptionally(e);
+        }
+        return load;
+    }
+
+    private Language loadLanguage(Locale locale, Map<Locale, LanguageDefinition> definitions) throws TranslationLoadingException, DefinitionLoadingException
+    {
+        LanguageLoad load = new LanguageLoad(locale);
+        LanguageLoad inFlight = this.loading.putIfAbsent(locale, load);
+        if (inFlight != null)
+        {
+            return inFlight.await(this.waiting);
+        }
+        try
+        {
+            // another thread might have finished loading between the cache lookup and claiming the load
+            Language result = this.languages.get(locale);
+            if (result == null)
+            {
+                if (definitions != null && definitions.containsKey(locale))
+                {
+                    result = this.lLoader.loadLanguage(this, locale, definitions.get(locale));
+                }
+                else
+                {
+                    result = this.lLoader.loadLanguage(this, locale);
+                }
+                if (result != null)
+                {
+                    if (result instanceof ClonedLanguage)
+                    {
+                        Language original = ((ClonedLanguage)result).getOriginal();
+                        this.languages.putIfAbsent(original.getLocale(), original);
+                    }
+                    this.languages.put(locale, result);
+                    this.negativeCache.remove(locale);
+                }
+                else
+                {
+                    this.remember(locale, null);
+                }
+            }
+            load.complete(result, null);
+            return result;
+        }
+        catch (TranslationLoadingException e)
+        {
+            this.remember(locale, e);
+            load.complete(null, e);
+            throw e;
+        }
+        catch (DefinitionLoadingException e)
+        {
+            this.remember(locale, e);
+            load.complete(null, e);
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            load.complete(null, e);
+            throw e;
+        }
+        catch (Error e)
+        {
+            load.complete(null, e);
+            throw e;
+        }
+        finally
+        {
+            this.loading.remove(locale, load);
+        }
+    }
+
+    /**
+     * Remembers that the given locale is missing or failed to load, every further failure doubles the time
+     * until the next attempt up to the maximum TTL.
+     */
+    private void remember(Locale locale, Exception failure)
+    {
+        long ttl = this.negativeCacheTtl;
+        if (ttl <= 0)
+        {
+            return;
+        }
+        long now = System.nanoTime();
+        NegativeEntry previous = this.negativeCache.get(locale);
+        int failures = previous == null || previous.forgetAt - now <= 0 ? 1 : previous.failures + 1;
+        long maxTtl = Math.max(ttl, this.negativeCacheMaxTtl);
+        for (int i = 1; i < failures && ttl < maxTtl; i++)
+        {
+            ttl = ttl > maxTtl / 2 ? maxTtl : ttl << 1;
+        }
+        this.negativeCache.put(locale, new NegativeEntry(failures, now + ttl, now + 2 * ttl, failure));
+        if (now - this.negativeCacheSweptAt > this.negativeCacheTtl || this.negativeCache.size() > this.localeCacheCapacity)
+        {
+            this.negativeCacheSweptAt = now;
+            this.sweepNegativeCache(now);
+        }
+    }
+
+    /**
+     * Removes the entries whose backoff is over, an entry is kept for the duration of its backoff after it expired
+     * so another failure within that time doubles the backoff. Afterwards it is trimmed to the capacity.
+     */
+    private void sweepNegativeCache(long now)
+    {
+        for (Iterator<NegativeEntry> it = this.negativeCache.values().iterator(); it.hasNext(); )
+        {
+            if (it.next().forgetAt - now <= 0)
             {
-                Language original = ((ClonedLanguage)result).getOriginal();
-                this.languages.put(original.getLocale(), original);
+                it.remove();
             }
-            this.languages.put(locale, result);
         }
-        return result;
+        trim(this.negativeCache, this.localeCacheCapacity);
+    }
+
+    /**
+     * Removes arbitrary entries until the map holds no more than the capacity
+     */
+    private static void trim(ConcurrentMap<Locale, ?> map, int capacity)
+    {
+        for (Iterator<?> it = map.values().iterator(); map.size() > capacity && it.hasNext(); )
+        {
+            it.next();
+            it.remove();
+        }
+    }
+
+    public int getLocaleCacheCapacity()
+    {
+        return this.localeCacheCapacity;
+    }
+
+    /**
+     * Sets the number of locales the fallback chain cache and the negative cache remember each.
+     * Locales are often taken from requests, e.g. from Accept-Language headers, so both caches are bounded.
+     *
+     * @param localeCacheCapacity the capacity
+     */
+    public void setLocaleCacheCapacity(int localeCacheCapacity)
+    {
+        if (localeCacheCapacity < 1)
+        {
+            throw new IllegalArgumentException("The locale cache capacity must be positive!");
+        }
+        this.localeCacheCapacity = localeCacheCapacity;
+        trim(this.fallbackChains, localeCacheCapacity);
+        trim(this.negativeCache, localeCacheCapacity);
+    }
+
+    /**
+     * Sets how long a missing or failed locale is not attempted again. Each consecutive failure of the same
+     * locale doubles this time up to the maximum TTL. A TTL of 0 disables the negative cache.
+     *
+     * @param duration the duration
+     * @param unit     the unit of the duration
+     */
+    public void setNegativeCacheTtl(long duration, TimeUnit unit)
+    {
+        if (duration < 0)
+        {
+            throw new IllegalArgumentException("The TTL must not be negative!");
+        }
+        this.negativeCacheTtl = unit.toNanos(duration);
+        if (duration == 0)
+        {
+            this.invalidateAll();
+        }
+    }
+
+    /**
+     * Sets the upper bound for the backoff of locales failing repeatedly.
+     *
+     * @param duration the duration
+     * @param unit     the unit of the duration
+     */
+    public void setNegativeCacheMaxTtl(long duration, TimeUnit unit)
+    {
+        if (duration < 0)
+        {
+            throw new IllegalArgumentException("The TTL must not be negative!");
+        }
+        this.negativeCacheMaxTtl = unit.toNanos(duration);
+    }
+
+    /**
+     * Returns how often a language lookup was answered by the negative cache
+     *
+     * @return the number of hits
+     */
+    public long getNegativeCacheHits()
+    {
+        return this.negativeCacheHits.get();
+    }
+
+    /**
+     * Returns the number of locales currently remembered as missing or failed
+     *
+     * @return the number of negative entries
+     */
+    public int getNegativeCacheSize()
+    {
+        return this.negativeCache.size();
+    }
+
+    /**
+     * Forgets that the given locale was missing or failed to load, so the next lookup loads it again.
+     *
+     * @param locale the locale
+     */
+    public void invalidate(Locale locale)
+    {
+        if (locale == null)
+        {
+            throw new IllegalArgumentException("The locale must not be null!");
+        }
+        if (this.negativeCache.remove(locale) != null)
+        {
+            this.fallbackChains.clear();
+        }
+    }
+
+    /**
+     * Forgets all missing or failed locales.
+     */
+    public void invalidateAll()
+    {
+        this.negativeCache.clear();
+        this.fallbackChains.clear();
+    }
+
+    /**
+     * Discards the loaded language of the given locale together with the loaded languages depending on it,
+     * so the next lookup loads them again. Symbols only the discarded languages were keyed by are dropped
+     * from the {@link #getSymbolTable() symbol table}.
+     *
+     * @param locale the locale
+     *
+     * @return the number of discarded languages
+     */
+    public int unload(Locale locale)
+    {
+        if (locale == null)
+        {
+            throw new IllegalArgumentException("The locale must not be null!");
+        }
+        Language unloaded = this.languages.get(locale);
+        if (unloaded == null)
+        {
+            return 0;
+        }
+        if (unloaded == this.sourceLanguage)
+        {
+            throw new IllegalArgumentException("The source language can not be unloaded!");
+        }
+        int count = 0;
+        for (Iterator<Language> it = this.languages.values().iterator(); it.hasNext(); )
+        {
+            if (dependsOn(it.next(), unloaded))
+            {
+                it.remove();
+                count++;
+            }
+        }
+        this.fallbackChains.clear();
+        List<TranslationContainer> loaded = new ArrayList<TranslationContainer>();
+        for (Language language : this.languages.values())
+        {
+            loaded.add(language.getMessages());
+        }
+        this.symbolTable.retainAll(loaded);
+        return count;
+    }
+
+    /**
+     * Checks whether the language is the other language, a clone of it or has it as a parent
+     */
+    private static boolean dependsOn(Language language, Language other)
+    {
+        while (language != null)
+        {
+            if (language == other)
+            {
+                return true;
+            }
+            if (language instanceof ClonedLanguage && dependsOn(((ClonedLanguage)language).getOriginal(), other))
+            {
+                return true;
+            }
+            language = language.getParent();
+        }
+        return false;
     }
 
     public Language getDefaultLanguage() throws TranslationLoadingException, DefinitionLoadingException
@@ -136,7 +955,7 @@ public class I18nService
 
     public String translate(Locale locale, String toTranslate)
     {
-        return translate0(locale, -1, toTranslate, null, translateSingle);
+        return translate0(locale, -1, 0, toTranslate, null, translateSingle);
     }
 
     public String translateN(String singular, String plural, int n)
@@ -146,60 +965,450 @@ public class I18nService
 
     public String translateN(Locale locale, String singular, String plural, int n)
     {
-        return this.translate0(locale, n, singular, plural, translatePlural);
+        return this.translate0(locale, n, 0, singular, plural, translatePlural);
     }
 
-    private String translate0(Locale locale, int n, String singular, String plural, TranslateFunction func)
+    public String translateN(String singular, String plural, long n)
     {
-        try
+        return this.translateN(this.getDefaultLocale(), singular, plural, n);
+    }
+
+    public String translateN(Locale locale, String singular, String plural, long n)
+    {
+        return this.translate0(locale, n, 0, singular, plural, translatePlural);
+    }
+
+    /**
+     * Translates a message for a decimal amount given as an unscaled value and a scale,
+     * e.g. 1.50 is the unscaled value 150 with the scale 2.
+     * The scale is the number of fraction digits shown, as they choose the plural form in some languages.
+     */
+    public String translateN(String singular, String plural, long unscaled, int scale)
+    {
+        return this.translateN(this.getDefaultLocale(), singular, plural, unscaled, scale);
+    }
+
+    public String translateN(Locale locale, String singular, String plural, long unscaled, int scale)
+    {
+        if (scale < 0 || scale > PluralOperands.MAX_SCALE)
+        {
+            throw new IllegalArgumentException("The scale must be between 0 and " + PluralOperands.MAX_SCALE + "!");
+        }
+        return this.translate0(locale, unscaled, scale, singular, plural, translatePlural);
+    }
+
+    /**
+     * Translates a message in a context, like the msgctxt of a PO entry, see {@link Language#getContextTranslation(String, String)}
+     */
+    public String translateInContext(String context, String toTranslate)
+    {
+        return this.translateInContext(this.getDefaultLocale(), context, toTranslate);
+    }
+
+    public String translateInContext(Locale locale, String context, String toTranslate)
+    {
+        for (Language language : this.getFallbackChain(locale))
+        {
+            String translated = language.getContextTranslation(context, toTranslate);
+            if (translated != null)
+            {
+                return translated;
+            }
+        }
+        return null;
+    }
+
+    public String translateNInContext(String context, String singular, String plural, long n)
+    {
+        return this.translateNInContext(this.getDefaultLocale(), context, singular, plural, n);
+    }
+
+    public String translateNInContext(Locale locale, String context, String singular, String plural, long n)
+    {
+        for (Language language : this.getFallbackChain(locale))
+        {
+            String translated = language.getContextTranslation(context, singular, plural, n, 0);
+            if (translated != null)
+            {
+                return translated;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the key of a singular message, translating a kept key avoids hashing the message, see {@link MessageKey}
+     *
+     * @param singular the message
+     *
+     * @return the interned key
+     */
+    public MessageKey key(String singular)
+    {
+        return this.messageKeys.of(singular, null);
+    }
+
+    /**
+     * Returns the key of a message with a plural form, see {@link #key(String)}
+     *
+     * @param singular the message in singular form
+     * @param plural   the message in plural form
+     *
+     * @return the interned key
+     */
+    public MessageKey key(String singular, String plural)
+    {
+        if (plural == null)
         {
-            // Check actual Locale
-            Language language = this.getLanguage(locale);
-            if (language != null)
+            throw new IllegalArgumentException("The plural message must not be null!");
+        }
+        return this.messageKeys.of(singular, plural);
+    }
+
+    public String translate(MessageKey key)
+    {
+        return this.translate(this.getDefaultLocale(), key);
+    }
+
+    public String translate(Locale locale, MessageKey key)
+    {
+        if (key == null)
+        {
+            throw new IllegalArgumentException("The key must not be null!");
+        }
+        for (Language language : this.getFallbackChain(locale))
+        {
+            String translated = language.getTranslation(key);
+            if (translated != null)
             {
-                String translated = func.translate(language, n, singular, plural);
-                if (translated != null)
+                return translated;
+            }
+        }
+        return null;
+    }
+
+    public String translateN(MessageKey key, long n)
+    {
+        return this.translateN(this.getDefaultLocale(), key, n, 0);
+    }
+
+    public String translateN(Locale locale, MessageKey key, long n)
+    {
+        return this.translateN(locale, key, n, 0);
+    }
+
+    public String translateN(MessageKey key, long unscaled, int scale)
+    {
+        return this.translateN(this.getDefaultLocale(), key, unscaled, scale);
+    }
+
+    public String translateN(Locale locale, MessageKey key, long unscaled, int scale)
+    {
+        if (key == null || key.getPlural() == null)
+        {
+            throw new IllegalArgumentException("The key must be a key with a plural message!");
+        }
+        if (scale < 0 || scale > PluralOperands.MAX_SCALE)
+        {
+            throw new IllegalArgumentException("The scale must be between 0 and " + PluralOperands.MAX_SCALE + "!");
+        }
+        for (Language language : this.getFallbackChain(locale))
+        {
+            String translated = language.getTranslation(key, unscaled, scale);
+            if (translated != null)
+            {
+                return translated;
+            }
+        }
+        return null;
+    }
+
+    private String translate0(Locale locale, long n, int scale, String singular, String plural, TranslateFunction func)
+    {
+        for (Language language : this.getFallbackChain(locale))
+        {
+            String translated = func.translate(language, n, scale, singular, plural);
+            if (translated != null)
+            {
+                return translated;
+            }
+        }
+        return null;
+    }
+
+    private Language[] getFallbackChain(Locale locale)
+    {
+        if (locale == null)
+        {
+            throw new IllegalArgumentException("The locale must not be null!");
+        }
+        FallbackChain chain = this.fallbackChains.get(locale);
+        if (chain == null || (chain.expires && chain.expiresAt - System.nanoTime() <= 0))
+        {
+            try
+            {
+                chain = this.buildFallbackChain(locale, !this.nonBlocking);
+            }
+            catch (DefinitionLoadingException e)
+            {
+                throw new TranslationException(e);
+            }
+            catch (TranslationLoadingException e)
+            {
+                throw new TranslationException(e);
+            }
+        }
+        return chain.languages;
+    }
+
+    /**
+     * Resolves the languages to ask for a message requested in the given locale:
+     * the locale itself, its fallbacks, the default locale, its fallbacks and finally the source language.
+     * Without blocking, languages that are not loaded yet are left out and loaded in the background,
+     * such an incomplete chain is not cached.
+     */
+    private FallbackChain buildFallbackChain(Locale locale, boolean blocking) throws TranslationLoadingException, DefinitionLoadingException
+    {
+        FallbackStrategy strategy = this.fallbackStrategy;
+        List<Locale> locales = new ArrayList<Locale>();
+        locales.add(locale);
+        locales.addAll(strategy.getFallbacks(locale));
+        locales.add(this.defaultLocale);
+        locales.addAll(strategy.getFallbacks(this.defaultLocale));
+
+        boolean complete = true;
+        boolean expires = false;
+        long expiresAt = 0;
+        List<Language> chain = new ArrayList<Language>();
+        for (Locale candidate : locales)
+        {
+            Language language;
+            if (blocking)
+            {
+                language = this.getLanguage(candidate);
+            }
+            else
+            {
+                language = this.languages.get(candidate);
+                NegativeEntry negative = this.negativeCache.get(candidate);
+                if (language == null && (negative == null || negative.retryAt - System.nanoTime() <= 0))
                 {
-                    return translated;
+                    this.getLanguageAsync(candidate);
+                    complete = false;
+                    continue;
                 }
             }
-
-            // Check for Base-Locale
-            if (!locale.getLanguage().toUpperCase().equals(locale.getCountry()))
+            if (language == null)
             {
-                Locale baseLocale = new Locale(locale.getLanguage(), locale.getLanguage().toUpperCase());
-                String tranlated = translate0(baseLocale, n, singular, plural, func);
-                if (tranlated != null)
+                // the language might become available once its negative cache entry expires
+                NegativeEntry negative = this.negativeCache.get(candidate);
+                long retryAt = negative == null ? System.nanoTime() : negative.retryAt;
+                if (!expires || retryAt - expiresAt < 0)
                 {
-                    return tranlated;
+                    expiresAt = retryAt;
                 }
+                expires = true;
             }
+            else if (!isCovered(chain, language))
+            {
+                chain.add(language);
+            }
+        }
+        if (!isCovered(chain, this.sourceLanguage))
+        {
+            chain.add(this.sourceLanguage);
+        }
+
+        FallbackChain result = new FallbackChain(chain.toArray(new Language[chain.size()]), expires, expiresAt);
+        if (complete && (!expires || expiresAt - System.nanoTime() > 0))
+        {
+            this.fallbackChains.put(locale, result);
+            if (this.fallbackStrategy != strategy)
+            {
+                this.fallbackChains.remove(locale, result);
+            }
+            if (this.fallbackChains.size() > this.localeCacheCapacity)
+            {
+                trim(this.fallbackChains, this.localeCacheCapacity);
+            }
+        }
+        return result;
+    }
 
-            // Check for Default-Locale
-            if (locale != getDefaultLocale())
+    /**
+     * Checks whether a language is already asked by one of the languages in the chain,
+     * either directly, as an original of a clone or as a parent.
+     */
+    private static boolean isCovered(List<Language> chain, Language language)
+    {
+        for (Language member : chain)
+        {
+            while (member != null)
             {
-                String tranlated = translate0(getDefaultLocale(), n, singular, plural, func);
-                if (tranlated != null)
+                if (member.equals(language))
                 {
-                    return tranlated;
+                    return true;
+                }
+                if (member instanceof ClonedLanguage)
+                {
+                    member = ((ClonedLanguage)member).getOriginal();
+                }
+                else
+                {
+                    member = member.getParent();
                 }
             }
+        }
+        return false;
+    }
 
-            // Fall back to source-language
-            return func.translate(getSourceLanguage(), n, singular, plural);
+    /**
+     * Throws a failure of another thread or an earlier attempt wrapped in an exception of the same kind.
+     */
+    private static void rethrow(Locale locale, Throwable failure) throws TranslationLoadingException, DefinitionLoadingException
+    {
+        if (failure instanceof TranslationLoadingException)
+        {
+            throw new TranslationLoadingException(failure.getMessage(), failure);
         }
-        catch (DefinitionLoadingException e)
+        if (failure instanceof DefinitionLoadingException)
         {
-            throw new TranslationException(e);
+            throw new DefinitionLoadingException(failure.getMessage(), failure);
         }
-        catch (TranslationLoadingException e)
+        if (failure != null)
         {
-            throw new TranslationException(e);
+            throw new TranslationException("Failed to load the language " + locale, failure);
         }
     }
 
     private interface TranslateFunction
     {
-        String translate(Language input, int n, String singular, String plural);
+        String translate(Language input, long n, int scale, String singular, String plural);
+    }
+
+    /**
+     * A load of a single locale that other threads can wait for.
+     * A thread does not wait for a load that is, directly or through the loads other threads wait for,
+     * waiting for a load of this thread, as the loads would never complete.
+     */
+    private static final class LanguageLoad
+    {
+        private final Locale locale;
+        private final Thread owner = Thread.currentThread();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Language result;
+        private Throwable failure;
+
+        private LanguageLoad(Locale locale)
+        {
+            this.locale = locale;
+        }
+
+        private void complete(Language result, Throwable failure)
+        {
+            this.result = result;
+            this.failure = failure;
+            this.done.countDown();
+        }
+
+        private Language await(ConcurrentMap<Thread, LanguageLoad> waiting) throws TranslationLoadingException, DefinitionLoadingException
+        {
+            Thread current = Thread.currentThread();
+            // registered before the check, of two threads starting to wait for each other at least one sees the cycle
+            waiting.put(current, this);
+            try
+            {
+                if (this.isWaitingFor(current, waiting))
+                {
+                    throw new DefinitionLoadingException("The language " + this.locale + " depends on itself!");
+                }
+                this.done.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new DefinitionLoadingException("Interrupted while waiting for the language " + this.locale, e);
+            }
+            finally
+            {
+                waiting.remove(current, this);
+            }
+            rethrow(this.locale, this.failure);
+            return this.result;
+        }
+
+        /**
+         * Follows the owners of this load and of the loads they wait for
+         */
+        private boolean isWaitingFor(Thread thread, ConcurrentMap<Thread, LanguageLoad> waiting)
+        {
+            LanguageLoad load = this;
+            // the chain has at most one load per waiting thread, anything longer is a cycle not involving the thread
+            for (int steps = waiting.size() + 1; load != null && steps > 0; steps--)
+            {
+                if (load.owner == thread)
+                {
+                    return true;
+                }
+                load = waiting.get(load.owner);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A locale that was missing or failed to load and will not be attempted again before {@link #retryAt}.
+     * Only the kind and the message of a failure are kept, not the exception with its stack trace.
+     */
+    private static final class NegativeEntry
+    {
+        private final int failures;
+        private final long retryAt;
+        private final long forgetAt;
+        private final Class<? extends Exception> failureType;
+        private final String failureMessage;
+
+        private NegativeEntry(int failures, long retryAt, long forgetAt, Exception failure)
+        {
+            this.failures = failures;
+            this.retryAt = retryAt;
+            this.forgetAt = forgetAt;
+            this.failureType = failure == null ? null : failure.getClass();
+            this.failureMessage = failure == null ? null : failure.getMessage();
+        }
+
+        /**
+         * Throws an exception of the same kind as the remembered failure, if the locale failed to load
+         */
+        private void rethrow(Locale locale) throws TranslationLoadingException, DefinitionLoadingException
+        {
+            if (this.failureType == null)
+            {
+                return;
+            }
+            if (TranslationLoadingException.class.isAssignableFrom(this.failureType))
+            {
+                throw new TranslationLoadingException(this.failureMessage);
+            }
+            if (DefinitionLoadingException.class.isAssignableFrom(this.failureType))
+            {
+                throw new DefinitionLoadingException(this.failureMessage);
+            }
+            throw new TranslationException("Failed to load the language " + locale + ": " + this.failureMessage);
+        }
+    }
+
+    private static final class FallbackChain
+    {
+        private final Language[] languages;
+        private final boolean expires;
+        private final long expiresAt;
+
+        private FallbackChain(Language[] languages, boolean expires, long expiresAt)
+        {
+            this.languages = languages;
+            this.expires = expires;
+            this.expiresAt = expiresAt;
+        }
     }
 }
@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n;
+
+/**
+ * An interned message with a dense id. Languages cache the translations of keys in arrays indexed by this id,
+ * so translating a key neither hashes nor compares the message. Keys are created by {@link I18nService#key(String, String)}
+ * and meant to be kept, e.g. in static fields, as every key occupies a slot in every language it was translated with.
+ * Ids are unique within the {@link MessageKeyRegistry} of a service, keys created after its capacity is reached
+ * have no id and are translated like their message.
+ */
+public final class MessageKey
+{
+    private final String singular;
+    private final String plural;
+    private final int id;
+    private final MessageKeyRegistry registry;
+
+    MessageKey(String singular, String plural, int id, MessageKeyRegistry registry)
+    {
+        this.singular = singular;
+        this.plural = plural;
+        this.id = id;
+        this.registry = registry;
+    }
+
+    public String getSingular()
+    {
+        return this.singular;
+    }
+
+    /**
+     * Returns the plural message
+     *
+     * @return the plural message or null if this is a singular message
+     */
+    public String getPlural()
+    {
+        return this.plural;
+    }
+
+    /**
+     * Returns the id of this key within its registry
+     *
+     * @return the id or -1 if the key was created after the capacity of the registry was reached
+     */
+    public int getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * Returns the registry this key was created by, ids of keys from different registries are unrelated
+     *
+     * @return the registry
+     */
+    public MessageKeyRegistry getRegistry()
+    {
+        return this.registry;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.plural == null ? this.singular : this.singular + " / " + this.plural;
+    }
+}
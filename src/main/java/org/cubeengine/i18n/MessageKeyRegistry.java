@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Interns the {@link MessageKey}s of a service and hands out their ids. The registry lives as long as its service
+ * and holds at most {@link #getCapacity()} keys, so keys created from dynamic messages can not grow it
+ * or the slots of the languages without bound.
+ */
+public final class MessageKeyRegistry
+{
+    /**
+     * The default number of keys with an id, see {@link #setCapacity(int)}
+     */
+    public static final int DEFAULT_CAPACITY = 16384;
+
+    private final ConcurrentMap<Message, MessageKey> keys = new ConcurrentHashMap<Message, MessageKey>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile int capacity = DEFAULT_CAPACITY;
+
+    MessageKeyRegistry()
+    {
+    }
+
+    MessageKey of(final String singular, final String plural)
+    {
+        if (singular == null)
+        {
+            throw new IllegalArgumentException("The singular message must not be null!");
+        }
+        Message message = new Message(singular, plural);
+        MessageKey key = this.keys.get(message);
+        if (key != null)
+        {
+            return key;
+        }
+        if (this.keys.size() >= this.capacity)
+        {
+            // racing creations might exceed the capacity by the number of racing threads
+            return new MessageKey(singular, plural, -1, this);
+        }
+        return this.keys.computeIfAbsent(message, new Function<Message, MessageKey>()
+        {
+            public MessageKey apply(Message absent)
+            {
+                // ids are only taken by keys that are kept, so they stay dense
+                return new MessageKey(singular, plural, nextId.getAndIncrement(), MessageKeyRegistry.this);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of keys with an id
+     *
+     * @return the number of keys
+     */
+    public int size()
+    {
+        return this.keys.size();
+    }
+
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * Sets the number of keys that get an id. Further keys are not interned and are translated like their message.
+     * Keys that already have an id keep it.
+     *
+     * @param capacity the capacity
+     */
+    public void setCapacity(int capacity)
+    {
+        if (capacity < 0)
+        {
+            throw new IllegalArgumentException("The capacity must not be negative!");
+        }
+        this.capacity = capacity;
+    }
+
+    private static final class Message
+    {
+        private final String singular;
+        private final String plural;
+
+        private Message(String singular, String plural)
+        {
+            this.singular = singular;
+            this.plural = plural;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Message))
+            {
+                return false;
+            }
+            Message other = (Message)obj;
+            return this.singular.equals(other.singular) && (this.plural == null ? other.plural == null : this.plural.equals(other.plural));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * this.singular.hashCode() + (this.plural == null ? 0 : this.plural.hashCode());
+        }
+    }
+}
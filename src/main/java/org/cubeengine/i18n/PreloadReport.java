@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n;
+
+import org.cubeengine.i18n.language.Language;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of {@link I18nService#preload(java.util.Collection)}: the loaded languages, the locales without a language,
+ * the time each load took and the failures.
+ */
+public class PreloadReport
+{
+    private final ConcurrentMap<Locale, Language> languages = new ConcurrentHashMap<Locale, Language>();
+    private final ConcurrentMap<Locale, Long> loadTimes = new ConcurrentHashMap<Locale, Long>();
+    private final ConcurrentMap<Locale, Throwable> failures = new ConcurrentHashMap<Locale, Throwable>();
+    private final Set<Locale> missing = Collections.newSetFromMap(new ConcurrentHashMap<Locale, Boolean>());
+    private volatile long totalTime;
+
+    void loaded(Locale locale, Language language, long nanos)
+    {
+        if (language != null)
+        {
+            this.languages.put(locale, language);
+        }
+        else
+        {
+            this.missing.add(locale);
+        }
+        this.loadTimes.put(locale, nanos);
+    }
+
+    void failed(Locale locale, Throwable failure, long nanos)
+    {
+        this.failures.put(locale, failure);
+        this.loadTimes.put(locale, nanos);
+    }
+
+    void finished(long nanos)
+    {
+        this.totalTime = nanos;
+    }
+
+    /**
+     * Returns whether a language was loaded for every preloaded locale, see {@link #getFailures()} and {@link #getMissing()}
+     *
+     * @return true if no load failed and no locale is missing
+     */
+    public boolean isSuccessful()
+    {
+        return this.failures.isEmpty() && this.missing.isEmpty();
+    }
+
+    /**
+     * Returns the loaded languages including the parents and originals the requested locales depend on
+     *
+     * @return the languages by locale
+     */
+    public Map<Locale, Language> getLanguages()
+    {
+        return Collections.unmodifiableMap(this.languages);
+    }
+
+    public Map<Locale, Throwable> getFailures()
+    {
+        return Collections.unmodifiableMap(this.failures);
+    }
+
+    /**
+     * Returns the locales that loaded without a failure but have no language
+     *
+     * @return the missing locales
+     */
+    public Set<Locale> getMissing()
+    {
+        return Collections.unmodifiableSet(this.missing);
+    }
+
+    /**
+     * Returns how long the load of each locale took, without the time spent waiting for its dependencies
+     *
+     * @param unit the unit of the times
+     *
+     * @return the times by locale
+     */
+    public Map<Locale, Long> getLoadTimes(TimeUnit unit)
+    {
+        Map<Locale, Long> times = new LinkedHashMap<Locale, Long>();
+        for (Map.Entry<Locale, Long> entry : this.loadTimes.entrySet())
+        {
+            times.put(entry.getKey(), unit.convert(entry.getValue(), TimeUnit.NANOSECONDS));
+        }
+        return times;
+    }
+
+    /**
+     * Returns the wall clock time of the whole preload
+     *
+     * @param unit the unit of the time
+     *
+     * @return the time
+     */
+    public long getTotalTime(TimeUnit unit)
+    {
+        return unit.convert(this.totalTime, TimeUnit.NANOSECONDS);
+    }
+}
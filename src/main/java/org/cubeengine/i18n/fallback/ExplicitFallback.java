@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.fallback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Falls back to a configured list of locales per locale.
+ * Locales without a configured list have no fallbacks.
+ */
+public class ExplicitFallback implements FallbackStrategy
+{
+    private final Map<Locale, List<Locale>> fallbacks;
+
+    public ExplicitFallback(Map<Locale, List<Locale>> fallbacks)
+    {
+        if (fallbacks == null)
+        {
+            throw new IllegalArgumentException("The fallbacks must not be null!");
+        }
+        this.fallbacks = new HashMap<Locale, List<Locale>>();
+        for (Map.Entry<Locale, List<Locale>> entry : fallbacks.entrySet())
+        {
+            this.fallbacks.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<Locale>(entry.getValue())));
+        }
+    }
+
+    public List<Locale> getFallbacks(Locale locale)
+    {
+        List<Locale> result = this.fallbacks.get(locale);
+        if (result == null)
+        {
+            return Collections.emptyList();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.fallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Falls back by removing subtags from the end of the BCP 47 language tag,
+ * e.g. from de-Latn-CH-1996 to de-Latn-CH, de-Latn and de.
+ */
+public class TruncatingFallback implements FallbackStrategy
+{
+    public List<Locale> getFallbacks(Locale locale)
+    {
+        List<Locale> fallbacks = new ArrayList<Locale>();
+        String tag = locale.toLanguageTag();
+        int end;
+        while ((end = tag.lastIndexOf('-')) > 0)
+        {
+            tag = tag.substring(0, end);
+            // a singleton subtag may not end a tag, so it goes together with the subtag following it
+            end = tag.lastIndexOf('-');
+            if (end > 0 && end == tag.length() - 2)
+            {
+                tag = tag.substring(0, end);
+            }
+            fallbacks.add(Locale.forLanguageTag(tag));
+        }
+        return fallbacks;
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.language;
+
+import org.cubeengine.i18n.plural.PluralExpr;
+import org.cubeengine.i18n.plural.PluralRules;
+import org.cubeengine.i18n.plural.StandardPluralRule;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A language loader resolving definitions from a built-in table of common languages, so no definition has to be read.
+ * The plural rules are the ones of the gettext documentation and CLDR, clones share the translations of their original,
+ * e.g. de_AT and de_CH are clones of de_DE. Applications can replace or add definitions with {@link #define(LanguageDefinition)}.
+ */
+public class BuiltinLanguageLoader extends LanguageLoader
+{
+    private static final LanguageDefinition[] BUILTIN = {
+        language("en_US", "English (United States)", "English (United States)", PluralRules.NOT_ONE, null),
+        language("en_GB", "English (United Kingdom)", "English (United Kingdom)", PluralRules.NOT_ONE, "en_US", "en_IE"),
+        language("en_AU", "English (Australia)", "English (Australia)", PluralRules.NOT_ONE, "en_GB", "en_NZ"),
+        language("en_CA", "English (Canada)", "English (Canada)", PluralRules.NOT_ONE, "en_US"),
+        language("de_DE", "German", "Deutsch", PluralRules.NOT_ONE, null, "de_AT", "de_CH", "de_LI", "de_LU"),
+        language("fr_FR", "French", "Français", PluralRules.GREATER_THAN_ONE, null, "fr_BE", "fr_CH", "fr_LU"),
+        language("fr_CA", "French (Canada)", "Français (Canada)", PluralRules.GREATER_THAN_ONE, "fr_FR"),
+        language("es_ES", "Spanish", "Español", PluralRules.NOT_ONE, null),
+        language("es_MX", "Spanish (Mexico)", "Español (México)", PluralRules.NOT_ONE, "es_ES", "es_AR", "es_CO", "es_CL"),
+        language("it_IT", "Italian", "Italiano", PluralRules.NOT_ONE, null, "it_CH"),
+        language("pt_PT", "Portuguese", "Português", PluralRules.NOT_ONE, null),
+        language("pt_BR", "Portuguese (Brazil)", "Português (Brasil)", PluralRules.GREATER_THAN_ONE, "pt_PT"),
+        language("nl_NL", "Dutch", "Nederlands", PluralRules.NOT_ONE, null, "nl_BE"),
+        language("sv_SE", "Swedish", "Svenska", PluralRules.NOT_ONE, null, "sv_FI"),
+        language("da_DK", "Danish", "Dansk", PluralRules.NOT_ONE, null),
+        language("nb_NO", "Norwegian Bokmål", "Norsk bokmål", PluralRules.NOT_ONE, null),
+        language("fi_FI", "Finnish", "Suomi", PluralRules.NOT_ONE, null),
+        language("et_EE", "Estonian", "Eesti", PluralRules.NOT_ONE, null),
+        language("hu_HU", "Hungarian", "Magyar", PluralRules.NOT_ONE, null),
+        language("el_GR", "Greek", "Ελληνικά", PluralRules.NOT_ONE, null, "el_CY"),
+        language("bg_BG", "Bulgarian", "Български", PluralRules.NOT_ONE, null),
+        language("tr_TR", "Turkish", "Türkçe", PluralRules.GREATER_THAN_ONE, null),
+        language("he_IL", "Hebrew", "עברית", PluralRules.NOT_ONE, null),
+        language("hi_IN", "Hindi", "हिन्दी", PluralRules.NOT_ONE, null),
+        language("ru_RU", "Russian", "Русский", StandardPluralRule.SLAVIC, null),
+        language("uk_UA", "Ukrainian", "Українська", StandardPluralRule.SLAVIC, null),
+        language("be_BY", "Belarusian", "Беларуская", StandardPluralRule.SLAVIC, null),
+        language("sr_RS", "Serbian", "Српски", StandardPluralRule.SLAVIC, null),
+        language("hr_HR", "Croatian", "Hrvatski", StandardPluralRule.SLAVIC, null),
+        language("bs_BA", "Bosnian", "Bosanski", StandardPluralRule.SLAVIC, null),
+        language("cs_CZ", "Czech", "Čeština", StandardPluralRule.CZECH, null),
+        language("sk_SK", "Slovak", "Slovenčina", StandardPluralRule.CZECH, null),
+        language("pl_PL", "Polish", "Polski", StandardPluralRule.POLISH, null),
+        language("sl_SI", "Slovenian", "Slovenščina", StandardPluralRule.SLOVENIAN, null),
+        language("lt_LT", "Lithuanian", "Lietuvių", StandardPluralRule.LITHUANIAN, null),
+        language("lv_LV", "Latvian", "Latviešu", StandardPluralRule.LATVIAN, null),
+        language("ro_RO", "Romanian", "Română", StandardPluralRule.ROMANIAN, null, "ro_MD"),
+        language("is_IS", "Icelandic", "Íslenska", StandardPluralRule.ICELANDIC, null),
+        language("mk_MK", "Macedonian", "Македонски", StandardPluralRule.MACEDONIAN, null),
+        language("ar_SA", "Arabic", "العربية", StandardPluralRule.ARABIC, null, "ar_AE", "ar_EG"),
+        language("ga_IE", "Irish", "Gaeilge", StandardPluralRule.IRISH, null),
+        language("gd_GB", "Scottish Gaelic", "Gàidhlig", StandardPluralRule.SCOTTISH_GAELIC, null),
+        language("cy_GB", "Welsh", "Cymraeg", StandardPluralRule.WELSH, null),
+        language("kw_GB", "Cornish", "Kernewek", StandardPluralRule.CORNISH, null),
+        language("mt_MT", "Maltese", "Malti", StandardPluralRule.MALTESE, null),
+        language("ja_JP", "Japanese", "日本語", PluralRules.ZERO, null),
+        language("ko_KR", "Korean", "한국어", PluralRules.ZERO, null),
+        language("zh_CN", "Chinese (Simplified)", "简体中文", PluralRules.ZERO, null, "zh_SG"),
+        language("zh_TW", "Chinese (Traditional)", "繁體中文", PluralRules.ZERO, null, "zh_HK"),
+        language("vi_VN", "Vietnamese", "Tiếng Việt", PluralRules.ZERO, null),
+        language("th_TH", "Thai", "ไทย", PluralRules.ZERO, null),
+        language("id_ID", "Indonesian", "Bahasa Indonesia", PluralRules.ZERO, null),
+    };
+
+    /**
+     * The built-in definitions by their locale and the locales of their clones
+     */
+    private static final Map<Locale, LanguageDefinition> BY_LOCALE = new HashMap<Locale, LanguageDefinition>();
+
+    static
+    {
+        for (LanguageDefinition definition : BUILTIN)
+        {
+            index(BY_LOCALE, definition);
+        }
+    }
+
+    private final ConcurrentMap<Locale, LanguageDefinition> overrides = new ConcurrentHashMap<Locale, LanguageDefinition>();
+    /**
+     * The clones of replaced definitions that no definition claims anymore
+     */
+    private final Set<Locale> dropped = Collections.newSetFromMap(new ConcurrentHashMap<Locale, Boolean>());
+
+    @Override
+    public LanguageDefinition loadDefinition(Locale locale)
+    {
+        LanguageDefinition definition = this.overrides.get(locale);
+        if (definition == null && !this.dropped.contains(locale))
+        {
+            definition = BY_LOCALE.get(locale);
+        }
+        return definition;
+    }
+
+    /**
+     * Replaces or adds a definition, it is returned for its locale and the locales of its clones.
+     * The clones of the replaced definition that are no clones of the new one have no definition anymore.
+     *
+     * @param definition the definition
+     */
+    public synchronized void define(LanguageDefinition definition)
+    {
+        if (definition == null)
+        {
+            throw new IllegalArgumentException("The definition must not be null!");
+        }
+        if (definition.getLocale() == null)
+        {
+            throw new IllegalArgumentException("The locale must not be null!");
+        }
+        LanguageDefinition replaced = this.loadDefinition(definition.getLocale());
+        if (replaced != null && replaced.getLocale().equals(definition.getLocale()) && replaced.getClones() != null)
+        {
+            for (Locale clone : replaced.getClones())
+            {
+                if (this.loadDefinition(clone) == replaced)
+                {
+                    this.overrides.remove(clone);
+                    this.dropped.add(clone);
+                }
+            }
+        }
+        index(this.overrides, definition);
+    }
+
+    /**
+     * Returns the locales with a built-in definition including the clones
+     *
+     * @return the locales
+     */
+    public static Set<Locale> getBuiltinLocales()
+    {
+        return Collections.unmodifiableSet(BY_LOCALE.keySet());
+    }
+
+    private static void index(Map<Locale, LanguageDefinition> target, LanguageDefinition definition)
+    {
+        target.put(definition.getLocale(), definition);
+        Locale[] clones = definition.getClones();
+        if (clones != null)
+        {
+            for (Locale clone : clones)
+            {
+                target.put(clone, definition);
+            }
+        }
+    }
+
+    private static LanguageDefinition language(String locale, String name, String localName, PluralExpr rule, String parent, String... clones)
+    {
+        Locale[] cloneLocales = new Locale[clones.length];
+        for (int i = 0; i < clones.length; i++)
+        {
+            cloneLocales[i] = toLocale(clones[i]);
+        }
+        return new BuiltinDefinition(toLocale(locale), name, localName, parent == null ? null : toLocale(parent), cloneLocales, rule);
+    }
+
+    private static Locale toLocale(String tag)
+    {
+        int separator = tag.indexOf('_');
+        return new Locale(tag.substring(0, separator), tag.substring(separator + 1));
+    }
+
+    private static int pluralCountOf(PluralExpr rule)
+    {
+        if (rule instanceof StandardPluralRule)
+        {
+            return ((StandardPluralRule)rule).getPluralCount();
+        }
+        return rule == PluralRules.ZERO ? 1 : 2;
+    }
+
+    private static final class BuiltinDefinition implements LanguageDefinition
+    {
+        private final Locale locale;
+        private final String name;
+        private final String localName;
+        private final Locale parent;
+        private final Locale[] clones;
+        private final int pluralCount;
+        private final PluralExpr pluralExpression;
+
+        private BuiltinDefinition(Locale locale, String name, String localName, Locale parent, Locale[] clones, PluralExpr pluralExpression)
+        {
+            this.locale = locale;
+            this.name = name;
+            this.localName = localName;
+            this.parent = parent;
+            this.clones = clones;
+            this.pluralCount = pluralCountOf(pluralExpression);
+            this.pluralExpression = pluralExpression;
+        }
+
+        public Locale getLocale()
+        {
+            return this.locale;
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public String getLocalName()
+        {
+            return this.localName;
+        }
+
+        public Locale getParent()
+        {
+            return this.parent;
+        }
+
+        public Locale[] getClones()
+        {
+            return this.clones.clone();
+        }
+
+        public int getPluralCount()
+        {
+            return this.pluralCount;
+        }
+
+        public PluralExpr getPluralExpression()
+        {
+            return this.pluralExpression;
+        }
+    }
+}
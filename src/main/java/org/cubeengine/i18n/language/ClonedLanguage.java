@@ -22,6 +22,7 @@
  */
 package org.cubeengine.i18n.language;
 
+import org.cubeengine.i18n.MessageKey;
 import org.cubeengine.i18n.translation.TranslationContainer;
 
 import java.util.Locale;
@@ -84,6 +85,21 @@ public class ClonedLanguage implements Language
         return this.original.getTranslation(singular, plural, n);
     }
 
+    public String getTranslation(String singular, String plural, long unscaled, int scale)
+    {
+        return this.original.getTranslation(singular, plural, unscaled, scale);
+    }
+
+    public String getTranslation(MessageKey key)
+    {
+        return this.original.getTranslation(key);
+    }
+
+    public String getTranslation(MessageKey key, long unscaled, int scale)
+    {
+        return this.original.getTranslation(key, unscaled, scale);
+    }
+
     public TranslationContainer getMessages()
     {
         return this.original.getMessages();
@@ -22,6 +22,7 @@
  */
 package org.cubeengine.i18n.language;
 
+import org.cubeengine.i18n.MessageKey;
 import org.cubeengine.i18n.plural.PluralExpr;
 import org.cubeengine.i18n.translation.TranslationContainer;
 
@@ -88,6 +89,131 @@ public interface Language
      */
     String getTranslation(String singular, String plural, int n);
 
+    /**
+     * Gets a plural translation from this language based on an amount that might not fit into an int
+     *
+     * @param singular the message in singular form
+     * @param plural   the message in plural form
+     * @param n        the amount
+     *
+     * @return the translated message or null
+     */
+    default String getTranslation(String singular, String plural, long n)
+    {
+        return this.getTranslation(singular, plural, n, 0);
+    }
+
+    /**
+     * Gets a plural translation from this language based on a decimal amount, e.g. 1.50 is the unscaled value 150
+     * with the scale 2. The plural form is chosen by {@link PluralExpr#evaluate(long, int)}.
+     *
+     * @param singular the message in singular form
+     * @param plural   the message in plural form
+     * @param unscaled the unscaled amount
+     * @param scale    the number of fraction digits of the amount
+     *
+     * @return the translated message or null
+     */
+    default String getTranslation(String singular, String plural, long unscaled, int scale)
+    {
+        if (scale == 0 && unscaled == (int)unscaled)
+        {
+            return this.getTranslation(singular, plural, (int)unscaled);
+        }
+        int index = this.getLanguageDefinition().getPluralExpression().evaluate(unscaled, scale);
+        if (index == 0)
+        {
+            return this.getTranslation(singular);
+        }
+        String translation = this.getMessages().getPlural(plural, index - 1);
+        if (translation == null && this.getParent() != null)
+        {
+            translation = this.getParent().getTranslation(singular, plural, unscaled, scale);
+        }
+        return translation;
+    }
+
+    /**
+     * Gets a singular translation of a message in a context, like the msgctxt of a PO entry.
+     * A message in a context is a different message than the same message without context or in another context.
+     *
+     * @param context  the context or null for the message without context
+     * @param singular the message
+     *
+     * @return the translation or null
+     */
+    default String getContextTranslation(String context, String singular)
+    {
+        if (context == null)
+        {
+            return this.getTranslation(singular);
+        }
+        String translation = this.getMessages().getSingular(TranslationContainer.contextKey(context, singular));
+        if (translation == null && this.getParent() != null)
+        {
+            translation = this.getParent().getContextTranslation(context, singular);
+        }
+        return translation;
+    }
+
+    /**
+     * Gets a plural translation of a message in a context based on a decimal amount,
+     * see {@link #getContextTranslation(String, String)} and {@link #getTranslation(String, String, long, int)}
+     *
+     * @param context  the context or null for the message without context
+     * @param singular the message in singular form
+     * @param plural   the message in plural form
+     * @param unscaled the unscaled amount
+     * @param scale    the number of fraction digits of the amount
+     *
+     * @return the translated message or null
+     */
+    default String getContextTranslation(String context, String singular, String plural, long unscaled, int scale)
+    {
+        if (context == null)
+        {
+            return this.getTranslation(singular, plural, unscaled, scale);
+        }
+        int index = this.getLanguageDefinition().getPluralExpression().evaluate(unscaled, scale);
+        if (index == 0)
+        {
+            return this.getContextTranslation(context, singular);
+        }
+        String translation = this.getMessages().getPlural(TranslationContainer.contextKey(context, plural), index - 1);
+        if (translation == null && this.getParent() != null)
+        {
+            translation = this.getParent().getContextTranslation(context, singular, plural, unscaled, scale);
+        }
+        return translation;
+    }
+
+    /**
+     * Gets a singular translation of a message key from this language
+     *
+     * @param key the message key
+     *
+     * @return the translation or null
+     */
+    default String getTranslation(MessageKey key)
+    {
+        return this.getTranslation(key.getSingular());
+    }
+
+    /**
+     * Gets a plural translation of a message key from this language based on a decimal amount,
+     * see {@link #getTranslation(String, String, long, int)}
+     *
+     * @param key      the message key with a plural message
+     * @param unscaled the unscaled amount
+     * @param scale    the number of fraction digits of the amount
+     *
+     * @return the translated message or null
+     */
+    default String getTranslation(MessageKey key, long unscaled, int scale)
+    {
+        return this.getTranslation(key.getSingular(), key.getPlural(), unscaled, scale);
+    }
+
     /**
      * Returns a map of all translations of the given category
      *
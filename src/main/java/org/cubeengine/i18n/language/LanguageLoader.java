@@ -23,6 +23,9 @@
 package org.cubeengine.i18n.language;
 
 import org.cubeengine.i18n.I18nService;
+import org.cubeengine.i18n.plural.LookupTableExpr;
+import org.cubeengine.i18n.plural.PluralExpr;
+import org.cubeengine.i18n.plural.PluralExpressionEvaluationException;
 import org.cubeengine.i18n.translation.TranslationContainer;
 import org.cubeengine.i18n.translation.TranslationLoadingException;
 
@@ -32,7 +35,20 @@ public abstract class LanguageLoader
 {
     public Language loadLanguage(I18nService service, Locale locale) throws TranslationLoadingException, DefinitionLoadingException
     {
-        LanguageDefinition definition = this.loadDefinition(locale);
+        return this.loadLanguage(service, locale, this.loadDefinition(locale));
+    }
+
+    /**
+     * Loads the language of a locale whose definition has been loaded already
+     *
+     * @param service    the service
+     * @param locale     the locale
+     * @param definition the definition of the locale or null if there is none
+     *
+     * @return the language or null if there is no language for the locale
+     */
+    public Language loadLanguage(I18nService service, Locale locale, LanguageDefinition definition) throws TranslationLoadingException, DefinitionLoadingException
+    {
         if (definition == null)
         {
             return null;
@@ -45,7 +61,8 @@ public abstract class LanguageLoader
                 parent = service.getLanguage(definition.getParent());
             }
             // Main Locale of Configuration
-            return new NormalLanguage(definition, service.getTranslationLoader().loadTranslations(new TranslationContainer(), locale), parent);
+            TranslationContainer messages = service.getTranslationLoader().loadTranslations(this.createContainer(service), locale);
+            return this.createLanguage(service, definition, messages, parent);
         }
         else
         {
@@ -61,5 +78,67 @@ public abstract class LanguageLoader
         return null;
     }
 
+    /**
+     * Creates the container to load translations into, its messages are interned unless they are fingerprinted later on
+     */
+    protected TranslationContainer createContainer(I18nService service)
+    {
+        return new TranslationContainer(service.isFingerprinting() ? null : service.getSymbolTable());
+    }
+
+    /**
+     * Creates the language of a definition from its loaded translations, honoring the delta encoding, fingerprinting,
+     * freezing and flattening settings of the service
+     */
+    protected NormalLanguage createLanguage(I18nService service, LanguageDefinition definition, TranslationContainer messages, Language parent) throws DefinitionLoadingException
+    {
+        if (service.isDeltaEncoding() && !service.isFlattening() && parent != null && !(parent instanceof SourceLanguage))
+        {
+            // the registered messages of the source language are no translations to compare with
+            messages = messages.difference(parent.getMessages(), NormalLanguage.hasSamePluralRule(definition, parent.getLanguageDefinition()));
+        }
+        if (service.isFingerprinting())
+        {
+            messages = messages.fingerprint();
+        }
+        else if (service.isFreezing())
+        {
+            messages = messages.freeze();
+        }
+        NormalLanguage language = new NormalLanguage(definition, messages, parent, this.getPluralExpr(service, definition));
+        if (service.isFlattening())
+        {
+            language.flatten();
+        }
+        return language;
+    }
+
+    /**
+     * Returns the plural expression of the definition backed by a lookup table, if the service uses them.
+     * Building the table validates the expression, so invalid expressions fail the load of the language.
+     * Languages with more plural forms than a table can hold keep the bare expression.
+     */
+    protected PluralExpr getPluralExpr(I18nService service, LanguageDefinition definition) throws DefinitionLoadingException
+    {
+        PluralExpr expr = definition.getPluralExpression();
+        int size = service.getPluralTableSize();
+        if (size == 0 || expr == null || definition.getPluralCount() > Byte.MAX_VALUE)
+        {
+            return expr;
+        }
+        try
+        {
+            return new LookupTableExpr(expr, definition.getPluralCount(), size);
+        }
+        catch (PluralExpressionEvaluationException e)
+        {
+            throw new DefinitionLoadingException("The plural expression of " + definition.getLocale() + " is invalid: " + e.getMessage(), e);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new DefinitionLoadingException("The plural count of " + definition.getLocale() + " is invalid!", e);
+        }
+    }
+
     public abstract LanguageDefinition loadDefinition(Locale locale) throws DefinitionLoadingException;
 }
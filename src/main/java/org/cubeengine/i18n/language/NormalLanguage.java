@@ -22,20 +22,50 @@
  */
 package org.cubeengine.i18n.language;
 
+import org.cubeengine.i18n.MessageKey;
+import org.cubeengine.i18n.MessageKeyRegistry;
+import org.cubeengine.i18n.plural.PluralExpr;
+import org.cubeengine.i18n.plural.PluralRules;
+import org.cubeengine.i18n.translation.FrozenTranslationContainer;
 import org.cubeengine.i18n.translation.TranslationContainer;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class is a generic language that loads its translations from files.
  */
 public class NormalLanguage implements Language
 {
+    /**
+     * Estimated retained bytes per entry of a flattened table: a hash map node and its share of the bucket array
+     */
+    private static final int FLATTENED_ENTRY_SIZE = 40;
+    /**
+     * Marks a slot of a message key that has no translation in this language, compared by identity
+     */
+    private static final String MISSING = new String("");
+
     private final Language parent;
     protected final TranslationContainer messages;
     protected final LanguageDefinition definition;
+    private final PluralExpr pluralExpr;
+    private volatile Flattened flattened;
+    private volatile Slots slots;
 
     public NormalLanguage(LanguageDefinition definition, TranslationContainer messages, Language parent)
+    {
+        this(definition, messages, parent, definition.getPluralExpression());
+    }
+
+    /**
+     * Creates a language choosing its plural forms with the given expression instead of the one of the definition,
+     * e.g. a {@link org.cubeengine.i18n.plural.LookupTableExpr} wrapping it.
+     */
+    public NormalLanguage(LanguageDefinition definition, TranslationContainer messages, Language parent, PluralExpr pluralExpr)
     {
         if (definition.getLocale() == null)
         {
@@ -52,7 +82,8 @@ public class NormalLanguage implements Language
         this.definition = definition;
         this.parent = parent;
         this.messages = messages;
-
+        this.pluralExpr = pluralExpr;
+        this.slots = new Slots(messages, parent, parent);
     }
 
     public Locale getLocale()
@@ -77,6 +108,16 @@ public class NormalLanguage implements Language
 
     public String getTranslation(String singular)
     {
+        Flattened flattened = this.flattened;
+        if (flattened != null)
+        {
+            String translation = flattened.messages.getSingular(singular);
+            if (translation == null && flattened.singularFallback != null)
+            {
+                translation = flattened.singularFallback.getTranslation(singular);
+            }
+            return translation;
+        }
         String translation = this.messages.getSingular(singular);
         if (translation == null && parent != null)
         {
@@ -87,19 +128,177 @@ public class NormalLanguage implements Language
 
     public String getTranslation(String singular, String plural, int n)
     {
-        int index = this.getIndex(n);
+        return this.getTranslation(singular, plural, n, 0);
+    }
+
+    public String getTranslation(String singular, String plural, long unscaled, int scale)
+    {
+        int index = this.getIndex(unscaled, scale);
         if (index == 0)
         {
             return getTranslation(singular);
         }
-        String translation = this.messages.getPlural(plural, index - 1);
-        if (translation == null && parent != null)
+        Flattened flattened = this.flattened;
+        TranslationContainer messages = flattened == null ? this.messages : flattened.messages;
+        Language fallback = flattened == null ? this.parent : flattened.pluralFallback;
+        String translation = messages.getPlural(plural, index - 1);
+        if (translation == null && fallback != null)
+        {
+            translation = fallback.getTranslation(singular, plural, unscaled, scale);
+        }
+        return translation;
+    }
+
+    /**
+     * Gets a singular translation of a message key. The lookup in the translations of this language is cached
+     * in the slot of the key, only missing translations are passed on to the parent.
+     * Translations added to this language after a key was looked up are seen after {@link #flatten()} or {@link #unflatten()}.
+     */
+    public String getTranslation(MessageKey key)
+    {
+        Slots slots = this.slots;
+        String translation = slots.lookup(key, 0);
+        if (translation == null && slots.singularFallback != null)
+        {
+            translation = slots.singularFallback.getTranslation(key);
+        }
+        return translation;
+    }
+
+    public String getTranslation(MessageKey key, long unscaled, int scale)
+    {
+        int index = this.getIndex(unscaled, scale);
+        if (index == 0)
         {
-            translation = this.parent.getTranslation(singular, plural, n);
+            return this.getTranslation(key);
+        }
+        Slots slots = this.slots;
+        String translation = slots.lookup(key, index);
+        if (translation == null && slots.pluralFallback != null)
+        {
+            translation = slots.pluralFallback.getTranslation(key, unscaled, scale);
         }
         return translation;
     }
 
+    /**
+     * Folds the translations of all parents into a single table, so a lookup no longer walks the parent chain.
+     * Plural translations are only folded from parents with the same plural rule, as any other parent
+     * would choose a different plural form. The table is frozen if the translations of this language are.
+     * Translations that can not be enumerated, like fingerprinted ones, are not flattened: such a language
+     * is not flattened at all and such a parent stays a fallback.
+     * Call this again after this language or one of its parents changed.
+     *
+     * @return the number of entries taken from parents
+     */
+    public int flatten()
+    {
+        if (!this.messages.isEnumerable())
+        {
+            return 0;
+        }
+        Map<String, String> singular = new HashMap<String, String>(this.messages.getSingularMessages());
+        Map<String, String[]> plural = new HashMap<String, String[]>(this.messages.getPluralMessages());
+        Language singularFallback = null;
+        Language pluralFallback = null;
+        boolean foldPlurals = true;
+        for (Language current = this.parent; current != null; current = current.getParent())
+        {
+            if (current instanceof SourceLanguage || !current.getMessages().isEnumerable())
+            {
+                // the source language answers every message and translations that are not enumerable can not be folded,
+                // so they have to stay a fallback
+                singularFallback = current;
+                if (foldPlurals)
+                {
+                    pluralFallback = current;
+                }
+                break;
+            }
+            TranslationContainer parentMessages = current.getMessages();
+            putAbsent(singular, parentMessages.getSingularMessages());
+            if (foldPlurals)
+            {
+                if (this.hasPluralRuleOf(current))
+                {
+                    putAbsent(plural, parentMessages.getPluralMessages());
+                }
+                else
+                {
+                    foldPlurals = false;
+                    pluralFallback = current;
+                }
+            }
+        }
+        TranslationContainer messages = new TranslationContainer(singular, plural);
+        if (this.messages instanceof FrozenTranslationContainer)
+        {
+            messages = messages.freeze();
+        }
+        Flattened flattened = new Flattened(messages, singularFallback, pluralFallback);
+        this.flattened = flattened;
+        this.slots = new Slots(messages, singularFallback, pluralFallback);
+        return flattened.messages.size() - this.messages.size();
+    }
+
+    /**
+     * Discards the flattened table, lookups walk the parent chain again afterwards.
+     */
+    public void unflatten()
+    {
+        this.flattened = null;
+        this.slots = new Slots(this.messages, this.parent, this.parent);
+    }
+
+    public boolean isFlattened()
+    {
+        return this.flattened != null;
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by the flattened table of this language
+     *
+     * @return the estimated size or 0 if the language is not flattened
+     */
+    public long getFlatteningOverhead()
+    {
+        Flattened flattened = this.flattened;
+        if (flattened == null)
+        {
+            return 0;
+        }
+        if (flattened.messages instanceof FrozenTranslationContainer)
+        {
+            return ((FrozenTranslationContainer)flattened.messages).getTableSize();
+        }
+        return (long)flattened.messages.size() * FLATTENED_ENTRY_SIZE;
+    }
+
+    private boolean hasPluralRuleOf(Language other)
+    {
+        return hasSamePluralRule(this.definition, other.getLanguageDefinition());
+    }
+
+    static boolean hasSamePluralRule(LanguageDefinition definition, LanguageDefinition otherDefinition)
+    {
+        if (otherDefinition.getPluralCount() != definition.getPluralCount())
+        {
+            return false;
+        }
+        return PluralRules.isSameRule(definition.getPluralExpression(), otherDefinition.getPluralExpression());
+    }
+
+    private static <T> void putAbsent(Map<String, T> target, Map<String, T> source)
+    {
+        for (Map.Entry<String, T> entry : source.entrySet())
+        {
+            if (!target.containsKey(entry.getKey()))
+            {
+                target.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     public TranslationContainer getMessages()
     {
         return this.messages;
@@ -128,6 +327,94 @@ public class NormalLanguage implements Language
 
     protected final int getIndex(int n)
     {
-        return this.definition.getPluralExpression().evaluate(n);
+        return this.pluralExpr.evaluate(n);
+    }
+
+    protected final int getIndex(long unscaled, int scale)
+    {
+        return this.pluralExpr.evaluate(unscaled, scale);
+    }
+
+    /**
+     * The translations of message keys looked up in one table, indexed by the id of the key and the plural form.
+     * Flattening replaces the slots with new ones, so a lookup never mixes the tables.
+     * The slots are claimed by the registry of the first key looked up, keys of other registries
+     * and keys without an id are looked up by their message.
+     */
+    private static final class Slots
+    {
+        private final TranslationContainer messages;
+        private final Language singularFallback;
+        private final Language pluralFallback;
+        private final AtomicReference<MessageKeyRegistry> registry = new AtomicReference<MessageKeyRegistry>();
+        private volatile String[][] forms = new String[0][];
+
+        private Slots(TranslationContainer messages, Language singularFallback, Language pluralFallback)
+        {
+            this.messages = messages;
+            this.singularFallback = singularFallback;
+            this.pluralFallback = pluralFallback;
+        }
+
+        /**
+         * Returns the given form of the key from the table, form 0 is the singular translation
+         */
+        private String lookup(MessageKey key, int form)
+        {
+            int id = key.getId();
+            if (id < 0 || !this.isSlotted(key.getRegistry()))
+            {
+                return form == 0 ? this.messages.getSingular(key.getSingular()) : this.messages.getPlural(key.getPlural(), form - 1);
+            }
+            String[][] forms = this.forms;
+            String[] keyForms = id < forms.length ? forms[id] : null;
+            if (keyForms != null && form < keyForms.length)
+            {
+                String cached = keyForms[form];
+                if (cached != null)
+                {
+                    return cached == MISSING ? null : cached;
+                }
+            }
+            String translation = form == 0 ? this.messages.getSingular(key.getSingular()) : this.messages.getPlural(key.getPlural(), form - 1);
+            if (keyForms == null || form >= keyForms.length)
+            {
+                keyForms = keyForms == null ? new String[form + 1] : Arrays.copyOf(keyForms, form + 1);
+                if (id >= forms.length)
+                {
+                    // racing writers may lose slots, they are looked up again
+                    forms = Arrays.copyOf(forms, Math.max(id + 1, forms.length * 2));
+                    this.forms = forms;
+                }
+                forms[id] = keyForms;
+            }
+            keyForms[form] = translation == null ? MISSING : translation;
+            return translation;
+        }
+
+        private boolean isSlotted(MessageKeyRegistry registry)
+        {
+            MessageKeyRegistry owner = this.registry.get();
+            if (owner == null)
+            {
+                this.registry.compareAndSet(null, registry);
+                owner = this.registry.get();
+            }
+            return owner == registry;
+        }
+    }
+
+    private static final class Flattened
+    {
+        private final TranslationContainer messages;
+        private final Language singularFallback;
+        private final Language pluralFallback;
+
+        private Flattened(TranslationContainer messages, Language singularFallback, Language pluralFallback)
+        {
+            this.messages = messages;
+            this.singularFallback = singularFallback;
+            this.pluralFallback = pluralFallback;
+        }
     }
 }
@@ -22,18 +22,42 @@
  */
 package org.cubeengine.i18n.language;
 
-import org.cubeengine.i18n.plural.NotOneExpr;
+import org.cubeengine.i18n.MessageKey;
 import org.cubeengine.i18n.plural.PluralExpr;
+import org.cubeengine.i18n.plural.PluralRules;
 import org.cubeengine.i18n.translation.TranslationContainer;
 
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class represents the source language.
+ * It answers every message with the message itself and registers the messages it was asked for in its container.
+ * The registration is unbounded unless a capacity is set, then the oldest registered messages are evicted once it is exceeded.
  */
 public final class SourceLanguage extends NormalLanguage
 {
-    public static final SourceLanguage EN_US = new SourceLanguage(Locale.US, "English", 2, new NotOneExpr());
+    /**
+     * The shared American English source language, its registration can not be configured, see {@link #enUs()}
+     */
+    public static final SourceLanguage EN_US = new SourceLanguage(Locale.US, "English", 2, PluralRules.NOT_ONE, true);
+
+    /**
+     * The registration capacity of a source language that registers every message, see {@link #setRegistrationCapacity(int)}
+     */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final ConcurrentMap<String, String> singularMessages;
+    private final ConcurrentMap<String, String[]> pluralMessages;
+    private final Queue<Registration> registrations = new ConcurrentLinkedQueue<Registration>();
+    private final AtomicInteger registered = new AtomicInteger();
+    private volatile int registrationCapacity = UNBOUNDED;
+    private final boolean shared;
 
     public SourceLanguage(Locale locale, String name, int pluralCount, PluralExpr pluralExpression)
     {
@@ -42,38 +66,210 @@ public final class SourceLanguage extends NormalLanguage
 
     public SourceLanguage(Locale locale, String name, String localName, int pluralCount, PluralExpr pluralExpression)
     {
-        super(new SourceLanguageDefinition(locale, name, localName, pluralCount, pluralExpression), new TranslationContainer(), null);
+        this(new SourceLanguageDefinition(locale, name, localName, pluralCount, pluralExpression),
+             new ConcurrentHashMap<String, String>(), new ConcurrentHashMap<String, String[]>(), false);
+    }
+
+    private SourceLanguage(Locale locale, String name, int pluralCount, PluralExpr pluralExpression, boolean shared)
+    {
+        this(new SourceLanguageDefinition(locale, name, name, pluralCount, pluralExpression),
+             new ConcurrentHashMap<String, String>(), new ConcurrentHashMap<String, String[]>(), shared);
+    }
+
+    private SourceLanguage(LanguageDefinition definition, ConcurrentMap<String, String> singularMessages, ConcurrentMap<String, String[]> pluralMessages, boolean shared)
+    {
+        super(definition, new TranslationContainer(singularMessages, pluralMessages), null);
+        this.singularMessages = singularMessages;
+        this.pluralMessages = pluralMessages;
+        this.shared = shared;
+    }
+
+    /**
+     * Creates an American English source language like {@link #EN_US} with its own registration, which can be configured
+     *
+     * @return the source language
+     */
+    public static SourceLanguage enUs()
+    {
+        return new SourceLanguage(Locale.US, "English", 2, PluralRules.NOT_ONE);
+    }
+
+    public int getRegistrationCapacity()
+    {
+        return this.registrationCapacity;
+    }
+
+    /**
+     * Sets the number of messages registered before the oldest ones are evicted, 0 disables the registration
+     * and {@link #UNBOUNDED} registers every message. Lowering the capacity evicts the oldest messages right away.
+     *
+     * @param registrationCapacity the capacity
+     *
+     * @throws UnsupportedOperationException if this is the shared {@link #EN_US}
+     */
+    public void setRegistrationCapacity(int registrationCapacity)
+    {
+        if (this.shared)
+        {
+            throw new UnsupportedOperationException("The shared source language can not be configured, use SourceLanguage.enUs()!");
+        }
+        if (registrationCapacity < 0)
+        {
+            throw new IllegalArgumentException("The registration capacity must not be negative!");
+        }
+        this.registrationCapacity = registrationCapacity;
+        while (this.registered.get() > registrationCapacity && this.evict())
+        {
+            // evict until the capacity is met
+        }
+    }
+
+    /**
+     * Returns the number of messages currently registered
+     *
+     * @return the number of messages
+     */
+    public int getRegisteredCount()
+    {
+        return this.registered.get();
     }
 
     public String getTranslation(String singular)
     {
+        if (singular == null)
+        {
+            return null;
+        }
         String translation = super.getTranslation(singular);
         if (translation == null)
         {
             translation = singular;
             // TODO preprocessor
-            messages.putSingular(singular, translation);
+            if (this.registrationCapacity > 0 && this.singularMessages.putIfAbsent(singular, translation) == null)
+            {
+                this.register(new Registration(singular, translation, false));
+            }
         }
         return translation;
     }
 
-    public String getTranslation(String singular, String plural, int n)
+    public String getTranslation(String singular, String plural, long unscaled, int scale)
     {
-        int index = getIndex(n);
+        int index = getIndex(unscaled, scale);
         if (index == 0)
         {
             return getTranslation(singular);
         }
-        String translation = super.getTranslation(singular, plural, n);
+        if (plural == null)
+        {
+            return null;
+        }
+        String translation = this.messages.getPlural(plural, index - 1);
         if (translation == null)
         {
             translation = plural;
             // TODO preprocessor
-            messages.putPlural(plural, translation, index - 1, this.definition.getPluralCount());
+            if (this.registrationCapacity > 0)
+            {
+                // the source language uses the plural message for every plural form
+                int pluralCount = this.definition.getPluralCount();
+                String[] forms = new String[pluralCount];
+                Arrays.fill(forms, 0, pluralCount - 1, translation);
+                if (this.pluralMessages.putIfAbsent(plural, forms) == null)
+                {
+                    this.register(new Registration(plural, forms, true));
+                }
+            }
+        }
+        return translation;
+    }
+
+    /**
+     * The source language answers a message in a context with a translation in that context if it has one,
+     * otherwise like the message without context
+     */
+    @Override
+    public String getContextTranslation(String context, String singular)
+    {
+        String translation = context == null ? null : this.messages.getSingular(TranslationContainer.contextKey(context, singular));
+        if (translation == null)
+        {
+            translation = this.getTranslation(singular);
         }
         return translation;
     }
 
+    @Override
+    public String getContextTranslation(String context, String singular, String plural, long unscaled, int scale)
+    {
+        int index = getIndex(unscaled, scale);
+        if (index == 0)
+        {
+            return this.getContextTranslation(context, singular);
+        }
+        String translation = context == null ? null : this.messages.getPlural(TranslationContainer.contextKey(context, plural), index - 1);
+        if (translation == null)
+        {
+            translation = this.getTranslation(singular, plural, unscaled, scale);
+        }
+        return translation;
+    }
+
+    /**
+     * The source language answers a key like its message given as string, as it registers the messages it was asked for
+     */
+    @Override
+    public String getTranslation(MessageKey key)
+    {
+        return this.getTranslation(key.getSingular());
+    }
+
+    @Override
+    public String getTranslation(MessageKey key, long unscaled, int scale)
+    {
+        return this.getTranslation(key.getSingular(), key.getPlural(), unscaled, scale);
+    }
+
+    private void register(Registration registration)
+    {
+        this.registrations.add(registration);
+        if (this.registered.incrementAndGet() > this.registrationCapacity)
+        {
+            this.evict();
+        }
+    }
+
+    /**
+     * Removes the oldest registered message, unless it was replaced in the meantime
+     *
+     * @return false if there was no registered message
+     */
+    private boolean evict()
+    {
+        Registration oldest = this.registrations.poll();
+        if (oldest == null)
+        {
+            return false;
+        }
+        this.registered.decrementAndGet();
+        if (oldest.plural)
+        {
+            this.pluralMessages.remove(oldest.message, oldest.translation);
+        }
+        else
+        {
+            this.singularMessages.remove(oldest.message, oldest.translation);
+        }
+        return true;
+    }
+
+    @Override
+    public int flatten()
+    {
+        // the source language has no parents and keeps registering messages
+        return 0;
+    }
+
     public TranslationContainer getMessages()
     {
         return this.messages;
@@ -89,6 +285,20 @@ public final class SourceLanguage extends NormalLanguage
         return this.definition;
     }
 
+    private static final class Registration
+    {
+        private final String message;
+        private final Object translation;
+        private final boolean plural;
+
+        private Registration(String message, Object translation, boolean plural)
+        {
+            this.message = message;
+            this.translation = translation;
+            this.plural = plural;
+        }
+    }
+
     private static class SourceLanguageDefinition implements LanguageDefinition
     {
         private static final Locale[] NO_CLONES = new Locale[0];
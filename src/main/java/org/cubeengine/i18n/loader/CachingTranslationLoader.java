@@ -0,0 +1,300 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.loader;
+
+import org.cubeengine.i18n.I18nUtil;
+import org.cubeengine.i18n.translation.TranslationContainer;
+import org.cubeengine.i18n.translation.TranslationLoader;
+import org.cubeengine.i18n.translation.TranslationLoadingException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Caches the translations parsed by a {@link GettextLoader} as binary snapshots in a directory.
+ * A snapshot is only used while the checksum over the URLs and contents of the contributing PO files matches,
+ * otherwise the PO files are parsed again and the snapshot is replaced.
+ */
+public class CachingTranslationLoader implements TranslationLoader
+{
+    private static final int MAGIC = 0x49313853;
+    private static final int VERSION = 1;
+
+    private final GettextLoader delegate;
+    private final File cacheDirectory;
+
+    public CachingTranslationLoader(GettextLoader delegate, File cacheDirectory)
+    {
+        if (delegate == null)
+        {
+            throw new IllegalArgumentException("The delegate must not be null!");
+        }
+        if (cacheDirectory == null)
+        {
+            throw new IllegalArgumentException("The cache directory must not be null!");
+        }
+        this.delegate = delegate;
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public TranslationContainer loadTranslations(TranslationContainer container, Locale locale) throws TranslationLoadingException
+    {
+        byte[] checksum = this.checksum(locale);
+        File snapshot = new File(this.cacheDirectory, "translations_" + I18nUtil.localeToString(locale) + ".bin");
+
+        Map<String, String> singular = new HashMap<String, String>();
+        Map<String, String[]> plural = new HashMap<String, String[]>();
+        if (!readSnapshot(snapshot, checksum, singular, plural))
+        {
+            singular.clear();
+            plural.clear();
+            TranslationContainer parsed = this.delegate.loadTranslations(new TranslationContainer(), locale);
+            singular.putAll(parsed.getSingularMessages());
+            plural.putAll(parsed.getPluralMessages());
+            this.writeSnapshot(snapshot, checksum, singular, plural);
+        }
+        container.merge(singular, plural);
+        return container;
+    }
+
+    /**
+     * Checksums everything the parsed translations depend on: the parser settings and the URLs and contents of the PO files
+     */
+    private byte[] checksum(Locale locale) throws TranslationLoadingException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new TranslationLoadingException(e);
+        }
+        digest.update((this.delegate.getCharset().name() + '\0' + this.delegate.isIgnoreFuzzy() + '\0').getBytes(StandardCharsets.UTF_8));
+        byte[] buffer = new byte[8192];
+        for (URL url : this.delegate.getSources(locale))
+        {
+            digest.update(url.toString().getBytes(StandardCharsets.UTF_8));
+            long length = 0;
+            try
+            {
+                InputStream in = url.openStream();
+                try
+                {
+                    int read;
+                    while ((read = in.read(buffer)) >= 0)
+                    {
+                        digest.update(buffer, 0, read);
+                        length += read;
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch (IOException e)
+            {
+                throw new TranslationLoadingException(url + ": " + e.getMessage(), e);
+            }
+            digest.update(ByteBuffer.allocate(8).putLong(length).array());
+        }
+        return digest.digest();
+    }
+
+    private static boolean readSnapshot(File file, byte[] checksum, Map<String, String> singular, Map<String, String[]> plural)
+    {
+        if (!file.isFile())
+        {
+            return false;
+        }
+        try
+        {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (in.getInt() != MAGIC || in.getInt() != VERSION)
+            {
+                return false;
+            }
+            byte[] stored = new byte[checksum.length];
+            in.get(stored);
+            if (!Arrays.equals(checksum, stored))
+            {
+                return false;
+            }
+            for (int i = readCount(in); i > 0; i--)
+            {
+                singular.put(readString(in, false), readString(in, false));
+            }
+            for (int i = readCount(in); i > 0; i--)
+            {
+                String key = readString(in, false);
+                String[] forms = new String[readCount(in)];
+                for (int j = 0; j < forms.length; j++)
+                {
+                    // empty plural forms are stored as null
+                    forms[j] = readString(in, true);
+                }
+                plural.put(key, forms);
+            }
+            return !in.hasRemaining();
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        catch (BufferUnderflowException e)
+        {
+            // a truncated snapshot is parsed again
+            return false;
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            // so is a damaged one
+            return false;
+        }
+    }
+
+    /**
+     * Reads a count of entries or plural forms, each of them takes at least the four bytes of a length,
+     * so a count that is negative or exceeds the rest of the snapshot means it is damaged
+     */
+    private static int readCount(ByteBuffer in) throws IOException
+    {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / 4)
+        {
+            throw new IOException("Damaged snapshot");
+        }
+        return count;
+    }
+
+    /**
+     * Reads a string, a length that is negative for a string that can not be null or exceeds the snapshot means it is damaged
+     */
+    private static String readString(ByteBuffer in, boolean nullable) throws IOException
+    {
+        int length = in.getInt();
+        if (length == -1 && nullable)
+        {
+            return null;
+        }
+        if (length < 0 || length > in.remaining())
+        {
+            throw new IOException("Damaged snapshot");
+        }
+        String string = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return string;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first and moves it into place, so readers never see a partial snapshot.
+     * If the file system can not move atomically the snapshot replaces the old one with a plain move,
+     * a reader seeing a partial snapshot parses the PO files again.
+     * Failing to write the snapshot only costs the next start a parse.
+     */
+    private void writeSnapshot(File file, byte[] checksum, Map<String, String> singular, Map<String, String[]> plural)
+    {
+        File temp = null;
+        try
+        {
+            if (!this.cacheDirectory.isDirectory() && !this.cacheDirectory.mkdirs())
+            {
+                return;
+            }
+            temp = File.createTempFile(file.getName(), ".tmp", this.cacheDirectory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(checksum);
+                out.writeInt(singular.size());
+                for (Map.Entry<String, String> entry : singular.entrySet())
+                {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue());
+                }
+                out.writeInt(plural.size());
+                for (Map.Entry<String, String[]> entry : plural.entrySet())
+                {
+                    writeString(out, entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    for (String form : entry.getValue())
+                    {
+                        writeString(out, form);
+                    }
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+            try
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e)
+        {
+            if (temp != null)
+            {
+                temp.delete();
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException
+    {
+        if (string == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -26,29 +26,37 @@ import org.cubeengine.i18n.translation.TranslationContainer;
 import org.cubeengine.i18n.translation.TranslationLoader;
 import org.cubeengine.i18n.translation.TranslationLoadingException;
 
-import java.io.BufferedReader;
+import java.io.CharArrayReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class GettextLoader implements TranslationLoader
 {
     private final List<URL> poFiles;
     private final Charset charset;
+    private volatile boolean ignoreFuzzy = false;
+    private volatile int parallelThreshold = 0;
+    private volatile ForkJoinPool pool = ForkJoinPool.commonPool();
 
-    private static Pattern bigPattern = Pattern.compile("(msgid (\".*\"\\n)+)((msgstr (\".*\"\\n)+)|(msgid_plural (\".*\"\\n)+(msgstr\\[\\d+] (\".*\"\\n)+)+))");
-    private static Pattern pluralPattern = Pattern.compile("(msgid ((\".*\"\\n)+))msgid_plural ((\".*\"\\n)+)((msgstr\\[\\d+] ((\".*\"\\n)+))+)");
-    private static Pattern pluralTPattern = Pattern.compile("msgstr\\[\\d+] ((\".*\"\\n)+)");
-    private static Pattern singularPattern = Pattern.compile("(msgid ((\".*\"\\n)+))msgstr ((\".*\"\\n)+)");
+    /**
+     * The smallest chunk worth a task of its own in chars
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 18;
+    private static final int CHUNKS_PER_THREAD = 4;
 
     public GettextLoader(Charset charset, List<URL> poFiles)
     {
@@ -56,10 +64,115 @@ public class GettextLoader implements TranslationLoader
         this.poFiles = poFiles;
     }
 
+    public Charset getCharset()
+    {
+        return charset;
+    }
+
+    public boolean isIgnoreFuzzy()
+    {
+        return ignoreFuzzy;
+    }
+
+    /**
+     * Sets whether entries flagged as fuzzy are ignored like msgfmt does by default
+     *
+     * @param ignoreFuzzy true to ignore fuzzy entries
+     */
+    public void setIgnoreFuzzy(boolean ignoreFuzzy)
+    {
+        this.ignoreFuzzy = ignoreFuzzy;
+    }
+
+    public int getParallelThreshold()
+    {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the size from which PO files are split at entry boundaries into chunks that are parsed in parallel.
+     * The result is the same as parsing the file at once, a later entry replaces an earlier one with the same message.
+     * Only files whose length reaches the threshold or is unknown are read into memory as a whole,
+     * smaller files are parsed while they are read.
+     *
+     * @param parallelThreshold the size in chars or 0 to parse every file at once
+     */
+    public void setParallelThreshold(int parallelThreshold)
+    {
+        if (parallelThreshold < 0)
+        {
+            throw new IllegalArgumentException("The parallel threshold must not be negative!");
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+    /**
+     * Sets the pool parsing the chunks of large PO files, the common pool by default
+     *
+     * @param pool the pool
+     */
+    public void setPool(ForkJoinPool pool)
+    {
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("The pool must not be null!");
+        }
+        this.pool = pool;
+    }
+
     public TranslationContainer loadTranslations(TranslationContainer container, Locale locale) throws TranslationLoadingException
     {
-        Map<String, String> singularMessages = new HashMap<String, String>();
-        Map<String, String[]> pluralMessages = new HashMap<String, String[]>();
+        for (URL url : this.getSources(locale))
+        {
+            Map<String, String> singularMessages = new HashMap<String, String>();
+            Map<String, String[]> pluralMessages = new HashMap<String, String[]>();
+            try
+            {
+                URLConnection connection = url.openConnection();
+                Reader in = new InputStreamReader(connection.getInputStream(), this.charset);
+                try
+                {
+                    int threshold = this.parallelThreshold;
+                    long length = connection.getContentLengthLong();
+                    // a file has at least as many bytes as chars in the charsets PO files use
+                    if (threshold > 0 && (length < 0 || length >= threshold))
+                    {
+                        this.parseTranslations(readFully(in), singularMessages, pluralMessages);
+                    }
+                    else
+                    {
+                        this.parseTranslations(in, singularMessages, pluralMessages);
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch (Exception e)
+            {
+                throw new TranslationLoadingException(url + ": " + e.getMessage(), e);
+            }
+
+            container.merge(singularMessages, pluralMessages);
+        }
+        return container;
+    }
+
+    /**
+     * Returns the PO files contributing translations to the given locale, the more specific file first
+     *
+     * @param locale the locale
+     *
+     * @return the PO files
+     */
+    public Set<URL> getSources(Locale locale)
+    {
         Set<URL> loadFrom = new LinkedHashSet<URL>();
         for (URL poFile : poFiles)
         {
@@ -70,74 +183,340 @@ public class GettextLoader implements TranslationLoader
                 loadFrom.add(poFile);
             }
         }
-        for (URL url : loadFrom)
+        return loadFrom;
+    }
+
+    public void parseTranslations(String lines, Map<String, String> singular, Map<String, String[]> plural)
+    {
+        try
         {
-            try
+            this.parseTranslations(new Content(lines.toCharArray(), lines.length()), singular, plural);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses the PO entries of the reader into the given maps, later entries replace earlier ones with the same message.
+     * The header entry and untranslated entries are skipped.
+     *
+     * @param reader   the reader
+     * @param singular the map for singular translations
+     * @param plural   the map for plural translations
+     *
+     * @throws IOException if reading failed or the PO file is malformed
+     */
+    public void parseTranslations(Reader reader, Map<String, String> singular, Map<String, String[]> plural) throws IOException
+    {
+        PoParser parser = new PoParser(reader, this.charset);
+        PoEntry entry;
+        while ((entry = parser.next()) != null)
+        {
+            this.addTranslation(entry, singular, plural);
+        }
+    }
+
+    /**
+     * Parses the PO entries of the content like {@link #parseTranslations(Reader, Map, Map)},
+     * in parallel chunks if the content reaches the parallel threshold
+     */
+    private void parseTranslations(Content content, Map<String, String> singular, Map<String, String[]> plural) throws IOException
+    {
+        char[] chars = content.chars;
+        int length = content.length;
+        int threshold = this.parallelThreshold;
+        ForkJoinPool pool = this.pool;
+        int chunkCount = Math.min(length / MIN_CHUNK_SIZE, pool.getParallelism() * CHUNKS_PER_THREAD);
+        if (threshold == 0 || length < threshold || chunkCount < 2)
+        {
+            this.parseTranslations(new CharArrayReader(chars, 0, length), singular, plural);
+            return;
+        }
+        Chunk[] chunks = this.split(chars, length, chunkCount);
+        pool.invoke(new ChunkTask(chunks, 0, chunks.length));
+        // added in file order, so later entries replace earlier ones like in a single pass
+        for (Chunk chunk : chunks)
+        {
+            if (chunk.failure != null)
+            {
+                throw chunk.failure;
+            }
+            for (PoEntry entry : chunk.entries)
             {
-                StringBuilder sb = new StringBuilder();
+                this.addTranslation(entry, singular, plural);
+            }
+        }
+    }
 
-                BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream(), this.charset));
-                String inputLine;
-                while ((inputLine = in.readLine()) != null)
+    /**
+     * Splits the content into about the given number of chunks at entry boundaries
+     */
+    private Chunk[] split(char[] chars, int length, int chunkCount)
+    {
+        Chunk[] chunks = new Chunk[chunkCount];
+        int count = 0;
+        int start = 0;
+        int line = 1;
+        int target = length / chunkCount;
+        while (count < chunkCount - 1)
+        {
+            int end = nextBoundary(chars, Math.max(start + target, (count + 1) * target), length);
+            if (end < 0)
+            {
+                break;
+            }
+            chunks[count++] = new Chunk(chars, start, end, line, this.charset);
+            for (int i = start; i < end; i++)
+            {
+                if (chars[i] == '\n')
                 {
-                    sb.append(inputLine).append("\n");
+                    line++;
                 }
-                in.close();
+            }
+            start = end;
+        }
+        chunks[count++] = new Chunk(chars, start, length, line, this.charset);
+        return Arrays.copyOf(chunks, count);
+    }
 
-                String content = sb.toString();
-                parseTranslations(content, singularMessages, pluralMessages);
+    /**
+     * Finds the start of the first entry after the given position that follows a blank line and a complete entry.
+     * Strings can not span lines, so a blank line is never part of a string.
+     *
+     * @return the index of the first char of the entry or -1 if there is none
+     */
+    private static int nextBoundary(char[] chars, int from, int length)
+    {
+        for (int i = from; i < length; i++)
+        {
+            if (chars[i] != '\n')
+            {
+                continue;
             }
-            catch (Exception e)
+            int next = skipBlank(chars, i + 1, length);
+            if (next >= length || chars[next] != '\n')
+            {
+                continue;
+            }
+            // i ends a line followed by at least one blank line, find the first line with content
+            int lineStart = next + 1;
+            int content = lineStart;
+            while (content < length && isWhitespace(chars[content]))
+            {
+                if (chars[content] == '\n')
+                {
+                    lineStart = content + 1;
+                }
+                content++;
+            }
+            if (content < length && content == lineStart && startsEntry(chars, content, length) && endsEntry(chars, i))
             {
-                throw new TranslationLoadingException(e);
+                return content;
             }
+            i = lineStart - 1;
+        }
+        return -1;
+    }
 
-            container.merge(singularMessages, pluralMessages);
+    private static int skipBlank(char[] chars, int from, int length)
+    {
+        while (from < length && (chars[from] == ' ' || chars[from] == '\t' || chars[from] == '\r'))
+        {
+            from++;
         }
-        return container;
+        return from;
     }
 
-    public void parseTranslations(String lines, Map<String, String> singular, Map<String, String[]> plural)
+    private static boolean isWhitespace(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static boolean startsEntry(char[] chars, int position, int length)
+    {
+        return chars[position] == '#' || startsWith(chars, position, length, "msgctxt") || startsWith(chars, position, length, "msgid");
+    }
+
+    /**
+     * Checks whether the last keyword before the line break at the given position is a msgstr,
+     * so the entry before is complete. Continuation lines holding strings are skipped.
+     */
+    private static boolean endsEntry(char[] chars, int lineBreak)
     {
-        Matcher matcher = bigPattern.matcher(lines);
-        while (matcher.find())
+        int end = lineBreak;
+        while (end > 0)
         {
-            String group = matcher.group();
-            Matcher sMatcher = singularPattern.matcher(group);
-            Matcher pMatcher = pluralPattern.matcher(group);
-            if (sMatcher.find())
+            int start = end;
+            while (start > 0 && chars[start - 1] != '\n')
             {
-                singular.put(mergeString(sMatcher.group(2)), mergeString(sMatcher.group(4)));
+                start--;
             }
-            if (pMatcher.find())
+            int content = skipBlank(chars, start, end);
+            if (content < end && chars[content] != '"')
             {
-                String plurals = pMatcher.group(6);
+                return startsWith(chars, content, end, "msgstr");
+            }
+            end = start - 1;
+        }
+        return false;
+    }
+
+    private static boolean startsWith(char[] chars, int position, int length, String prefix)
+    {
+        if (position + prefix.length() > length)
+        {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++)
+        {
+            if (chars[position + i] != prefix.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Content readFully(Reader reader) throws IOException
+    {
+        char[] chars = new char[1 << 16];
+        int length = 0;
+        int read;
+        while ((read = reader.read(chars, length, chars.length - length)) != -1)
+        {
+            length += read;
+            if (length == chars.length)
+            {
+                chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+        }
+        return new Content(chars, length);
+    }
 
-                Matcher ptMatcher = pluralTPattern.matcher(plurals);
-                List<String> pluralT = new ArrayList<String>();
-                while (ptMatcher.find())
+    /**
+     * Puts the translation of the entry into the given maps, replacing an earlier translation of the same message.
+     * The header entry, untranslated entries and fuzzy entries if they are ignored are skipped.
+     *
+     * @param entry    the entry
+     * @param singular the map for singular translations
+     * @param plural   the map for plural translations
+     */
+    void addTranslation(PoEntry entry, Map<String, String> singular, Map<String, String[]> plural)
+    {
+        if (entry.isHeader() || (entry.isFuzzy() && this.ignoreFuzzy))
+        {
+            return;
+        }
+        String[] strings = entry.getStrings();
+        if (entry.isPlural())
+        {
+            boolean translated = false;
+            for (int i = 0; i < strings.length; i++)
+            {
+                if (strings[i].length() == 0)
                 {
-                    pluralT.add(mergeString(ptMatcher.group(1)));
+                    // an empty form falls back to the parent language
+                    strings[i] = null;
                 }
+                else
+                {
+                    translated = true;
+                }
+            }
+            if (translated)
+            {
+                plural.put(entry.getPluralKey(), strings);
+            }
+        }
+        else if (strings[0].length() != 0)
+        {
+            singular.put(entry.getKey(), strings[0]);
+        }
+    }
+
+    /**
+     * The chars of a PO file read into memory
+     */
+    private static final class Content
+    {
+        private final char[] chars;
+        private final int length;
+
+        private Content(char[] chars, int length)
+        {
+            this.chars = chars;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A part of a PO file, its entries are parsed in parallel and added in file order afterwards
+     */
+    private static final class Chunk
+    {
+        private final char[] chars;
+        private final int start;
+        private final int end;
+        private final int line;
+        private final Charset charset;
+        private final List<PoEntry> entries = new ArrayList<PoEntry>();
+        private IOException failure;
 
-                plural.put(mergeString(pMatcher.group(4)), pluralT.toArray(new String[0]));
+        private Chunk(char[] chars, int start, int end, int line, Charset charset)
+        {
+            this.chars = chars;
+            this.start = start;
+            this.end = end;
+            this.line = line;
+            this.charset = charset;
+        }
 
+        private void parse()
+        {
+            try
+            {
+                PoParser parser = new PoParser(new CharArrayReader(this.chars, this.start, this.end - this.start), this.line, this.charset);
+                PoEntry entry;
+                while ((entry = parser.next()) != null)
+                {
+                    this.entries.add(entry);
+                }
+            }
+            catch (IOException e)
+            {
+                this.failure = e;
             }
         }
     }
 
-    private static String mergeString(String lines) {
-        StringBuilder sb = new StringBuilder();
-        for (String line : lines.split("\n"))
+    /**
+     * Parses a range of chunks by splitting it in halves
+     */
+    private static final class ChunkTask extends RecursiveAction
+    {
+        private final Chunk[] chunks;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(Chunk[] chunks, int from, int to)
         {
-            line = line.substring(1, line.length() - 1)
-                .replace("\\n", "\n")
-                .replace("\\r", "\r")
-                .replace("\\t", "\t")
-                .replace("\\\\", "\\")
-                .replace("\\\"", "\"");
-            sb.append(line);
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (this.to - this.from == 1)
+            {
+                this.chunks[this.from].parse();
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new ChunkTask(this.chunks, this.from, middle), new ChunkTask(this.chunks, middle, this.to));
         }
-        return sb.toString();
     }
 }
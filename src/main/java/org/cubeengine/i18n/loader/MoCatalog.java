@@ -0,0 +1,623 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * A memory-mapped GNU .mo catalog. Messages are looked up through the hash table of the file
+ * and translations are decoded on first use.
+ */
+final class MoCatalog
+{
+    private static final int MAGIC = 0x950412de;
+    private static final int HEADER_SIZE = 28;
+
+    private final ByteBuffer data;
+    private final int count;
+    private final int originals;
+    private final int translations;
+    private final int hashSize;
+    private final int hashTable;
+    private final Charset charset;
+    private final boolean utf8;
+    /**
+     * An open-addressed table from msgid_plural to the entry index + 1, the file's hash table only knows the msgid
+     */
+    private final int[] pluralIndex;
+    private final int pluralCount;
+    private final String[] decoded;
+    private final String[][] decodedForms;
+
+    MoCatalog(ByteBuffer data, Charset defaultCharset) throws IOException
+    {
+        if (data.capacity() < HEADER_SIZE)
+        {
+            throw new IOException("Not a mo file");
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        int magic = data.getInt(0);
+        if (magic != MAGIC)
+        {
+            data.order(ByteOrder.BIG_ENDIAN);
+            if (data.getInt(0) != MAGIC)
+            {
+                throw new IOException("Not a mo file");
+            }
+        }
+        if ((data.getInt(4) >>> 16) > 1)
+        {
+            throw new IOException("Unsupported mo file revision " + data.getInt(4));
+        }
+        this.data = data;
+        this.count = data.getInt(8);
+        this.originals = data.getInt(12);
+        this.translations = data.getInt(16);
+        this.hashSize = data.getInt(20);
+        this.hashTable = data.getInt(24);
+        if (this.count < 0 || !this.fits(this.originals, this.count * 8L) || !this.fits(this.translations, this.count * 8L)
+            || (this.hashSize != 0 && (this.hashSize < 3 || !this.fits(this.hashTable, this.hashSize * 4L))))
+        {
+            throw new IOException("Malformed mo file");
+        }
+        for (int i = 0; i < this.count; i++)
+        {
+            if (!this.fits(this.offset(this.originals, i), this.length(this.originals, i) + 1L)
+                || !this.fits(this.offset(this.translations, i), this.length(this.translations, i) + 1L))
+            {
+                throw new IOException("Malformed mo file");
+            }
+        }
+        for (int i = 0; i < this.hashSize; i++)
+        {
+            // the entries are indices + 1, 0 marks an empty slot
+            int entry = data.getInt(this.hashTable + i * 4);
+            if (entry < 0 || entry > this.count)
+            {
+                throw new IOException("Malformed mo file");
+            }
+        }
+        this.charset = this.readCharset(defaultCharset);
+        this.utf8 = StandardCharsets.UTF_8.equals(this.charset);
+        int pluralCount = 0;
+        for (int i = 0; i < this.count; i++)
+        {
+            if (this.isPlural(i))
+            {
+                pluralCount++;
+            }
+        }
+        this.pluralCount = pluralCount;
+        this.pluralIndex = this.indexPlurals();
+        this.decoded = new String[this.count];
+        this.decodedForms = new String[this.count][];
+    }
+
+    static MoCatalog map(File file, Charset defaultCharset) throws IOException
+    {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = in.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("The mo file " + file + " is too large");
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MoCatalog(buffer, defaultCharset);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    int size()
+    {
+        return this.count;
+    }
+
+    /**
+     * Returns the number of entries without plural forms, not counting the header
+     */
+    int singularCount()
+    {
+        boolean header = this.count != 0 && this.length(this.originals, 0) == 0;
+        return this.count - this.pluralCount - (header ? 1 : 0);
+    }
+
+    int pluralCount()
+    {
+        return this.pluralCount;
+    }
+
+    /**
+     * Returns the translation of a message without plural forms
+     *
+     * @param message the message
+     *
+     * @return the translation or null
+     */
+    String getSingular(String message)
+    {
+        int index = this.find(message);
+        if (index < 0 || this.isPlural(index))
+        {
+            return null;
+        }
+        return this.translation(index);
+    }
+
+    /**
+     * Returns a plural form of the entry with the given msgid_plural
+     *
+     * @param plural the plural message
+     * @param form   the index of the plural form
+     *
+     * @return the translation or null
+     */
+    String getPlural(String plural, int form)
+    {
+        if (this.pluralIndex.length == 0)
+        {
+            return null;
+        }
+        int mask = this.pluralIndex.length - 1;
+        for (int slot = this.hash(plural) & mask; ; slot = (slot + 1) & mask)
+        {
+            int entry = this.pluralIndex[slot];
+            if (entry == 0)
+            {
+                return null;
+            }
+            int index = entry - 1;
+            int start = this.pluralStart(index);
+            if (this.matches(plural, start, this.offset(this.originals, index) + this.length(this.originals, index) - start))
+            {
+                return this.pluralForm(index, form);
+            }
+        }
+    }
+
+    boolean isPlural(int index)
+    {
+        return this.pluralStart(index) >= 0;
+    }
+
+    /**
+     * Returns the msgid of an entry, the msgid_plural for plural entries
+     */
+    String key(int index)
+    {
+        int offset = this.offset(this.originals, index);
+        int end = offset + this.length(this.originals, index);
+        int start = this.pluralStart(index);
+        return this.decode(start < 0 ? offset : start, start < 0 ? end - offset : end - start);
+    }
+
+    String translation(int index)
+    {
+        String translation = this.decoded[index];
+        if (translation == null)
+        {
+            translation = this.decode(this.offset(this.translations, index), this.length(this.translations, index));
+            this.decoded[index] = translation;
+        }
+        return translation;
+    }
+
+    /**
+     * Returns a copy of the plural forms of an entry, empty forms are null
+     */
+    String[] pluralForms(int index)
+    {
+        return this.decodedForms(index).clone();
+    }
+
+    private String pluralForm(int index, int form)
+    {
+        String[] forms = this.decodedForms(index);
+        if (form < 0 || form >= forms.length)
+        {
+            return null;
+        }
+        return forms[form];
+    }
+
+    /**
+     * Splits the translation of a plural entry into its forms on first use, the forms are separated by NUL bytes
+     */
+    private String[] decodedForms(int index)
+    {
+        String[] forms = this.decodedForms[index];
+        if (forms == null)
+        {
+            int offset = this.offset(this.translations, index);
+            int end = offset + this.length(this.translations, index);
+            int count = 1;
+            for (int i = offset; i < end; i++)
+            {
+                if (this.data.get(i) == 0)
+                {
+                    count++;
+                }
+            }
+            forms = new String[count];
+            int start = offset;
+            for (int form = 0; form < count; form++)
+            {
+                int stop = start;
+                while (stop < end && this.data.get(stop) != 0)
+                {
+                    stop++;
+                }
+                forms[form] = stop == start ? null : this.decode(start, stop - start);
+                start = stop + 1;
+            }
+            this.decodedForms[index] = forms;
+        }
+        return forms;
+    }
+
+    private int find(String message)
+    {
+        if (message.length() == 0)
+        {
+            // the header is no translation
+            return -1;
+        }
+        if (this.hashSize == 0)
+        {
+            return this.binarySearch(message);
+        }
+        int hash = this.hash(message);
+        int index = Integer.remainderUnsigned(hash, this.hashSize);
+        // the size is at least 3, which was checked when the file was opened
+        int increment = 1 + Integer.remainderUnsigned(hash, this.hashSize - 2);
+        // a damaged table might have no empty slot, so no more slots than the table has are probed
+        for (int step = 0; step < this.hashSize; step++)
+        {
+            int entry = this.data.getInt(this.hashTable + index * 4);
+            if (entry == 0)
+            {
+                return -1;
+            }
+            entry--;
+            if (this.matchesId(message, entry))
+            {
+                return entry;
+            }
+            if (index >= this.hashSize - increment)
+            {
+                index -= this.hashSize - increment;
+            }
+            else
+            {
+                index += increment;
+            }
+        }
+        return -1;
+    }
+
+    private int binarySearch(String message)
+    {
+        byte[] key = message.getBytes(this.charset);
+        int low = 0;
+        int high = this.count - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int offset = this.offset(this.originals, mid);
+            int length = this.idLength(mid);
+            int compared = 0;
+            for (int i = 0; compared == 0 && i < Math.min(length, key.length); i++)
+            {
+                compared = (this.data.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+            }
+            if (compared == 0)
+            {
+                compared = length - key.length;
+            }
+            if (compared == 0)
+            {
+                return mid;
+            }
+            if (compared < 0)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matchesId(String message, int index)
+    {
+        return this.matches(message, this.offset(this.originals, index), this.idLength(index));
+    }
+
+    /**
+     * Returns the length of the msgid of an entry, which excludes the msgid_plural
+     */
+    private int idLength(int index)
+    {
+        int start = this.pluralStart(index);
+        return start < 0 ? this.length(this.originals, index) : start - 1 - this.offset(this.originals, index);
+    }
+
+    /**
+     * Returns the offset of the msgid_plural of an entry or -1 if it has none
+     */
+    private int pluralStart(int index)
+    {
+        int offset = this.offset(this.originals, index);
+        int end = offset + this.length(this.originals, index);
+        for (int i = offset; i < end; i++)
+        {
+            if (this.data.get(i) == 0)
+            {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private int[] indexPlurals()
+    {
+        if (this.pluralCount == 0)
+        {
+            return new int[0];
+        }
+        int[] table = new int[Integer.highestOneBit(this.pluralCount) << 2];
+        int mask = table.length - 1;
+        for (int i = 0; i < this.count; i++)
+        {
+            int start = this.pluralStart(i);
+            if (start >= 0)
+            {
+                int end = this.offset(this.originals, i) + this.length(this.originals, i);
+                int slot = this.hash(start, end - start) & mask;
+                while (table[slot] != 0)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+            }
+        }
+        return table;
+    }
+
+    private Charset readCharset(Charset defaultCharset)
+    {
+        if (this.count == 0 || this.length(this.originals, 0) != 0)
+        {
+            return defaultCharset;
+        }
+        // the header is ASCII, so it can be read before the charset is known
+        String header = new String(this.bytes(this.offset(this.translations, 0), this.length(this.translations, 0)), StandardCharsets.ISO_8859_1);
+        int start = header.indexOf("charset=");
+        if (start < 0)
+        {
+            return defaultCharset;
+        }
+        start += "charset=".length();
+        int end = start;
+        while (end < header.length() && !Character.isWhitespace(header.charAt(end)) && header.charAt(end) != ';')
+        {
+            end++;
+        }
+        try
+        {
+            return Charset.forName(header.substring(start, end));
+        }
+        catch (IllegalCharsetNameException e)
+        {
+            return defaultCharset;
+        }
+        catch (UnsupportedCharsetException e)
+        {
+            return defaultCharset;
+        }
+    }
+
+    /**
+     * The hashpjw function gettext uses for the hash table of mo files, applied to the encoded message
+     */
+    private int hash(String message)
+    {
+        int hash = 0;
+        if (!this.utf8)
+        {
+            for (byte b : message.getBytes(this.charset))
+            {
+                hash = hashStep(hash, b & 0xFF);
+            }
+            return hash;
+        }
+        for (int i = 0; i < message.length(); i++)
+        {
+            int codePoint = codePointAt(message, i);
+            if (Character.isSupplementaryCodePoint(codePoint))
+            {
+                i++;
+            }
+            int length = utf8Length(codePoint);
+            for (int j = 0; j < length; j++)
+            {
+                hash = hashStep(hash, utf8Byte(codePoint, length, j));
+            }
+        }
+        return hash;
+    }
+
+    private int hash(int offset, int length)
+    {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++)
+        {
+            hash = hashStep(hash, this.data.get(i) & 0xFF);
+        }
+        return hash;
+    }
+
+    private static int hashStep(int hash, int b)
+    {
+        hash = (hash << 4) + b;
+        int high = hash & 0xF0000000;
+        if (high != 0)
+        {
+            hash ^= high >>> 24;
+            hash ^= high;
+        }
+        return hash;
+    }
+
+    /**
+     * Compares the message with the encoded string at the given position without encoding the message into a new array
+     */
+    private boolean matches(String message, int offset, int length)
+    {
+        if (!this.utf8)
+        {
+            byte[] bytes = message.getBytes(this.charset);
+            if (bytes.length != length)
+            {
+                return false;
+            }
+            for (int i = 0; i < length; i++)
+            {
+                if (this.data.get(offset + i) != bytes[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        int position = offset;
+        int end = offset + length;
+        for (int i = 0; i < message.length(); i++)
+        {
+            int codePoint = codePointAt(message, i);
+            if (Character.isSupplementaryCodePoint(codePoint))
+            {
+                i++;
+            }
+            int units = utf8Length(codePoint);
+            if (end - position < units)
+            {
+                return false;
+            }
+            for (int j = 0; j < units; j++)
+            {
+                if ((this.data.get(position++) & 0xFF) != utf8Byte(codePoint, units, j))
+                {
+                    return false;
+                }
+            }
+        }
+        return position == end;
+    }
+
+    /**
+     * Returns the code point at the index, unpaired surrogates are encoded as '?' like {@link String#getBytes} does
+     */
+    private static int codePointAt(String message, int index)
+    {
+        int codePoint = message.codePointAt(index);
+        if (!Character.isSupplementaryCodePoint(codePoint) && Character.isSurrogate((char)codePoint))
+        {
+            return '?';
+        }
+        return codePoint;
+    }
+
+    private static int utf8Length(int codePoint)
+    {
+        if (codePoint < 0x80)
+        {
+            return 1;
+        }
+        if (codePoint < 0x800)
+        {
+            return 2;
+        }
+        return codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private static int utf8Byte(int codePoint, int length, int index)
+    {
+        if (length == 1)
+        {
+            return codePoint;
+        }
+        int shift = (length - 1 - index) * 6;
+        if (index == 0)
+        {
+            return (0xF00 >> length & 0xFF) | codePoint >> shift;
+        }
+        return 0x80 | codePoint >> shift & 0x3F;
+    }
+
+    private String decode(int offset, int length)
+    {
+        return new String(this.bytes(offset, length), this.charset);
+    }
+
+    private byte[] bytes(int offset, int length)
+    {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = this.data.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return bytes;
+    }
+
+    private int length(int table, int index)
+    {
+        return this.data.getInt(table + index * 8);
+    }
+
+    private int offset(int table, int index)
+    {
+        return this.data.getInt(table + index * 8 + 4);
+    }
+
+    private boolean fits(long offset, long length)
+    {
+        return offset >= 0 && length >= 0 && offset + length <= this.data.capacity();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.loader;
+
+import org.cubeengine.i18n.translation.TranslationContainer;
+import org.cubeengine.i18n.translation.TranslationLoader;
+import org.cubeengine.i18n.translation.TranslationLoadingException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Loads translations from compiled GNU .mo files. The files are memory-mapped and looked up in place,
+ * so loading a language costs a few objects regardless of the size of its catalogs.
+ */
+public class MoLoader implements TranslationLoader
+{
+    private final List<File> moFiles;
+    private final Charset charset;
+
+    /**
+     * @param charset the charset of catalogs that do not declare one in their header
+     * @param moFiles the mo files, named like the PO files of the {@link GettextLoader}
+     */
+    public MoLoader(Charset charset, List<File> moFiles)
+    {
+        this.charset = charset;
+        this.moFiles = moFiles;
+    }
+
+    public TranslationContainer loadTranslations(TranslationContainer container, Locale locale) throws TranslationLoadingException
+    {
+        List<MoCatalog> catalogs = new ArrayList<MoCatalog>();
+        for (File file : this.getSources(locale))
+        {
+            try
+            {
+                catalogs.add(MoCatalog.map(file, this.charset));
+            }
+            catch (IOException e)
+            {
+                throw new TranslationLoadingException(file + ": " + e.getMessage(), e);
+            }
+        }
+        if (catalogs.isEmpty())
+        {
+            return container;
+        }
+        return new MoTranslationContainer(container, catalogs);
+    }
+
+    /**
+     * Returns the mo files contributing translations to the given locale, the more specific file first
+     *
+     * @param locale the locale
+     *
+     * @return the mo files
+     */
+    public Set<File> getSources(Locale locale)
+    {
+        Set<File> loadFrom = new LinkedHashSet<File>();
+        for (File moFile : moFiles)
+        {
+            String fileName = moFile.getName();
+            if (fileName.endsWith(locale.getLanguage().toLowerCase() + "_" + locale.getCountry().toUpperCase() + ".mo")
+                    || fileName.endsWith(locale.getLanguage().toLowerCase() + ".mo"))
+            {
+                loadFrom.add(moFile);
+            }
+        }
+        return loadFrom;
+    }
+}
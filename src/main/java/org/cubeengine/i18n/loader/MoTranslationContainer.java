@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.loader;
+
+import org.cubeengine.i18n.translation.TranslationContainer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A translation container reading its translations from memory-mapped .mo files.
+ * Translations added to the container directly take precedence over the catalogs,
+ * the catalogs are asked in order.
+ */
+public class MoTranslationContainer extends TranslationContainer
+{
+    private final MoCatalog[] catalogs;
+
+    MoTranslationContainer(TranslationContainer base, List<MoCatalog> catalogs)
+    {
+        super(new HashMap<String, String>(base.getSingularMessages()), new HashMap<String, String[]>(base.getPluralMessages()));
+        this.catalogs = catalogs.toArray(new MoCatalog[catalogs.size()]);
+    }
+
+    @Override
+    public String getSingular(String message)
+    {
+        String translation = super.getSingular(message);
+        for (int i = 0; translation == null && i < this.catalogs.length; i++)
+        {
+            translation = this.catalogs[i].getSingular(message);
+        }
+        return translation;
+    }
+
+    @Override
+    public String getPlural(String message, int index)
+    {
+        String translation = super.getPlural(message, index);
+        for (int i = 0; translation == null && i < this.catalogs.length; i++)
+        {
+            translation = this.catalogs[i].getPlural(message, index);
+        }
+        return translation;
+    }
+
+    /**
+     * The catalogs already live outside of the heap, so this container is not packed again
+     */
+    @Override
+    public TranslationContainer freeze()
+    {
+        return this;
+    }
+
+    @Override
+    public TranslationContainer fingerprint()
+    {
+        return this;
+    }
+
+    /**
+     * Dropping translations of the catalogs would decode the remaining ones onto the heap, so they are kept
+     */
+    @Override
+    public TranslationContainer difference(TranslationContainer base, boolean plurals)
+    {
+        return this;
+    }
+
+    /**
+     * The messages of the catalogs are not interned, enumerating them would decode the catalogs onto the heap
+     */
+    @Override
+    public boolean usesSymbols()
+    {
+        return false;
+    }
+
+    /**
+     * Decodes all singular translations of the catalogs, so this is expensive for large catalogs
+     */
+    @Override
+    public Map<String, String> getSingularMessages()
+    {
+        Map<String, String> messages = new HashMap<String, String>(super.getSingularMessages());
+        for (MoCatalog catalog : this.catalogs)
+        {
+            for (int i = 0; i < catalog.size(); i++)
+            {
+                if (!catalog.isPlural(i))
+                {
+                    String key = catalog.key(i);
+                    if (key.length() != 0 && !messages.containsKey(key))
+                    {
+                        messages.put(key, catalog.translation(i));
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableMap(messages);
+    }
+
+    /**
+     * Decodes all plural translations of the catalogs, so this is expensive for large catalogs
+     */
+    @Override
+    public Map<String, String[]> getPluralMessages()
+    {
+        Map<String, String[]> messages = new HashMap<String, String[]>(super.getPluralMessages());
+        for (MoCatalog catalog : this.catalogs)
+        {
+            for (int i = 0; i < catalog.size(); i++)
+            {
+                if (catalog.isPlural(i))
+                {
+                    String key = catalog.key(i);
+                    if (!messages.containsKey(key))
+                    {
+                        messages.put(key, catalog.pluralForms(i));
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableMap(messages);
+    }
+
+    /**
+     * Counts the entries from the headers of the catalogs without decoding them,
+     * so a message translated by several catalogs or directly is counted for each of them
+     */
+    @Override
+    public int size()
+    {
+        int size = super.size();
+        for (MoCatalog catalog : this.catalogs)
+        {
+            size += catalog.singularCount() + catalog.pluralCount();
+        }
+        return size;
+    }
+}
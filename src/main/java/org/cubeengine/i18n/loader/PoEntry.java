@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.loader;
+
+import org.cubeengine.i18n.translation.TranslationContainer;
+
+/**
+ * A single entry of a PO file.
+ */
+public class PoEntry
+{
+    /**
+     * Separates the context from the message in the key of an entry with context, as done by GNU gettext
+     */
+    public static final char CONTEXT_SEPARATOR = TranslationContainer.CONTEXT_SEPARATOR;
+
+    private final String context;
+    private final String id;
+    private final String idPlural;
+    private final String[] strings;
+    private final boolean fuzzy;
+
+    public PoEntry(String context, String id, String idPlural, String[] strings, boolean fuzzy)
+    {
+        this.context = context;
+        this.id = id;
+        this.idPlural = idPlural;
+        this.strings = strings;
+        this.fuzzy = fuzzy;
+    }
+
+    /**
+     * Returns the msgctxt of this entry
+     *
+     * @return the context or null
+     */
+    public String getContext()
+    {
+        return context;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    /**
+     * Returns the msgid_plural of this entry
+     *
+     * @return the plural message or null if this is a singular entry
+     */
+    public String getIdPlural()
+    {
+        return idPlural;
+    }
+
+    /**
+     * Returns the msgstr of a singular entry or the msgstr[n] of a plural entry
+     *
+     * @return the translations
+     */
+    public String[] getStrings()
+    {
+        return strings;
+    }
+
+    public boolean isFuzzy()
+    {
+        return fuzzy;
+    }
+
+    public boolean isPlural()
+    {
+        return idPlural != null;
+    }
+
+    /**
+     * Checks whether this is the header entry, which has an empty msgid and no context
+     *
+     * @return true if this is the header
+     */
+    public boolean isHeader()
+    {
+        return context == null && id.length() == 0;
+    }
+
+    /**
+     * Returns the key the singular translation is stored with
+     *
+     * @return the msgid prefixed by the context if there is one
+     */
+    public String getKey()
+    {
+        return TranslationContainer.contextKey(context, id);
+    }
+
+    /**
+     * Returns the key the plural translations are stored with
+     *
+     * @return the msgid_plural prefixed by the context if there is one
+     */
+    public String getPluralKey()
+    {
+        return TranslationContainer.contextKey(context, idPlural);
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.loader;
+
+import org.cubeengine.i18n.I18nService;
+import org.cubeengine.i18n.language.DefinitionLoadingException;
+import org.cubeengine.i18n.language.Language;
+import org.cubeengine.i18n.language.LanguageDefinition;
+import org.cubeengine.i18n.language.LanguageLoader;
+import org.cubeengine.i18n.plural.PluralExpr;
+import org.cubeengine.i18n.plural.PluralExpressionParseException;
+import org.cubeengine.i18n.plural.PluralRules;
+import org.cubeengine.i18n.translation.TranslationContainer;
+import org.cubeengine.i18n.translation.TranslationLoader;
+import org.cubeengine.i18n.translation.TranslationLoadingException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads languages from PO files alone: the definition of a language is taken from the header entry of its most
+ * specific PO file while its translations are parsed, so every language is read in a single pass.
+ * Each PO file is decoded with the charset declared in its Content-Type header, files without one use the default charset.
+ * This loader is both the language and the translation loader of a service.
+ *
+ * The header fields used are:
+ * <ul>
+ * <li>Plural-Forms: the number of plural forms and the plural expression, without it the language has the forms of English</li>
+ * <li>Content-Type: the charset of the file</li>
+ * <li>X-Parent-Language: the locale of the parent language, e.g. de_DE for de_AT (optional)</li>
+ * </ul>
+ * The locale of the definition is the requested one, so de.po serves de_DE if there is no de_DE.po.
+ */
+public class PoLanguageLoader extends LanguageLoader implements TranslationLoader
+{
+    private static final int SNIFF_LIMIT = 4096;
+    private static final String CHARSET = "charset=";
+    private static final String PARENT_LANGUAGE = "X-Parent-Language";
+    private static final String PLURAL_FORMS = "Plural-Forms";
+    private static final Locale[] NO_CLONES = new Locale[0];
+
+    private final GettextLoader gettext;
+
+    public PoLanguageLoader(Charset defaultCharset, List<URL> poFiles)
+    {
+        if (defaultCharset == null)
+        {
+            throw new IllegalArgumentException("The default charset must not be null!");
+        }
+        this.gettext = new GettextLoader(defaultCharset, poFiles);
+    }
+
+    /**
+     * Sets whether entries flagged as fuzzy are ignored like msgfmt does by default
+     *
+     * @param ignoreFuzzy true to ignore fuzzy entries
+     */
+    public void setIgnoreFuzzy(boolean ignoreFuzzy)
+    {
+        this.gettext.setIgnoreFuzzy(ignoreFuzzy);
+    }
+
+    public boolean isIgnoreFuzzy()
+    {
+        return this.gettext.isIgnoreFuzzy();
+    }
+
+    @Override
+    public Language loadLanguage(I18nService service, Locale locale) throws TranslationLoadingException, DefinitionLoadingException
+    {
+        TranslationContainer messages = this.createContainer(service);
+        return this.createLanguage(service, this.load(locale, messages, false), messages);
+    }
+
+    /**
+     * Reads the translations only, the header of the PO file is not parsed into a definition again
+     */
+    @Override
+    public Language loadLanguage(I18nService service, Locale locale, LanguageDefinition definition) throws TranslationLoadingException, DefinitionLoadingException
+    {
+        if (definition == null)
+        {
+            return null;
+        }
+        TranslationContainer messages = this.createContainer(service);
+        this.load(locale, messages, false);
+        return this.createLanguage(service, definition, messages);
+    }
+
+    private Language createLanguage(I18nService service, LanguageDefinition definition, TranslationContainer messages) throws DefinitionLoadingException, TranslationLoadingException
+    {
+        if (definition == null)
+        {
+            return null;
+        }
+        Language parent = null;
+        if (definition.getParent() != null)
+        {
+            parent = service.getLanguage(definition.getParent());
+        }
+        return this.createLanguage(service, definition, messages, parent);
+    }
+
+    /**
+     * Reads the definition from the header entry only, the rest of the PO file is not read
+     */
+    @Override
+    public LanguageDefinition loadDefinition(Locale locale) throws DefinitionLoadingException
+    {
+        try
+        {
+            return this.load(locale, null, true);
+        }
+        catch (TranslationLoadingException e)
+        {
+            throw new DefinitionLoadingException(e.getMessage(), e);
+        }
+    }
+
+    public TranslationContainer loadTranslations(TranslationContainer container, Locale locale) throws TranslationLoadingException
+    {
+        try
+        {
+            this.load(locale, container, false);
+        }
+        catch (DefinitionLoadingException e)
+        {
+            throw new TranslationLoadingException(e.getMessage(), e);
+        }
+        return container;
+    }
+
+    /**
+     * Reads the PO files of the locale, the more specific file first
+     *
+     * @param locale     the locale
+     * @param container  the container for the translations or null
+     * @param headerOnly whether to stop after the header entry of the first file
+     *
+     * @return the definition from the header of the first file or null if there is no PO file for the locale
+     */
+    private LanguageDefinition load(Locale locale, TranslationContainer container, boolean headerOnly) throws TranslationLoadingException, DefinitionLoadingException
+    {
+        LanguageDefinition definition = null;
+        Set<URL> sources = this.gettext.getSources(locale);
+        for (URL url : sources)
+        {
+            Map<String, String> singularMessages = new HashMap<String, String>();
+            Map<String, String[]> pluralMessages = new HashMap<String, String[]>();
+            String header = null;
+            try
+            {
+                InputStream in = new BufferedInputStream(url.openStream(), SNIFF_LIMIT * 2);
+                try
+                {
+                    Charset charset = this.sniffCharset(in);
+                    PoParser parser = new PoParser(new InputStreamReader(in, charset), charset);
+                    PoEntry entry;
+                    while ((entry = parser.next()) != null)
+                    {
+                        if (entry.isHeader())
+                        {
+                            header = entry.getStrings()[0];
+                            if (headerOnly)
+                            {
+                                break;
+                            }
+                        }
+                        else if (headerOnly)
+                        {
+                            // the header is the first entry, there is none in this file
+                            break;
+                        }
+                        this.gettext.addTranslation(entry, singularMessages, pluralMessages);
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch (IOException e)
+            {
+                throw new TranslationLoadingException(url + ": " + e.getMessage(), e);
+            }
+            if (definition == null)
+            {
+                definition = parseHeader(locale, url, header == null ? "" : header);
+            }
+            if (headerOnly)
+            {
+                break;
+            }
+            container.merge(singularMessages, pluralMessages);
+        }
+        return definition;
+    }
+
+    /**
+     * Looks for the charset declared in the beginning of the stream and resets the stream afterwards
+     *
+     * @return the declared charset or the default charset if there is no supported one
+     */
+    private Charset sniffCharset(InputStream in) throws IOException
+    {
+        in.mark(SNIFF_LIMIT);
+        byte[] head = new byte[SNIFF_LIMIT];
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) != -1)
+        {
+            length += read;
+        }
+        in.reset();
+        // the header is ASCII in every charset gettext supports
+        String text = new String(head, 0, length, "ISO-8859-1");
+        int start = text.indexOf(CHARSET);
+        if (start < 0)
+        {
+            return this.gettext.getCharset();
+        }
+        start += CHARSET.length();
+        int end = start;
+        while (end < text.length() && isCharsetChar(text.charAt(end)))
+        {
+            end++;
+        }
+        String name = text.substring(start, end);
+        try
+        {
+            if (Charset.isSupported(name))
+            {
+                return Charset.forName(name);
+            }
+        }
+        catch (IllegalCharsetNameException ignored)
+        {
+            // e.g. the CHARSET placeholder of templates
+        }
+        return this.gettext.getCharset();
+    }
+
+    private static boolean isCharsetChar(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.' || c == ':';
+    }
+
+    static LanguageDefinition parseHeader(Locale locale, URL url, String header) throws DefinitionLoadingException
+    {
+        Locale parent = null;
+        int pluralCount = 2;
+        PluralExpr pluralExpr = PluralRules.NOT_ONE;
+        for (String line : header.split("\n"))
+        {
+            int colon = line.indexOf(':');
+            if (colon < 0)
+            {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (PARENT_LANGUAGE.equalsIgnoreCase(name) && value.length() != 0)
+            {
+                parent = Locale.forLanguageTag(value.replace('_', '-'));
+            }
+            else if (PLURAL_FORMS.equalsIgnoreCase(name))
+            {
+                String count = field(value, "nplurals=");
+                String formula = field(value, "plural=");
+                if (count == null || formula == null)
+                {
+                    throw new DefinitionLoadingException(url + ": The Plural-Forms header is incomplete: " + value);
+                }
+                try
+                {
+                    pluralCount = Integer.parseInt(count);
+                    pluralExpr = PluralRules.get(formula);
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new DefinitionLoadingException(url + ": The number of plural forms is invalid: " + count, e);
+                }
+                catch (PluralExpressionParseException e)
+                {
+                    throw new DefinitionLoadingException(url + ": The plural expression is invalid: " + e.getMessage(), e);
+                }
+                if (pluralCount < 1)
+                {
+                    throw new DefinitionLoadingException(url + ": The number of plural forms must be positive: " + count);
+                }
+            }
+        }
+        return new PoLanguageDefinition(locale, parent, pluralCount, pluralExpr);
+    }
+
+    /**
+     * Returns the value of a field of the Plural-Forms header, the fields are separated by semicolons
+     */
+    private static String field(String value, String name)
+    {
+        int start = value.indexOf(name);
+        if (start < 0)
+        {
+            return null;
+        }
+        start += name.length();
+        int end = value.indexOf(';', start);
+        return value.substring(start, end < 0 ? value.length() : end).trim();
+    }
+
+    private static class PoLanguageDefinition implements LanguageDefinition
+    {
+        private final Locale locale;
+        private final Locale parent;
+        private final int pluralCount;
+        private final PluralExpr pluralExpression;
+
+        private PoLanguageDefinition(Locale locale, Locale parent, int pluralCount, PluralExpr pluralExpression)
+        {
+            this.locale = locale;
+            this.parent = parent;
+            this.pluralCount = pluralCount;
+            this.pluralExpression = pluralExpression;
+        }
+
+        public Locale getLocale()
+        {
+            return this.locale;
+        }
+
+        public String getName()
+        {
+            return this.locale.getDisplayName(Locale.ENGLISH);
+        }
+
+        public String getLocalName()
+        {
+            return this.locale.getDisplayName(this.locale);
+        }
+
+        public Locale getParent()
+        {
+            return this.parent;
+        }
+
+        public Locale[] getClones()
+        {
+            return NO_CLONES;
+        }
+
+        public int getPluralCount()
+        {
+            return this.pluralCount;
+        }
+
+        public PluralExpr getPluralExpression()
+        {
+            return this.pluralExpression;
+        }
+    }
+}
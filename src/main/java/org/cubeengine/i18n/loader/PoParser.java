@@ -0,0 +1,585 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.loader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A streaming parser for PO files. It reads the characters exactly once and only keeps the entry it is currently parsing.
+ * Comments and obsolete entries (#~) are skipped, the fuzzy flag is reported on the entry.
+ * Hex and octal escapes are bytes like in C, consecutive ones are decoded together with the charset of the file.
+ */
+public class PoParser
+{
+    private static final int EOF = -1;
+
+    private static final int NONE = 0;
+    private static final int MSGCTXT = 1;
+    private static final int MSGID = 2;
+    private static final int MSGID_PLURAL = 3;
+    private static final int MSGSTR = 4;
+
+    private final Reader reader;
+    private final Charset charset;
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+    private int line = 1;
+
+    private final char[] word = new char[12];
+    private final StringBuilder context = new StringBuilder();
+    private final StringBuilder id = new StringBuilder();
+    private final StringBuilder idPlural = new StringBuilder();
+    private final List<StringBuilder> strings = new ArrayList<StringBuilder>();
+    private byte[] bytes = new byte[16];
+    private int byteCount = 0;
+
+    private boolean hasContext;
+    private boolean hasId;
+    private boolean hasIdPlural;
+    private int stringCount;
+    private boolean fuzzy;
+    private StringBuilder target;
+
+    private int pendingKeyword = NONE;
+    private int pendingIndex;
+    private boolean pendingFuzzy;
+
+    public PoParser(Reader reader)
+    {
+        this(reader, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a parser for a PO file decoded with the given charset
+     *
+     * @param reader  the reader
+     * @param charset the charset of the file, it decodes hex and octal escapes
+     */
+    public PoParser(Reader reader, Charset charset)
+    {
+        this(reader, 1, charset);
+    }
+
+    /**
+     * Creates a parser for a part of a PO file, errors report the lines counted from the given line
+     *
+     * @param reader    the reader
+     * @param firstLine the line the reader starts in
+     */
+    public PoParser(Reader reader, int firstLine)
+    {
+        this(reader, firstLine, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a parser for a part of a PO file decoded with the given charset
+     *
+     * @param reader    the reader
+     * @param firstLine the line the reader starts in
+     * @param charset   the charset of the file, it decodes hex and octal escapes
+     */
+    public PoParser(Reader reader, int firstLine, Charset charset)
+    {
+        if (charset == null)
+        {
+            throw new IllegalArgumentException("The charset must not be null!");
+        }
+        this.reader = reader;
+        this.line = firstLine;
+        this.charset = charset;
+    }
+
+    /**
+     * Parses the next entry
+     *
+     * @return the entry or null if the end of the input was reached
+     *
+     * @throws IOException if reading failed or the input is malformed
+     */
+    public PoEntry next() throws IOException
+    {
+        this.reset();
+        if (this.pendingKeyword != NONE)
+        {
+            int keyword = this.pendingKeyword;
+            this.pendingKeyword = NONE;
+            this.keyword(keyword, this.pendingIndex);
+        }
+        while (true)
+        {
+            int c = this.skipWhitespace();
+            if (c == EOF)
+            {
+                return this.hasContext || this.hasId ? this.build() : null;
+            }
+            if (c == '#')
+            {
+                if (this.stringCount > 0)
+                {
+                    return this.build();
+                }
+                this.comment();
+            }
+            else if (c == '"')
+            {
+                if (this.target == null)
+                {
+                    throw this.error("String without keyword");
+                }
+                this.read();
+                this.string(this.target);
+            }
+            else if (c >= 'a' && c <= 'z')
+            {
+                int keyword = this.readKeyword();
+                int index = keyword == MSGSTR ? this.readIndex() : -1;
+                if (this.stringCount > 0 && (keyword == MSGCTXT || keyword == MSGID))
+                {
+                    this.pendingKeyword = keyword;
+                    this.pendingIndex = index;
+                    return this.build();
+                }
+                this.keyword(keyword, index);
+            }
+            else
+            {
+                throw this.error("Unexpected character '" + (char)c + "'");
+            }
+        }
+    }
+
+    /**
+     * Returns the current line, starting at 1
+     *
+     * @return the line
+     */
+    public int getLine()
+    {
+        return line;
+    }
+
+    private void reset()
+    {
+        this.hasContext = false;
+        this.hasId = false;
+        this.hasIdPlural = false;
+        this.stringCount = 0;
+        this.target = null;
+        this.fuzzy = this.pendingFuzzy;
+        this.pendingFuzzy = false;
+        this.context.setLength(0);
+        this.id.setLength(0);
+        this.idPlural.setLength(0);
+        this.byteCount = 0;
+    }
+
+    private PoEntry build() throws IOException
+    {
+        this.endField();
+        if (!this.hasId || this.stringCount == 0)
+        {
+            throw this.error("Incomplete entry");
+        }
+        String[] translations = new String[this.stringCount];
+        for (int i = 0; i < translations.length; i++)
+        {
+            translations[i] = this.strings.get(i).toString();
+        }
+        return new PoEntry(this.hasContext ? this.context.toString() : null, this.id.toString(),
+                           this.hasIdPlural ? this.idPlural.toString() : null, translations, this.fuzzy);
+    }
+
+    private void keyword(int keyword, int index) throws IOException
+    {
+        this.endField();
+        switch (keyword)
+        {
+            case MSGCTXT:
+                if (this.hasContext || this.hasId)
+                {
+                    throw this.error("Unexpected msgctxt");
+                }
+                this.hasContext = true;
+                this.target = this.context;
+                break;
+            case MSGID:
+                if (this.hasId)
+                {
+                    throw this.error("Unexpected msgid");
+                }
+                this.hasId = true;
+                this.target = this.id;
+                break;
+            case MSGID_PLURAL:
+                if (!this.hasId || this.hasIdPlural || this.stringCount > 0)
+                {
+                    throw this.error("Unexpected msgid_plural");
+                }
+                this.hasIdPlural = true;
+                this.target = this.idPlural;
+                break;
+            default:
+                boolean expected = this.hasIdPlural ? index == this.stringCount : index < 0 && this.stringCount == 0;
+                if (!this.hasId || !expected)
+                {
+                    throw this.error("Unexpected msgstr");
+                }
+                while (this.strings.size() <= this.stringCount)
+                {
+                    this.strings.add(new StringBuilder());
+                }
+                this.target = this.strings.get(this.stringCount++);
+                this.target.setLength(0);
+        }
+    }
+
+    private int readKeyword() throws IOException
+    {
+        int length = 0;
+        int c;
+        while (((c = this.peek()) >= 'a' && c <= 'z') || c == '_')
+        {
+            if (length == this.word.length)
+            {
+                throw this.error("Unknown keyword");
+            }
+            this.word[length++] = (char)this.read();
+        }
+        if (this.isWord("msgctxt", length))
+        {
+            return MSGCTXT;
+        }
+        if (this.isWord("msgid", length))
+        {
+            return MSGID;
+        }
+        if (this.isWord("msgid_plural", length))
+        {
+            return MSGID_PLURAL;
+        }
+        if (this.isWord("msgstr", length))
+        {
+            return MSGSTR;
+        }
+        throw this.error("Unknown keyword " + new String(this.word, 0, length));
+    }
+
+    private boolean isWord(String keyword, int length)
+    {
+        if (keyword.length() != length)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if (keyword.charAt(i) != this.word[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int readIndex() throws IOException
+    {
+        if (this.peek() != '[')
+        {
+            return -1;
+        }
+        this.read();
+        int index = 0;
+        int digits = 0;
+        int c;
+        while ((c = this.peek()) >= '0' && c <= '9')
+        {
+            index = index * 10 + (this.read() - '0');
+            if (++digits > 4)
+            {
+                throw this.error("Plural index too large");
+            }
+        }
+        if (digits == 0 || this.read() != ']')
+        {
+            throw this.error("Malformed plural index");
+        }
+        return index;
+    }
+
+    private void comment() throws IOException
+    {
+        this.read();
+        if (this.peek() == ',')
+        {
+            // flags, e.g. "#, fuzzy, c-format"
+            StringBuilder flags = new StringBuilder();
+            int c;
+            while ((c = this.peek()) != EOF && c != '\n')
+            {
+                flags.append((char)this.read());
+            }
+            for (String flag : flags.substring(1).split(","))
+            {
+                if ("fuzzy".equals(flag.trim()))
+                {
+                    if (this.hasId)
+                    {
+                        this.pendingFuzzy = true;
+                    }
+                    else
+                    {
+                        this.fuzzy = true;
+                    }
+                }
+            }
+            return;
+        }
+        // translator and extracted comments, references, previous strings and obsolete entries are skipped
+        while (this.peek() != EOF)
+        {
+            int end = this.position;
+            while (end < this.limit && this.buffer[end] != '\n')
+            {
+                end++;
+            }
+            this.position = end;
+            if (end < this.limit)
+            {
+                return;
+            }
+        }
+    }
+
+    private void string(StringBuilder out) throws IOException
+    {
+        while (true)
+        {
+            // copy runs of plain characters straight out of the buffer
+            int start = this.position;
+            int end = start;
+            while (end < this.limit)
+            {
+                char c = this.buffer[end];
+                if (c == '"' || c == '\\' || c == '\n')
+                {
+                    break;
+                }
+                end++;
+            }
+            if (end > start)
+            {
+                this.decodeBytes(out);
+                out.append(this.buffer, start, end - start);
+            }
+            this.position = end;
+
+            int c = this.read();
+            switch (c)
+            {
+                case '"':
+                    // the bytes of a character may continue in the next string of the field
+                    return;
+                case EOF:
+                case '\n':
+                    throw this.error("Unterminated string");
+                case '\\':
+                    this.escape(out);
+                    break;
+                default:
+                    // the buffer ran empty, read() refilled it
+                    this.decodeBytes(out);
+                    out.append((char)c);
+            }
+        }
+    }
+
+    private void escape(StringBuilder out) throws IOException
+    {
+        int c = this.read();
+        if (c != 'x' && (c < '0' || c > '7'))
+        {
+            this.decodeBytes(out);
+        }
+        switch (c)
+        {
+            case 'n':
+                out.append('\n');
+                break;
+            case 't':
+                out.append('\t');
+                break;
+            case 'r':
+                out.append('\r');
+                break;
+            case 'a':
+                out.append('\u0007');
+                break;
+            case 'b':
+                out.append('\b');
+                break;
+            case 'f':
+                out.append('\f');
+                break;
+            case 'v':
+                out.append('\u000B');
+                break;
+            case '\\':
+            case '"':
+            case '\'':
+            case '?':
+                out.append((char)c);
+                break;
+            case 'x':
+                int hex = 0;
+                int digits = 0;
+                int value;
+                while ((value = Character.digit(this.peek(), 16)) >= 0 && this.peek() < 128)
+                {
+                    this.read();
+                    hex = hex << 4 | value;
+                    if (hex > 0xFF)
+                    {
+                        throw this.error("Hex escape out of range");
+                    }
+                    digits++;
+                }
+                if (digits == 0)
+                {
+                    throw this.error("Malformed hex escape");
+                }
+                this.addByte(hex);
+                break;
+            default:
+                if (c >= '0' && c <= '7')
+                {
+                    int octal = c - '0';
+                    for (int i = 0; i < 2 && this.peek() >= '0' && this.peek() <= '7'; i++)
+                    {
+                        octal = octal << 3 | (this.read() - '0');
+                    }
+                    this.addByte(octal);
+                    break;
+                }
+                if (c == EOF || c == '\n')
+                {
+                    throw this.error("Unterminated string");
+                }
+                // unknown escapes keep the escaped character
+                out.append((char)c);
+        }
+    }
+
+    private void addByte(int b)
+    {
+        if (this.byteCount == this.bytes.length)
+        {
+            this.bytes = Arrays.copyOf(this.bytes, this.byteCount * 2);
+        }
+        this.bytes[this.byteCount++] = (byte)b;
+    }
+
+    /**
+     * Decodes the bytes escaped at the end of the current field
+     */
+    private void endField()
+    {
+        if (this.target != null)
+        {
+            this.decodeBytes(this.target);
+        }
+    }
+
+    /**
+     * Decodes the bytes of the preceding escapes, a character may be escaped as several bytes
+     */
+    private void decodeBytes(StringBuilder out)
+    {
+        if (this.byteCount != 0)
+        {
+            out.append(this.charset.decode(ByteBuffer.wrap(this.bytes, 0, this.byteCount)));
+            this.byteCount = 0;
+        }
+    }
+
+    private int skipWhitespace() throws IOException
+    {
+        int c;
+        while ((c = this.peek()) == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\uFEFF')
+        {
+            this.read();
+        }
+        return c;
+    }
+
+    private int peek() throws IOException
+    {
+        if (this.position == this.limit && !this.fill())
+        {
+            return EOF;
+        }
+        return this.buffer[this.position];
+    }
+
+    private int read() throws IOException
+    {
+        if (this.position == this.limit && !this.fill())
+        {
+            return EOF;
+        }
+        char c = this.buffer[this.position++];
+        if (c == '\n')
+        {
+            this.line++;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException
+    {
+        int read;
+        do
+        {
+            read = this.reader.read(this.buffer, 0, this.buffer.length);
+        }
+        while (read == 0);
+        if (read < 0)
+        {
+            return false;
+        }
+        this.position = 0;
+        this.limit = read;
+        return true;
+    }
+
+    private IOException error(String message)
+    {
+        return new IOException("Line " + this.line + ": " + message);
+    }
+}
@@ -26,18 +26,94 @@ import org.cubeengine.i18n.plural.parser.Expr;
 
 public class ComplexExpr implements PluralExpr
 {
+    private final String normalized;
     private final Expr expr;
+    private final PluralExpr compiled;
+    /**
+     * The hand-written rule of the same formula or null, it decides the forms of decimals
+     */
+    private final PluralExpr standard;
 
     public ComplexExpr(String expression)
     {
-        this.expr = ExprParser.parse(expression);
+        this(expression, false);
+    }
+
+    public ComplexExpr(String expression, boolean compile)
+    {
+        this(expression, compile, false);
+    }
+
+    /**
+     * Parses the expression and optionally compiles it to bytecode, see {@link ExprCompiler}.
+     * If the expression is not compiled or can not be compiled it is interpreted,
+     * optionally after optimizing the parsed tree, see {@link ExprOptimizer}.
+     *
+     * @param expression the expression
+     * @param compile    whether to compile the expression
+     * @param optimize   whether to optimize the interpreted expression
+     */
+    public ComplexExpr(String expression, boolean compile, boolean optimize)
+    {
+        Expr parsed = ExprParser.parse(expression);
+        this.normalized = parsed.toString();
+        this.compiled = compile ? ExprCompiler.compile(parsed) : null;
+        this.expr = optimize && this.compiled == null ? ExprOptimizer.optimize(parsed) : parsed;
+        this.standard = PluralRules.getStandard(this.normalized);
     }
 
     public int evaluate(int n)
     {
+        if (this.compiled != null)
+        {
+            return this.compiled.evaluate(n);
+        }
         return this.expr.eval(n);
     }
 
+    /**
+     * Decimals are evaluated like the hand-written rule of the same formula, e.g. 1.5 is plural for n != 1
+     * whether the formula was parsed or resolved by {@link PluralRules}
+     */
+    public int evaluate(long i, int v, long f)
+    {
+        if (this.standard != null)
+        {
+            return this.standard.evaluate(i, v, f);
+        }
+        return this.evaluate(i);
+    }
+
+    public boolean isCompiled()
+    {
+        return this.compiled != null;
+    }
+
+    /**
+     * Returns the hand-written rule of the same formula
+     *
+     * @return the rule or null if there is none
+     */
+    PluralExpr getStandard()
+    {
+        return this.standard;
+    }
+
+    /**
+     * Expressions are equal if their formulas are equal after normalizing whitespace and parentheses
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        return obj instanceof ComplexExpr && this.normalized.equals(((ComplexExpr)obj).normalized);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.normalized.hashCode();
+    }
+
     @Override
     public String toString() {
         return "ComplexExpr(expr=" + expr + ")";
@@ -0,0 +1,504 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+import org.cubeengine.i18n.plural.parser.AndExpr;
+import org.cubeengine.i18n.plural.parser.BinaryOperator;
+import org.cubeengine.i18n.plural.parser.BinaryOperatorExpr;
+import org.cubeengine.i18n.plural.parser.Expr;
+import org.cubeengine.i18n.plural.parser.LiteralExpr;
+import org.cubeengine.i18n.plural.parser.Operators;
+import org.cubeengine.i18n.plural.parser.OrExpr;
+import org.cubeengine.i18n.plural.parser.TernaryOperatorExpr;
+import org.cubeengine.i18n.plural.parser.UnaryOperatorExpr;
+import org.cubeengine.i18n.plural.parser.VariableExpr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles a parsed plural expression into a class implementing {@link PluralExpr}, so the JIT can inline the
+ * whole rule as straight-line integer code instead of walking the expression tree.
+ * Every class is defined by its own class loader, which lets it be collected together with its expression.
+ * The classes use the class file version 49, which needs no stack map frames.
+ */
+public final class ExprCompiler
+{
+    private static final String CLASS_NAME = "org.cubeengine.i18n.plural.generated.CompiledPluralExpr";
+
+    private static final int ICONST_0 = 3;
+    private static final int BIPUSH = 16;
+    private static final int SIPUSH = 17;
+    private static final int LDC = 18;
+    private static final int LDC_W = 19;
+    private static final int ILOAD_1 = 27;
+    private static final int ALOAD_0 = 42;
+    private static final int IADD = 96;
+    private static final int ISUB = 100;
+    private static final int IMUL = 104;
+    private static final int IDIV = 108;
+    private static final int IREM = 112;
+    private static final int INEG = 116;
+    private static final int IAND = 126;
+    private static final int IOR = 128;
+    private static final int IFEQ = 153;
+    private static final int IFNE = 154;
+    private static final int IF_ICMPEQ = 159;
+    private static final int IF_ICMPNE = 160;
+    private static final int IF_ICMPLT = 161;
+    private static final int IF_ICMPGE = 162;
+    private static final int IF_ICMPGT = 163;
+    private static final int IF_ICMPLE = 164;
+    private static final int GOTO = 167;
+    private static final int IRETURN = 172;
+    private static final int RETURN = 177;
+    private static final int INVOKESPECIAL = 183;
+
+    // the fixed part of the constant pool, integer constants follow
+    private static final int CP_THIS_CLASS = 2;
+    private static final int CP_OBJECT_CLASS = 4;
+    private static final int CP_PLURAL_EXPR_CLASS = 6;
+    private static final int CP_INIT = 7;
+    private static final int CP_VOID_DESCRIPTOR = 8;
+    private static final int CP_OBJECT_INIT = 10;
+    private static final int CP_EVALUATE = 11;
+    private static final int CP_EVALUATE_DESCRIPTOR = 12;
+    private static final int CP_CODE = 13;
+    private static final int CP_FIXED = 14;
+
+    private ExprCompiler()
+    {
+    }
+
+    /**
+     * Compiles the given expression
+     *
+     * @param expr the expression
+     *
+     * @return the compiled expression or null if the expression contains unknown nodes or classes can not be defined
+     */
+    public static PluralExpr compile(Expr expr)
+    {
+        if (expr == null)
+        {
+            throw new IllegalArgumentException("The expression must not be null!");
+        }
+        try
+        {
+            byte[] classFile = generate(expr);
+            Class<?> clazz = new CompiledExprLoader(PluralExpr.class.getClassLoader()).define(CLASS_NAME, classFile);
+            return (PluralExpr)clazz.getDeclaredConstructor().newInstance();
+        }
+        catch (UnsupportedOperationException e)
+        {
+            return null;
+        }
+        catch (SecurityException e)
+        {
+            return null;
+        }
+        catch (LinkageError e)
+        {
+            return null;
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return null;
+        }
+    }
+
+    static byte[] generate(Expr expr)
+    {
+        CodeWriter code = new CodeWriter();
+        code.emit(expr);
+        code.op(IRETURN);
+
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+
+            out.writeShort(CP_FIXED + code.constants.size());
+            writeUtf8(out, CLASS_NAME.replace('.', '/'));
+            writeClass(out, 1);
+            writeUtf8(out, "java/lang/Object");
+            writeClass(out, 3);
+            writeUtf8(out, PluralExpr.class.getName().replace('.', '/'));
+            writeClass(out, 5);
+            writeUtf8(out, "<init>");
+            writeUtf8(out, "()V");
+            out.writeByte(12); // NameAndType
+            out.writeShort(CP_INIT);
+            out.writeShort(CP_VOID_DESCRIPTOR);
+            out.writeByte(10); // Methodref
+            out.writeShort(CP_OBJECT_CLASS);
+            out.writeShort(9);
+            writeUtf8(out, "evaluate");
+            writeUtf8(out, "(I)I");
+            writeUtf8(out, "Code");
+            for (Integer constant : code.constants)
+            {
+                out.writeByte(3); // Integer
+                out.writeInt(constant);
+            }
+
+            out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+            out.writeShort(CP_THIS_CLASS);
+            out.writeShort(CP_OBJECT_CLASS);
+            out.writeShort(1);
+            out.writeShort(CP_PLURAL_EXPR_CLASS);
+            out.writeShort(0); // fields
+
+            out.writeShort(2);
+            byte[] constructor = {ALOAD_0, (byte)INVOKESPECIAL, 0, CP_OBJECT_INIT, (byte)RETURN};
+            writeMethod(out, CP_INIT, CP_VOID_DESCRIPTOR, 1, 1, constructor);
+            writeMethod(out, CP_EVALUATE, CP_EVALUATE_DESCRIPTOR, code.maxDepth, 2, code.toByteArray());
+
+            out.writeShort(0); // attributes
+            out.flush();
+            return bytes.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeUtf8(DataOutputStream out, String value) throws IOException
+    {
+        out.writeByte(1);
+        out.writeUTF(value);
+    }
+
+    private static void writeClass(DataOutputStream out, int name) throws IOException
+    {
+        out.writeByte(7);
+        out.writeShort(name);
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int maxStack, int maxLocals, byte[] code) throws IOException
+    {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(CP_CODE);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    /**
+     * Emits the bytecode of an expression tree, evaluating it exactly like the tree does:
+     * {@link AndExpr} and {@link OrExpr} short-circuit while the operators {@link Operators#AND} and {@link Operators#OR}
+     * evaluate both sides.
+     */
+    private static final class CodeWriter
+    {
+        private byte[] code = new byte[64];
+        private int length;
+        private int depth;
+        private int maxDepth;
+        private final List<Integer> constants = new ArrayList<Integer>();
+
+        private void emit(Expr expr)
+        {
+            if (expr instanceof LiteralExpr)
+            {
+                this.pushInt(((LiteralExpr)expr).getLiteral());
+            }
+            else if (expr instanceof VariableExpr)
+            {
+                this.op(ILOAD_1);
+                this.push(1);
+            }
+            else if (expr instanceof BinaryOperatorExpr)
+            {
+                this.emitBinary((BinaryOperatorExpr)expr);
+            }
+            else if (expr instanceof UnaryOperatorExpr && ((UnaryOperatorExpr)expr).getOperator() == Operators.NOT)
+            {
+                this.emit(((UnaryOperatorExpr)expr).getValue());
+                this.toBoolean(IFEQ);
+            }
+            else if (expr instanceof UnaryOperatorExpr && ((UnaryOperatorExpr)expr).getOperator() == Operators.NEGATE)
+            {
+                this.emit(((UnaryOperatorExpr)expr).getValue());
+                this.op(INEG);
+            }
+            else if (expr instanceof AndExpr)
+            {
+                this.emit(((AndExpr)expr).getLhs());
+                int toFalse = this.jump(IFEQ, 1);
+                this.emit(((AndExpr)expr).getRhs());
+                this.toBoolean(IFNE);
+                int toEnd = this.jump(GOTO, 0);
+                this.depth--;
+                this.land(toFalse);
+                this.op(ICONST_0);
+                this.push(1);
+                this.land(toEnd);
+            }
+            else if (expr instanceof OrExpr)
+            {
+                this.emit(((OrExpr)expr).getLhs());
+                int toTrue = this.jump(IFNE, 1);
+                this.emit(((OrExpr)expr).getRhs());
+                this.toBoolean(IFNE);
+                int toEnd = this.jump(GOTO, 0);
+                this.depth--;
+                this.land(toTrue);
+                this.op(ICONST_0 + 1);
+                this.push(1);
+                this.land(toEnd);
+            }
+            else if (expr instanceof TernaryOperatorExpr)
+            {
+                TernaryOperatorExpr ternary = (TernaryOperatorExpr)expr;
+                this.emit(ternary.getCondition());
+                int toFalse = this.jump(IFEQ, 1);
+                this.emit(ternary.getTruePath());
+                int toEnd = this.jump(GOTO, 0);
+                this.depth--;
+                this.land(toFalse);
+                this.emit(ternary.getFalsePath());
+                this.land(toEnd);
+            }
+            else
+            {
+                throw new UnsupportedOperationException("Can not compile " + expr);
+            }
+        }
+
+        private void emitBinary(BinaryOperatorExpr expr)
+        {
+            BinaryOperator operator = expr.getOperator();
+            this.emit(expr.getLhs());
+            if (operator == Operators.AND || operator == Operators.OR)
+            {
+                this.toBoolean(IFNE);
+                this.emit(expr.getRhs());
+                this.toBoolean(IFNE);
+                this.op(operator == Operators.AND ? IAND : IOR);
+                this.depth--;
+                return;
+            }
+            this.emit(expr.getRhs());
+            int opcode = arithmeticOpcode(operator);
+            if (opcode != 0)
+            {
+                this.op(opcode);
+                this.depth--;
+                return;
+            }
+            opcode = comparisonOpcode(operator);
+            if (opcode == 0)
+            {
+                throw new UnsupportedOperationException("Can not compile the operator " + operator);
+            }
+            this.depth--;
+            this.toBoolean(opcode);
+        }
+
+        /**
+         * Consumes the operands of the branch instruction and pushes 1 if it branches, 0 otherwise
+         */
+        private void toBoolean(int branch)
+        {
+            int toTrue = this.jump(branch, 1);
+            this.op(ICONST_0);
+            int toEnd = this.jump(GOTO, 0);
+            this.land(toTrue);
+            this.op(ICONST_0 + 1);
+            this.land(toEnd);
+            this.push(1);
+        }
+
+        private static int arithmeticOpcode(BinaryOperator operator)
+        {
+            if (operator == Operators.ADD)
+            {
+                return IADD;
+            }
+            if (operator == Operators.SUBTRACT)
+            {
+                return ISUB;
+            }
+            if (operator == Operators.MULTIPLY)
+            {
+                return IMUL;
+            }
+            if (operator == Operators.DIVIDE)
+            {
+                return IDIV;
+            }
+            if (operator == Operators.MODULO)
+            {
+                return IREM;
+            }
+            return 0;
+        }
+
+        private static int comparisonOpcode(BinaryOperator operator)
+        {
+            if (operator == Operators.EQUAL)
+            {
+                return IF_ICMPEQ;
+            }
+            if (operator == Operators.NOT_EQUAL)
+            {
+                return IF_ICMPNE;
+            }
+            if (operator == Operators.LESS)
+            {
+                return IF_ICMPLT;
+            }
+            if (operator == Operators.LESS_EQUAL)
+            {
+                return IF_ICMPLE;
+            }
+            if (operator == Operators.GREATER)
+            {
+                return IF_ICMPGT;
+            }
+            if (operator == Operators.GREATER_EQUAL)
+            {
+                return IF_ICMPGE;
+            }
+            return 0;
+        }
+
+        private void pushInt(int value)
+        {
+            if (value >= -1 && value <= 5)
+            {
+                this.op(ICONST_0 + value);
+            }
+            else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+            {
+                this.op(BIPUSH);
+                this.op(value);
+            }
+            else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+            {
+                this.op(SIPUSH);
+                this.op(value >> 8);
+                this.op(value);
+            }
+            else
+            {
+                int index = this.constants.indexOf(value);
+                if (index < 0)
+                {
+                    index = this.constants.size();
+                    this.constants.add(value);
+                }
+                index += CP_FIXED;
+                if (index <= 0xFF)
+                {
+                    this.op(LDC);
+                    this.op(index);
+                }
+                else
+                {
+                    this.op(LDC_W);
+                    this.op(index >> 8);
+                    this.op(index);
+                }
+            }
+            this.push(1);
+        }
+
+        /**
+         * Emits a branch instruction popping the given number of operands and returns its position to land it later
+         */
+        private int jump(int opcode, int pops)
+        {
+            int position = this.length;
+            this.op(opcode);
+            this.op(0);
+            this.op(0);
+            this.depth -= pops;
+            return position;
+        }
+
+        private void land(int jump)
+        {
+            int offset = this.length - jump;
+            if (offset > Short.MAX_VALUE)
+            {
+                throw new UnsupportedOperationException("The expression is too large!");
+            }
+            this.code[jump + 1] = (byte)(offset >> 8);
+            this.code[jump + 2] = (byte)offset;
+        }
+
+        private void push(int values)
+        {
+            this.depth += values;
+            this.maxDepth = Math.max(this.maxDepth, this.depth);
+        }
+
+        private void op(int value)
+        {
+            if (this.length == this.code.length)
+            {
+                if (this.length >= 0xFFFF)
+                {
+                    throw new UnsupportedOperationException("The expression is too large!");
+                }
+                this.code = Arrays.copyOf(this.code, this.length * 2);
+            }
+            this.code[this.length++] = (byte)value;
+        }
+
+        private byte[] toByteArray()
+        {
+            return Arrays.copyOf(this.code, this.length);
+        }
+    }
+
+    private static final class CompiledExprLoader extends ClassLoader
+    {
+        private CompiledExprLoader(ClassLoader parent)
+        {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] classFile)
+        {
+            return this.defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+import org.cubeengine.i18n.plural.parser.AndExpr;
+import org.cubeengine.i18n.plural.parser.BinaryOperator;
+import org.cubeengine.i18n.plural.parser.BinaryOperatorExpr;
+import org.cubeengine.i18n.plural.parser.Expr;
+import org.cubeengine.i18n.plural.parser.FrameExpr;
+import org.cubeengine.i18n.plural.parser.LiteralExpr;
+import org.cubeengine.i18n.plural.parser.Operators;
+import org.cubeengine.i18n.plural.parser.OrExpr;
+import org.cubeengine.i18n.plural.parser.RangeExpr;
+import org.cubeengine.i18n.plural.parser.SharedExpr;
+import org.cubeengine.i18n.plural.parser.TernaryOperatorExpr;
+import org.cubeengine.i18n.plural.parser.UnaryOperatorExpr;
+import org.cubeengine.i18n.plural.parser.VariableExpr;
+import org.cubeengine.i18n.plural.parser.VariableModuloExpr;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optimizes parsed plural expressions without changing their results, including failures:
+ * <ul>
+ * <li>constant subexpressions are folded</li>
+ * <li>comparisons against literals become {@link RangeExpr ranges}, conjunctions of ranges over the same value are merged</li>
+ * <li>n % literal gets a dedicated node class</li>
+ * <li>subexpressions occurring several times are {@link SharedExpr shared} within one evaluation</li>
+ * </ul>
+ */
+public final class ExprOptimizer
+{
+    private final Map<String, Integer> occurrences = new HashMap<String, Integer>();
+    private final Map<String, Expr> optimized = new HashMap<String, Expr>();
+    private int slots = 0;
+
+    private ExprOptimizer()
+    {
+    }
+
+    public static Expr optimize(Expr expr)
+    {
+        if (expr == null)
+        {
+            throw new IllegalArgumentException("The expression must not be null!");
+        }
+        ExprOptimizer optimizer = new ExprOptimizer();
+        Expr folded = fold(expr);
+        optimizer.count(folded);
+        Expr result = optimizer.rewrite(folded);
+        if (optimizer.slots > 0)
+        {
+            return new FrameExpr(result, optimizer.slots);
+        }
+        return result;
+    }
+
+    /**
+     * Folds subexpressions without variables into literals, unless their evaluation fails
+     */
+    private static Expr fold(Expr expr)
+    {
+        Expr result = expr;
+        if (expr instanceof BinaryOperatorExpr)
+        {
+            BinaryOperatorExpr binary = (BinaryOperatorExpr)expr;
+            result = new BinaryOperatorExpr(fold(binary.getLhs()), binary.getOperator(), fold(binary.getRhs()));
+        }
+        else if (expr instanceof UnaryOperatorExpr)
+        {
+            UnaryOperatorExpr unary = (UnaryOperatorExpr)expr;
+            result = new UnaryOperatorExpr(unary.getOperator(), fold(unary.getValue()));
+        }
+        else if (expr instanceof AndExpr || expr instanceof OrExpr)
+        {
+            boolean and = expr instanceof AndExpr;
+            Expr lhs = fold(and ? ((AndExpr)expr).getLhs() : ((OrExpr)expr).getLhs());
+            Expr rhs = fold(and ? ((AndExpr)expr).getRhs() : ((OrExpr)expr).getRhs());
+            if (lhs instanceof LiteralExpr)
+            {
+                // the left side decides the result without evaluating the right side
+                boolean value = ((LiteralExpr)lhs).getLiteral() != 0;
+                if (value != and)
+                {
+                    return new LiteralExpr(Expr.toInt(value));
+                }
+                if (rhs instanceof LiteralExpr)
+                {
+                    return new LiteralExpr(Expr.toInt(((LiteralExpr)rhs).getLiteral() != 0));
+                }
+            }
+            return and ? new AndExpr(lhs, rhs) : new OrExpr(lhs, rhs);
+        }
+        else if (expr instanceof TernaryOperatorExpr)
+        {
+            TernaryOperatorExpr ternary = (TernaryOperatorExpr)expr;
+            Expr condition = fold(ternary.getCondition());
+            if (condition instanceof LiteralExpr)
+            {
+                return fold(((LiteralExpr)condition).getLiteral() != 0 ? ternary.getTruePath() : ternary.getFalsePath());
+            }
+            result = new TernaryOperatorExpr(condition, fold(ternary.getTruePath()), fold(ternary.getFalsePath()));
+        }
+        else
+        {
+            return expr;
+        }
+        if (isConstant(result))
+        {
+            try
+            {
+                return new LiteralExpr(result.eval(0));
+            }
+            catch (ArithmeticException e)
+            {
+                // fails at runtime as well
+            }
+        }
+        return result;
+    }
+
+    private static boolean isConstant(Expr expr)
+    {
+        if (expr instanceof BinaryOperatorExpr)
+        {
+            return ((BinaryOperatorExpr)expr).getLhs() instanceof LiteralExpr && ((BinaryOperatorExpr)expr).getRhs() instanceof LiteralExpr;
+        }
+        if (expr instanceof UnaryOperatorExpr)
+        {
+            return ((UnaryOperatorExpr)expr).getValue() instanceof LiteralExpr;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a key that is equal for structurally equal expressions
+     */
+    private static String keyOf(Expr expr)
+    {
+        if (expr instanceof BinaryOperatorExpr)
+        {
+            BinaryOperatorExpr binary = (BinaryOperatorExpr)expr;
+            return "(" + keyOf(binary.getLhs()) + binary.getOperator() + keyOf(binary.getRhs()) + ")";
+        }
+        if (expr instanceof UnaryOperatorExpr)
+        {
+            UnaryOperatorExpr unary = (UnaryOperatorExpr)expr;
+            return "(" + String.format(unary.getOperator().toString(), keyOf(unary.getValue())) + ")";
+        }
+        if (expr instanceof AndExpr)
+        {
+            return "(" + keyOf(((AndExpr)expr).getLhs()) + "&&" + keyOf(((AndExpr)expr).getRhs()) + ")";
+        }
+        if (expr instanceof OrExpr)
+        {
+            return "(" + keyOf(((OrExpr)expr).getLhs()) + "||" + keyOf(((OrExpr)expr).getRhs()) + ")";
+        }
+        if (expr instanceof TernaryOperatorExpr)
+        {
+            TernaryOperatorExpr ternary = (TernaryOperatorExpr)expr;
+            return "(" + keyOf(ternary.getCondition()) + "?" + keyOf(ternary.getTruePath()) + ":" + keyOf(ternary.getFalsePath()) + ")";
+        }
+        return expr.toString();
+    }
+
+    private void count(Expr expr)
+    {
+        if (expr instanceof BinaryOperatorExpr)
+        {
+            this.count(((BinaryOperatorExpr)expr).getLhs());
+            this.count(((BinaryOperatorExpr)expr).getRhs());
+        }
+        else if (expr instanceof UnaryOperatorExpr)
+        {
+            this.count(((UnaryOperatorExpr)expr).getValue());
+        }
+        else if (expr instanceof AndExpr)
+        {
+            this.count(((AndExpr)expr).getLhs());
+            this.count(((AndExpr)expr).getRhs());
+        }
+        else if (expr instanceof OrExpr)
+        {
+            this.count(((OrExpr)expr).getLhs());
+            this.count(((OrExpr)expr).getRhs());
+        }
+        else if (expr instanceof TernaryOperatorExpr)
+        {
+            this.count(((TernaryOperatorExpr)expr).getCondition());
+            this.count(((TernaryOperatorExpr)expr).getTruePath());
+            this.count(((TernaryOperatorExpr)expr).getFalsePath());
+        }
+        else
+        {
+            // literals and the variable are cheaper than a shared slot
+            return;
+        }
+        String key = keyOf(expr);
+        Integer count = this.occurrences.get(key);
+        this.occurrences.put(key, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Rewrites an expression into specialized nodes, structurally equal subexpressions are rewritten once
+     */
+    private Expr rewrite(Expr expr)
+    {
+        String key = keyOf(expr);
+        Expr result = this.optimized.get(key);
+        if (result != null)
+        {
+            return result;
+        }
+        result = this.specialize(expr);
+        Integer count = this.occurrences.get(key);
+        if (count != null && count > 1)
+        {
+            result = new SharedExpr(this.slots++, result);
+        }
+        this.optimized.put(key, result);
+        return result;
+    }
+
+    private Expr specialize(Expr expr)
+    {
+        if (expr instanceof TernaryOperatorExpr)
+        {
+            TernaryOperatorExpr ternary = (TernaryOperatorExpr)expr;
+            return new TernaryOperatorExpr(this.rewrite(ternary.getCondition()), this.rewrite(ternary.getTruePath()), this.rewrite(ternary.getFalsePath()));
+        }
+        if (expr instanceof UnaryOperatorExpr)
+        {
+            UnaryOperatorExpr unary = (UnaryOperatorExpr)expr;
+            Expr value = this.rewrite(unary.getValue());
+            if (unary.getOperator() == Operators.NOT && value instanceof RangeExpr)
+            {
+                RangeExpr range = (RangeExpr)value;
+                return new RangeExpr(range.getValue(), range.getMin(), range.getMax(), !range.isNegated());
+            }
+            return new UnaryOperatorExpr(unary.getOperator(), value);
+        }
+        if (expr instanceof AndExpr)
+        {
+            Expr left = this.rewrite(((AndExpr)expr).getLhs());
+            Expr right = this.rewrite(((AndExpr)expr).getRhs());
+            if (left instanceof RangeExpr && right instanceof RangeExpr)
+            {
+                RangeExpr a = (RangeExpr)left;
+                RangeExpr b = (RangeExpr)right;
+                if (!a.isNegated() && !b.isNegated() && a.getValue() == b.getValue())
+                {
+                    // the value is evaluated once instead of twice, which makes no difference as it has no side effects
+                    return new RangeExpr(a.getValue(), Math.max(a.getMin(), b.getMin()), Math.min(a.getMax(), b.getMax()), false);
+                }
+            }
+            return new AndExpr(left, right);
+        }
+        if (expr instanceof OrExpr)
+        {
+            return new OrExpr(this.rewrite(((OrExpr)expr).getLhs()), this.rewrite(((OrExpr)expr).getRhs()));
+        }
+        if (!(expr instanceof BinaryOperatorExpr))
+        {
+            return expr;
+        }
+        BinaryOperatorExpr binary = (BinaryOperatorExpr)expr;
+        BinaryOperator operator = binary.getOperator();
+        Expr lhs = binary.getLhs();
+        Expr rhs = binary.getRhs();
+        if (operator == Operators.MODULO && lhs instanceof VariableExpr && rhs instanceof LiteralExpr && ((LiteralExpr)rhs).getLiteral() != 0)
+        {
+            return new VariableModuloExpr(((LiteralExpr)rhs).getLiteral());
+        }
+        if (rhs instanceof LiteralExpr)
+        {
+            Expr range = toRange(this.rewrite(lhs), operator, ((LiteralExpr)rhs).getLiteral());
+            if (range != null)
+            {
+                return range;
+            }
+        }
+        else if (lhs instanceof LiteralExpr)
+        {
+            Expr range = toRange(this.rewrite(rhs), mirror(operator), ((LiteralExpr)lhs).getLiteral());
+            if (range != null)
+            {
+                return range;
+            }
+        }
+        return new BinaryOperatorExpr(this.rewrite(lhs), operator, this.rewrite(rhs));
+    }
+
+    /**
+     * Turns value operator literal into a range check or returns null if the operator is no comparison
+     * or the range can not be expressed
+     */
+    private static Expr toRange(Expr value, BinaryOperator operator, int literal)
+    {
+        if (operator == Operators.EQUAL)
+        {
+            return new RangeExpr(value, literal, literal, false);
+        }
+        if (operator == Operators.NOT_EQUAL)
+        {
+            return new RangeExpr(value, literal, literal, true);
+        }
+        if (operator == Operators.LESS_EQUAL)
+        {
+            return new RangeExpr(value, Integer.MIN_VALUE, literal, false);
+        }
+        if (operator == Operators.GREATER_EQUAL)
+        {
+            return new RangeExpr(value, literal, Integer.MAX_VALUE, false);
+        }
+        if (operator == Operators.LESS && literal != Integer.MIN_VALUE)
+        {
+            return new RangeExpr(value, Integer.MIN_VALUE, literal - 1, false);
+        }
+        if (operator == Operators.GREATER && literal != Integer.MAX_VALUE)
+        {
+            return new RangeExpr(value, literal + 1, Integer.MAX_VALUE, false);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the operator comparing the operands in swapped order
+     */
+    private static BinaryOperator mirror(BinaryOperator operator)
+    {
+        if (operator == Operators.LESS)
+        {
+            return Operators.GREATER;
+        }
+        if (operator == Operators.GREATER)
+        {
+            return Operators.LESS;
+        }
+        if (operator == Operators.LESS_EQUAL)
+        {
+            return Operators.GREATER_EQUAL;
+        }
+        if (operator == Operators.GREATER_EQUAL)
+        {
+            return Operators.LESS_EQUAL;
+        }
+        return operator;
+    }
+}
@@ -25,383 +25,196 @@ package org.cubeengine.i18n.plural;
 import org.cubeengine.i18n.plural.parser.*;
 
 /*
- * expr         := disjunction
- * ternary      := conjunction ? ternary : ternary
- *               | conjunction
- * disjunction  := conjunction '||' disjunction
- *               | conjunction
- * conjunction  := comparison '&&' conjunction
- *               | comparison
- * comparison   := sum comparisonOp comparison
- *               | sum
- * comparisonOp := '>=' | '<=' | '<' | '>' | '==' | '!='
- * sum          := product sumOp sum
- *               | product
- * sumOp        := '+' | '-'
- * product      := factor productOp product
- *               | factor
- * productOp    := '*' | '/' | '%'
- * factor       := variable
- *               | literal
- *               | '(' expr ')'
- *               | '!' expr
+ * A precedence climbing parser for the C expressions of Plural-Forms headers.
+ * Binary operators are left associative, the conditional operator is right associative.
+ *
+ * precedence  operators
+ * 7           * / %
+ * 6           + -
+ * 5           < <= > >=
+ * 4           == !=
+ * 3           &&
+ * 2           ||
+ * 1           ?:
+ *
+ * Operands are the variable n, decimal literals, parenthesized expressions and the unary operators ! - +.
  */
 public class ExprParser {
+    private static final int TERNARY = 1;
 
-    public static Expr parse(String exprString) {
-        State s = new State(exprString.replaceAll("\\s+", ""));
-        final Expr result = parseExpr(s);
-        if (s.hasMore()) {
-            throw new RuntimeException("Result is incomplete!");
-        }
-        return result;
-    }
+    private static final String[] SYMBOLS = {"||", "&&", "==", "!=", "<=", ">=", "<", ">", "+", "-", "*", "/", "%"};
+    private static final int[] PRECEDENCES = {2, 3, 4, 4, 5, 5, 5, 5, 6, 6, 7, 7, 7};
+    private static final BinaryOperator[] OPERATORS = {Operators.OR, Operators.AND, Operators.EQUAL, Operators.NOT_EQUAL,
+        Operators.LESS_EQUAL, Operators.GREATER_EQUAL, Operators.LESS, Operators.GREATER,
+        Operators.ADD, Operators.SUBTRACT, Operators.MULTIPLY, Operators.DIVIDE, Operators.MODULO};
 
-    private static Expr parseExpr(State s) {
-        return parseTernary(s);
-    }
+    private final String input;
+    private int position;
 
-    private static Expr parseTernary(State s) {
-        Expr condition = parseDisjunction(s);
-        if (s.hasMore() && s.peek() == '?') {
-            s.consume();
-            Expr truePath = parseTernary(s);
-            s.consume(':');
-            Expr falsePath = parseTernary(s);
-
-            return new TernaryOperatorExpr(condition, truePath, falsePath);
-        } else {
-            return condition;
-        }
+    private ExprParser(String input) {
+        this.input = input;
     }
 
-    private static Expr parseDisjunction(State s) {
-        Expr lhs = parseConjunction(s);
-        if (s.hasMore(3) && s.is('|')) {
-            s.consume();
-            s.consume('|');
-            BinaryOperator op = namedBinary("||", new BinaryOperator() {
-                @Override
-                public int apply(int lhs, int rhs) {
-                    return Expr.toInt(Expr.toBool(lhs) || Expr.toBool(rhs));
-                }
-            });
-            Expr rhs = parseDisjunction(s);
-
-            return new BinaryOperatorExpr(lhs, op, rhs);
-        } else {
-            return lhs;
-        }
-    }
-
-    private static Expr parseConjunction(State s) {
-        Expr lhs = parseComparison(s);
-        if (s.hasMore(3) && s.is('&')) {
-            s.consume();
-            s.consume('&');
-            BinaryOperator op = namedBinary("&&", new BinaryOperator() {
-                @Override
-                public int apply(int lhs, int rhs) {
-                    return Expr.toInt(Expr.toBool(lhs) && Expr.toBool(rhs));
-                }
-            });
-            Expr rhs = parseConjunction(s);
-
-            return new BinaryOperatorExpr(lhs, op, rhs);
-        } else {
-            return lhs;
-        }
-    }
-
-    private static Expr parseComparison(State s) {
-        Expr lhs = parseSum(s);
-        if (s.hasMore() && s.is("<>!=")) {
-            BinaryOperator op = parseComparisonOp(s);
-            Expr rhs = parseComparison(s);
-
-            return new BinaryOperatorExpr(lhs, op, rhs);
-        } else {
-            return lhs;
-        }
-    }
-
-    private static Expr parseSum(State s) {
-        Expr lhs = parseProduct(s);
-        if (s.hasMore() && s.is("+-")) {
-            BinaryOperator op = parseSumOp(s);
-            Expr rhs = parseSum(s);
-
-            return new BinaryOperatorExpr(lhs, op, rhs);
-        } else {
-            return lhs;
+    public static Expr parse(String exprString) {
+        if (exprString == null) {
+            throw new IllegalArgumentException("The expression must not be null!");
         }
-    }
-
-    private static Expr parseProduct(State s) {
-        Expr lhs = parseFactor(s);
-        if (s.hasMore() && s.is("*/%")) {
-            BinaryOperator op = parseProductOp(s);
-            Expr rhs = parseProduct(s);
-
-            return new BinaryOperatorExpr(lhs, op, rhs);
-        } else {
-            return lhs;
+        ExprParser parser = new ExprParser(exprString);
+        Expr result = parser.parseExpression(TERNARY);
+        if (parser.skipWhitespace()) {
+            throw parser.error("Unexpected '" + parser.input.charAt(parser.position) + "'");
         }
+        return result;
     }
 
-    private static Expr parseFactor(State s) {
-        final char c = s.peek();
-        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
-            return parseVariable(s);
-        } else if (c == '(') {
-            s.consume();
-            Expr e = parseExpr(s);
-            s.consume(')');
-            return e;
-        } else if (c == '!') {
-            return parseNegation(s);
-        } else {
-            return parseLiteral(s);
+    private Expr parseExpression(int minPrecedence) {
+        Expr lhs = parseOperand();
+        while (skipWhitespace()) {
+            if (input.charAt(position) == '?') {
+                if (minPrecedence > TERNARY) {
+                    return lhs;
+                }
+                position++;
+                Expr truePath = parseExpression(TERNARY);
+                expect(':');
+                Expr falsePath = parseExpression(TERNARY);
+                lhs = new TernaryOperatorExpr(lhs, truePath, falsePath);
+                continue;
+            }
+            int operator = operatorAt();
+            if (operator < 0 || PRECEDENCES[operator] < minPrecedence) {
+                return lhs;
+            }
+            position += SYMBOLS[operator].length();
+            Expr rhs = parseExpression(PRECEDENCES[operator] + 1);
+            if (OPERATORS[operator] == Operators.AND) {
+                lhs = new AndExpr(lhs, rhs);
+            } else if (OPERATORS[operator] == Operators.OR) {
+                lhs = new OrExpr(lhs, rhs);
+            } else {
+                lhs = new BinaryOperatorExpr(lhs, OPERATORS[operator], rhs);
+            }
         }
-    }
-
-    private static Expr parseVariable(State s) {
-        s.consume();
-        return VariableExpr.VAR;
-    }
-
-    private static Expr parseLiteral(State s) {
-        int signum = 1;
-        switch (s.peek()) {
+        return lhs;
+    }
+
+    /**
+     * Returns the index of the binary operator at the current position or -1 if there is none
+     */
+    private int operatorAt() {
+        char c = input.charAt(position);
+        boolean equalsFollows = position + 1 < input.length() && input.charAt(position + 1) == '=';
+        switch (c) {
+            case '|':
+                return expectSecond('|', 0);
+            case '&':
+                return expectSecond('&', 1);
+            case '=':
+                return expectSecond('=', 2);
+            case '!':
+                return expectSecond('=', 3);
+            case '<':
+                return equalsFollows ? 4 : 6;
+            case '>':
+                return equalsFollows ? 5 : 7;
             case '+':
-                s.consume();
-                break;
+                return 8;
             case '-':
-                signum = -1;
-                s.consume();
-        }
-
-        if (!Character.isDigit(s.peek())) {
-            throw new RuntimeException("no number!");
+                return 9;
+            case '*':
+                return 10;
+            case '/':
+                return 11;
+            case '%':
+                return 12;
+            default:
+                return -1;
         }
-
-        int number = parseNumber(s, 0, true);
-
-        return new LiteralExpr(signum * number);
     }
 
-    private static int parseNumber(State s, int current, boolean first) {
-        int digit = s.pop() - '0';
-        if (digit == 0 && first) {
-            return 0;
-        }
-
-        final int next = current * 10 + digit;
-        if (s.hasMore() && Character.isDigit(s.peek())) {
-            return parseNumber(s, next, false);
-        } else {
-            return next;
+    private int expectSecond(char second, int operator) {
+        if (position + 1 < input.length() && input.charAt(position + 1) == second) {
+            return operator;
         }
+        throw error("Unexpected '" + input.charAt(position) + "'");
     }
 
-    private static Expr parseNegation(State s) {
-        s.consume('!');
-        UnaryOperator op = namedUnary("!%s", new UnaryOperator() {
-            @Override
-            public int apply(int v) {
-                return v != 0 ? 0 : 1;
-            }
-        });
-        Expr value = parseExpr(s);
-
-        return new UnaryOperatorExpr(op, value);
-    }
-
-    private static BinaryOperator parseComparisonOp(State s) {
-        final char first = s.consume("><!=");
-        switch (first) {
-            case '>':
-                if (s.peek() == '=') {
-                    s.consume();
-                    return namedBinary(">=", new ComparisonOperator() {
-                        @Override
-                        public boolean compare(int lhs, int rhs) {
-                            return lhs >= rhs;
-                        }
-                    });
-                } else {
-                    return namedBinary(">", new ComparisonOperator() {
-                        @Override
-                        public boolean compare(int lhs, int rhs) {
-                            return lhs > rhs;
-                        }
-                    });
-                }
-            case '<':
-                if (s.peek() == '=') {
-                    s.consume();
-                    return namedBinary("<=", new ComparisonOperator() {
-                        @Override
-                        public boolean compare(int lhs, int rhs) {
-                            return lhs <= rhs;
-                        }
-                    });
-                } else {
-                    return namedBinary("<", new ComparisonOperator() {
-                        @Override
-                        public boolean compare(int lhs, int rhs) {
-                            return lhs < rhs;
-                        }
-                    });
-                }
-            case '!':
-                s.consume('=');
-                return namedBinary("!=", new ComparisonOperator() {
-                    @Override
-                    public boolean compare(int lhs, int rhs) {
-                        return lhs != rhs;
-                    }
-                });
-            default:
-                s.consume('=');
-                return namedBinary("==", new ComparisonOperator() {
-                    @Override
-                    public boolean compare(int lhs, int rhs) {
-                        return lhs == rhs;
-                    }
-                });
+    private Expr parseOperand() {
+        if (!skipWhitespace()) {
+            throw error("Expected an operand");
         }
-    }
-
-    private static BinaryOperator parseSumOp(State s) {
-        switch (s.consume("+-")) {
+        char c = input.charAt(position);
+        switch (c) {
+            case '!':
+                position++;
+                return new UnaryOperatorExpr(Operators.NOT, parseOperand());
             case '+':
-                return namedBinary("+", new BinaryOperator() {
-                    @Override
-                    public int apply(int lhs, int rhs) {
-                        return lhs + rhs;
-                    }
-                });
+                position++;
+                return parseOperand();
+            case '-':
+                position++;
+                if (position < input.length() && isDigit(input.charAt(position))) {
+                    return parseLiteral(true);
+                }
+                return new UnaryOperatorExpr(Operators.NEGATE, parseOperand());
+            case '(':
+                position++;
+                Expr expr = parseExpression(TERNARY);
+                expect(')');
+                return expr;
             default:
-                return namedBinary("-", new BinaryOperator() {
-                    @Override
-                    public int apply(int lhs, int rhs) {
-                        return lhs - rhs;
-                    }
-                });
+                if (isDigit(c)) {
+                    return parseLiteral(false);
+                }
+                if (c == 'n' && (position + 1 == input.length() || !Character.isLetterOrDigit(input.charAt(position + 1)))) {
+                    position++;
+                    return VariableExpr.VAR;
+                }
+                throw error("Expected an operand but got '" + c + "'");
         }
     }
 
-    private static BinaryOperator parseProductOp(State s) {
-        switch (s.consume("*/%")) {
-            case '*':
-                return namedBinary("*", new BinaryOperator() {
-                    @Override
-                    public int apply(int lhs, int rhs) {
-                        return lhs * rhs;
-                    }
-                });
-            case '/':
-                return namedBinary("/", new BinaryOperator() {
-                    @Override
-                    public int apply(int lhs, int rhs) {
-                        return lhs / rhs;
-                    }
-                });
-            default:
-                return namedBinary("%", new BinaryOperator() {
-                    @Override
-                    public int apply(int lhs, int rhs) {
-                        return lhs % rhs;
-                    }
-                });
+    private Expr parseLiteral(boolean negative) {
+        int start = position;
+        long limit = negative ? -(long)Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        while (position < input.length() && isDigit(input.charAt(position))) {
+            value = value * 10 + (input.charAt(position) - '0');
+            if (value > limit) {
+                position = start;
+                throw error("The number is out of range");
+            }
+            position++;
         }
+        return new LiteralExpr((int)(negative ? -value : value));
     }
 
-    private static UnaryOperator namedUnary(final String name, final UnaryOperator inner) {
-        return new UnaryOperator() {
-            @Override
-            public int apply(int v) {
-                return inner.apply(v);
-            }
-
-            @Override
-            public String toString() {
-                return name;
-            }
-        };
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
-    private static BinaryOperator namedBinary(final String name, final BinaryOperator inner) {
-        return new BinaryOperator() {
-            @Override
-            public int apply(int lhs, int rhs) {
-                return inner.apply(lhs, rhs);
-            }
-
-            @Override
-            public String toString() {
-                return name;
-            }
-        };
-    }
-
-    private static final class State {
-        private final String s;
-        private int offset;
-
-        public State(String s) {
-            this.s = s;
-            this.offset = 0;
-        }
-
-        public char peek() {
-            return this.s.charAt(offset);
-        }
-
-        public char pop() {
-            return this.s.charAt(offset++);
-        }
-
-        public void consume() {
-            this.offset++;
-        }
-
-        public boolean is(char c) {
-            return peek() == c;
-        }
-
-        public boolean is(String s) {
-            return s.indexOf(peek()) != -1;
-        }
-
-        public boolean hasMore() {
-            return this.offset < this.s.length();
-        }
-
-        public boolean hasMore(int n) {
-            return this.offset + n < this.s.length();
+    /**
+     * Skips whitespace and returns whether there is more input
+     */
+    private boolean skipWhitespace() {
+        while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+            position++;
         }
+        return position < input.length();
+    }
 
-        public char consume(char expected) {
-            char c = pop();
-            if (c != expected) {
-                throw new RuntimeException("expected=" + expected + ", got=" + c);
-            }
-            return c;
+    private void expect(char expected) {
+        if (!skipWhitespace()) {
+            throw error("Expected '" + expected + "'");
         }
-
-        public char consume(String expected) {
-            char c = pop();
-            if (expected.indexOf(c) == -1) {
-                throw new RuntimeException("expected=" + expected + ", got=" + c);
-            }
-            return c;
+        char c = input.charAt(position);
+        if (c != expected) {
+            throw error("Expected '" + expected + "' but got '" + c + "'");
         }
+        position++;
+    }
 
-        @Override
-        public String toString() {
-            return "State(offset=" + offset + ", " + (hasMore() ? "current=" + peek() : "depleted") + ")";
-        }
+    private PluralExpressionParseException error(String message) {
+        return new PluralExpressionParseException(message, input, position);
     }
 }
@@ -28,4 +28,16 @@ public class GreaterThanOneExpr implements PluralExpr
     {
         return n > 1 ? 1 : 0;
     }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        return obj != null && obj.getClass() == this.getClass();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.getClass().hashCode();
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+import java.util.Arrays;
+
+/**
+ * A plural expression that evaluates another expression once for the counts 0 to size - 1 and answers
+ * these counts from a table. Other counts are evaluated by the expression.
+ * Building the table validates the expression for all counts in the table.
+ */
+public class LookupTableExpr implements PluralExpr
+{
+    private final PluralExpr expr;
+    private final byte[] table;
+
+    /**
+     * Builds the table
+     *
+     * @param expr        the expression
+     * @param pluralCount the number of plural forms of the language
+     * @param size        the number of counts to store
+     *
+     * @throws PluralExpressionEvaluationException if the expression fails or returns an index that is not
+     *                                             a plural form for any of the counts
+     */
+    public LookupTableExpr(PluralExpr expr, int pluralCount, int size)
+    {
+        if (expr == null)
+        {
+            throw new IllegalArgumentException("The expression must not be null!");
+        }
+        if (pluralCount < 1 || pluralCount > Byte.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("The plural count must be between 1 and " + Byte.MAX_VALUE + "!");
+        }
+        if (size < 0)
+        {
+            throw new IllegalArgumentException("The size must not be negative!");
+        }
+        this.expr = expr;
+        this.table = new byte[size];
+        for (int n = 0; n < size; n++)
+        {
+            int index;
+            try
+            {
+                index = expr.evaluate(n);
+            }
+            catch (ArithmeticException e)
+            {
+                throw new PluralExpressionEvaluationException("The plural expression " + expr + " fails for n = " + n, e);
+            }
+            if (index < 0 || index >= pluralCount)
+            {
+                throw new PluralExpressionEvaluationException("The plural expression " + expr + " returns " + index + " for n = " + n
+                                                                  + ", but there are only " + pluralCount + " plural forms!");
+            }
+            this.table[n] = (byte)index;
+        }
+    }
+
+    public int evaluate(int n)
+    {
+        if (n >= 0 && n < this.table.length)
+        {
+            return this.table[n];
+        }
+        return this.expr.evaluate(n);
+    }
+
+    public int evaluate(long n)
+    {
+        if (n >= 0 && n < this.table.length)
+        {
+            return this.table[(int)n];
+        }
+        return this.expr.evaluate(n);
+    }
+
+    public int evaluate(long i, int v, long f)
+    {
+        return this.expr.evaluate(i, v, f);
+    }
+
+    public PluralExpr getExpression()
+    {
+        return this.expr;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof LookupTableExpr))
+        {
+            return false;
+        }
+        LookupTableExpr other = (LookupTableExpr)obj;
+        return this.expr.equals(other.expr) && Arrays.equals(this.table, other.table);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.expr.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LookupTableExpr(size=" + this.table.length + ", expr=" + this.expr + ")";
+    }
+}
@@ -28,4 +28,29 @@ public class NotOneExpr implements PluralExpr
     {
         return n != 1 ? 1 : 0;
     }
+
+    public int evaluate(long n)
+    {
+        return n != 1 ? 1 : 0;
+    }
+
+    /**
+     * Decimals showing fraction digits are plural, e.g. 1.0 or 1.5 apples
+     */
+    public int evaluate(long i, int v, long f)
+    {
+        return v == 0 ? this.evaluate(i) : 1;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        return obj != null && obj.getClass() == this.getClass();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.getClass().hashCode();
+    }
 }
@@ -25,4 +25,49 @@ package org.cubeengine.i18n.plural;
 public interface PluralExpr
 {
     int evaluate(int n);
+
+    /**
+     * Evaluates this expression for a count that might not fit into an int, see {@link PluralOperands#reduce(long)}
+     *
+     * @param n the count
+     *
+     * @return the index of the plural form
+     */
+    default int evaluate(long n)
+    {
+        return this.evaluate(PluralOperands.reduce(n));
+    }
+
+    /**
+     * Evaluates this expression for a decimal, e.g. 12.50 is the unscaled value 1250 with the scale 2.
+     * A scale of 0 is a count, anything else is evaluated by {@link #evaluate(long, int, long)}.
+     *
+     * @param unscaled the unscaled value
+     * @param scale    the number of visible fraction digits
+     *
+     * @return the index of the plural form
+     */
+    default int evaluate(long unscaled, int scale)
+    {
+        if (scale == 0)
+        {
+            return this.evaluate(unscaled);
+        }
+        return this.evaluate(PluralOperands.integerPart(unscaled, scale), scale, PluralOperands.fraction(unscaled, scale));
+    }
+
+    /**
+     * Evaluates this expression for a decimal given by its operands. Gettext rules only know counts,
+     * so by default the integer part chooses the form. Rules knowing the forms of decimals override this.
+     *
+     * @param i the integer part
+     * @param v the number of visible fraction digits
+     * @param f the visible fraction digits
+     *
+     * @return the index of the plural form
+     */
+    default int evaluate(long i, int v, long f)
+    {
+        return this.evaluate(i);
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+/**
+ * Extracts the operands of plural rules arithmetically from counts and from decimals given as an unscaled value
+ * and a scale, the decimal 12.50 is the unscaled value 1250 with the scale 2. The names follow the CLDR plural rules:
+ * i is the integer part, v the number of visible fraction digits and f the visible fraction digits.
+ */
+public final class PluralOperands
+{
+    /**
+     * The largest supported scale, 10^18 is the largest power of ten fitting into a long
+     */
+    public static final int MAX_SCALE = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+    private static final int REDUCTION = 1000000;
+
+    static
+    {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+        {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private PluralOperands()
+    {
+    }
+
+    /**
+     * Maps a count to an int choosing the same plural form in every standard rule: counts fitting into an int are kept,
+     * larger ones keep their last six digits and stay larger than any literal below 1000000.
+     *
+     * @param n the count
+     *
+     * @return the reduced count
+     */
+    public static int reduce(long n)
+    {
+        if (n == (int)n)
+        {
+            return (int)n;
+        }
+        int lastDigits = (int)(n % REDUCTION);
+        return n < 0 ? lastDigits - REDUCTION : lastDigits + REDUCTION;
+    }
+
+    public static long integerPart(long unscaled, int scale)
+    {
+        return unscaled / powerOfTen(scale);
+    }
+
+    /**
+     * Returns the visible fraction digits as an integer, 12.50 has the fraction 50
+     */
+    public static long fraction(long unscaled, int scale)
+    {
+        return Math.abs(unscaled % powerOfTen(scale));
+    }
+
+    private static long powerOfTen(int scale)
+    {
+        if (scale < 0 || scale > MAX_SCALE)
+        {
+            throw new IllegalArgumentException("The scale must be between 0 and " + MAX_SCALE + "!");
+        }
+        return POWERS_OF_TEN[scale];
+    }
+}
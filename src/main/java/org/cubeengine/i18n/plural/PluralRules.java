@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry sharing plural expressions between languages. Formulas of the standard gettext plural rules
+ * resolve to hand-written singletons, any other formula is parsed once and the resulting {@link ComplexExpr}
+ * is shared by all languages using it. Formulas are compared after normalizing whitespace and parentheses.
+ */
+public final class PluralRules
+{
+    public static final PluralExpr ZERO = new ZeroExpr();
+    public static final PluralExpr NOT_ONE = new NotOneExpr();
+    public static final PluralExpr GREATER_THAN_ONE = new GreaterThanOneExpr();
+
+    private static final ConcurrentMap<String, PluralExpr> BY_NORMALIZED = new ConcurrentHashMap<String, PluralExpr>();
+    private static final ConcurrentMap<String, PluralExpr> BY_FORMULA = new ConcurrentHashMap<String, PluralExpr>();
+    /**
+     * The hand-written expressions by their normalized formula
+     */
+    private static final Map<String, PluralExpr> STANDARD = new HashMap<String, PluralExpr>();
+
+    static
+    {
+        register("0", ZERO);
+        register("n != 1", NOT_ONE);
+        register("n > 1", GREATER_THAN_ONE);
+        for (StandardPluralRule rule : StandardPluralRule.values())
+        {
+            register(rule.getFormula(), rule);
+        }
+    }
+
+    private PluralRules()
+    {
+    }
+
+    private static void register(String formula, PluralExpr expr)
+    {
+        String normalized = normalize(formula);
+        BY_NORMALIZED.put(normalized, expr);
+        BY_FORMULA.put(formula, expr);
+        STANDARD.put(normalized, expr);
+    }
+
+    /**
+     * Returns the hand-written expression of a normalized formula
+     *
+     * @param normalized the normalized formula, see {@link #normalize(String)}
+     *
+     * @return the expression or null if the formula is no standard one
+     */
+    static PluralExpr getStandard(String normalized)
+    {
+        return STANDARD.get(normalized);
+    }
+
+    /**
+     * Returns whether two expressions choose the same forms, which is the case for equal expressions and for a parsed
+     * formula and the hand-written expression of the same formula
+     *
+     * @param expr  an expression
+     * @param other another expression
+     *
+     * @return whether the expressions are the same rule
+     */
+    public static boolean isSameRule(PluralExpr expr, PluralExpr other)
+    {
+        PluralExpr canonical = canonical(expr);
+        return canonical == canonical(other) || (canonical != null && canonical.equals(canonical(other)));
+    }
+
+    private static PluralExpr canonical(PluralExpr expr)
+    {
+        if (expr instanceof ComplexExpr && ((ComplexExpr)expr).getStandard() != null)
+        {
+            return ((ComplexExpr)expr).getStandard();
+        }
+        return expr;
+    }
+
+    /**
+     * Returns the shared expression for the given formula
+     *
+     * @param formula the formula, e.g. the plural part of a Plural-Forms header
+     *
+     * @return the expression
+     *
+     * @throws PluralExpressionParseException if the formula is no valid expression
+     */
+    public static PluralExpr get(String formula)
+    {
+        if (formula == null)
+        {
+            throw new IllegalArgumentException("The formula must not be null!");
+        }
+        PluralExpr expr = BY_FORMULA.get(formula);
+        if (expr != null)
+        {
+            return expr;
+        }
+        String normalized = normalize(formula);
+        expr = BY_NORMALIZED.get(normalized);
+        if (expr == null)
+        {
+            expr = new ComplexExpr(strip(formula));
+            PluralExpr existing = BY_NORMALIZED.putIfAbsent(normalized, expr);
+            if (existing != null)
+            {
+                expr = existing;
+            }
+        }
+        BY_FORMULA.putIfAbsent(formula, expr);
+        return expr;
+    }
+
+    /**
+     * Returns whether the formula resolves to a hand-written expression
+     *
+     * @param formula the formula
+     *
+     * @return true for the formulas of the standard plural rules
+     */
+    public static boolean isStandard(String formula)
+    {
+        return !(get(formula) instanceof ComplexExpr);
+    }
+
+    /**
+     * Returns a canonical form of the formula: the fully parenthesized parsed expression without whitespace,
+     * trailing semicolons are ignored
+     *
+     * @param formula the formula
+     *
+     * @return the normalized formula
+     */
+    public static String normalize(String formula)
+    {
+        return ExprParser.parse(strip(formula)).toString();
+    }
+
+    private static String strip(String formula)
+    {
+        String stripped = formula.trim();
+        while (stripped.endsWith(";"))
+        {
+            stripped = stripped.substring(0, stripped.length() - 1).trim();
+        }
+        return stripped;
+    }
+
+    /**
+     * Returns the number of distinct expressions currently known, including the standard ones
+     *
+     * @return the number of expressions
+     */
+    public static int size()
+    {
+        return BY_NORMALIZED.size();
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+/**
+ * Hand-written implementations of the plural rules used by gettext languages beyond the ones covered by
+ * {@link ZeroExpr}, {@link NotOneExpr} and {@link GreaterThanOneExpr}, see {@link PluralRules}.
+ */
+public enum StandardPluralRule implements PluralExpr
+{
+    /**
+     * Latvian
+     */
+    LATVIAN("n%10==1 && n%100!=11 ? 0 : n != 0 ? 1 : 2", 3)
+    {
+        public int evaluate(int n)
+        {
+            return n % 10 == 1 && n % 100 != 11 ? 0 : n != 0 ? 1 : 2;
+        }
+    },
+    /**
+     * Northern Sami, Inuktitut and others with a dual
+     */
+    DUAL("n==1 ? 0 : n==2 ? 1 : 2", 3)
+    {
+        public int evaluate(int n)
+        {
+            return n == 1 ? 0 : n == 2 ? 1 : 2;
+        }
+    },
+    /**
+     * Romanian
+     */
+    ROMANIAN("n==1 ? 0 : (n==0 || (n%100 > 0 && n%100 < 20)) ? 1 : 2", 3)
+    {
+        public int evaluate(int n)
+        {
+            int mod100 = n % 100;
+            return n == 1 ? 0 : (n == 0 || (mod100 > 0 && mod100 < 20)) ? 1 : 2;
+        }
+    },
+    /**
+     * Lithuanian
+     */
+    LITHUANIAN("n%10==1 && n%100!=11 ? 0 : n%10>=2 && (n%100<10 || n%100>=20) ? 1 : 2", 3)
+    {
+        public int evaluate(int n)
+        {
+            int mod10 = n % 10;
+            int mod100 = n % 100;
+            return mod10 == 1 && mod100 != 11 ? 0 : mod10 >= 2 && (mod100 < 10 || mod100 >= 20) ? 1 : 2;
+        }
+    },
+    /**
+     * Russian, Ukrainian, Belarusian, Serbian, Croatian and Bosnian
+     */
+    SLAVIC("n%10==1 && n%100!=11 ? 0 : n%10>=2 && n%10<=4 && (n%100<10 || n%100>=20) ? 1 : 2", 3)
+    {
+        public int evaluate(int n)
+        {
+            int mod10 = n % 10;
+            int mod100 = n % 100;
+            return mod10 == 1 && mod100 != 11 ? 0 : mod10 >= 2 && mod10 <= 4 && (mod100 < 10 || mod100 >= 20) ? 1 : 2;
+        }
+    },
+    /**
+     * Czech and Slovak
+     */
+    CZECH("(n==1) ? 0 : (n>=2 && n<=4) ? 1 : 2", 3)
+    {
+        public int evaluate(int n)
+        {
+            return n == 1 ? 0 : n >= 2 && n <= 4 ? 1 : 2;
+        }
+    },
+    /**
+     * Polish
+     */
+    POLISH("n==1 ? 0 : n%10>=2 && n%10<=4 && (n%100<10 || n%100>=20) ? 1 : 2", 3)
+    {
+        public int evaluate(int n)
+        {
+            int mod10 = n % 10;
+            int mod100 = n % 100;
+            return n == 1 ? 0 : mod10 >= 2 && mod10 <= 4 && (mod100 < 10 || mod100 >= 20) ? 1 : 2;
+        }
+    },
+    /**
+     * Slovenian and Sorbian
+     */
+    SLOVENIAN("n%100==1 ? 0 : n%100==2 ? 1 : n%100==3 || n%100==4 ? 2 : 3", 4)
+    {
+        public int evaluate(int n)
+        {
+            int mod100 = n % 100;
+            return mod100 == 1 ? 0 : mod100 == 2 ? 1 : mod100 == 3 || mod100 == 4 ? 2 : 3;
+        }
+    },
+    /**
+     * Arabic
+     */
+    ARABIC("n==0 ? 0 : n==1 ? 1 : n==2 ? 2 : n%100>=3 && n%100<=10 ? 3 : n%100>=11 ? 4 : 5", 6)
+    {
+        public int evaluate(int n)
+        {
+            int mod100 = n % 100;
+            return n == 0 ? 0 : n == 1 ? 1 : n == 2 ? 2 : mod100 >= 3 && mod100 <= 10 ? 3 : mod100 >= 11 ? 4 : 5;
+        }
+    },
+    /**
+     * Icelandic
+     */
+    ICELANDIC("n%10!=1 || n%100==11", 2)
+    {
+        public int evaluate(int n)
+        {
+            return n % 10 != 1 || n % 100 == 11 ? 1 : 0;
+        }
+    },
+    /**
+     * Macedonian
+     */
+    MACEDONIAN("n==1 || n%10==1 ? 0 : 1", 2)
+    {
+        public int evaluate(int n)
+        {
+            return n == 1 || n % 10 == 1 ? 0 : 1;
+        }
+    },
+    /**
+     * Scottish Gaelic
+     */
+    SCOTTISH_GAELIC("(n==1 || n==11) ? 0 : (n==2 || n==12) ? 1 : (n > 2 && n < 20) ? 2 : 3", 4)
+    {
+        public int evaluate(int n)
+        {
+            return n == 1 || n == 11 ? 0 : n == 2 || n == 12 ? 1 : n > 2 && n < 20 ? 2 : 3;
+        }
+    },
+    /**
+     * Welsh
+     */
+    WELSH("(n==1) ? 0 : (n==2) ? 1 : (n != 8 && n != 11) ? 2 : 3", 4)
+    {
+        public int evaluate(int n)
+        {
+            return n == 1 ? 0 : n == 2 ? 1 : n != 8 && n != 11 ? 2 : 3;
+        }
+    },
+    /**
+     * Maltese
+     */
+    MALTESE("n==1 ? 0 : n==0 || (n%100>1 && n%100<11) ? 1 : (n%100>10 && n%100<20) ? 2 : 3", 4)
+    {
+        public int evaluate(int n)
+        {
+            int mod100 = n % 100;
+            return n == 1 ? 0 : n == 0 || (mod100 > 1 && mod100 < 11) ? 1 : mod100 > 10 && mod100 < 20 ? 2 : 3;
+        }
+    },
+    /**
+     * Irish
+     */
+    IRISH("n==1 ? 0 : n==2 ? 1 : (n>2 && n<7) ? 2 : (n>6 && n<11) ? 3 : 4", 5)
+    {
+        public int evaluate(int n)
+        {
+            return n == 1 ? 0 : n == 2 ? 1 : n > 2 && n < 7 ? 2 : n > 6 && n < 11 ? 3 : 4;
+        }
+    },
+    /**
+     * Cornish
+     */
+    CORNISH("(n==1) ? 0 : (n==2) ? 1 : (n == 3) ? 2 : 3", 4)
+    {
+        public int evaluate(int n)
+        {
+            return n == 1 ? 0 : n == 2 ? 1 : n == 3 ? 2 : 3;
+        }
+    };
+
+    private final String formula;
+    private final int pluralCount;
+
+    StandardPluralRule(String formula, int pluralCount)
+    {
+        this.formula = formula;
+        this.pluralCount = pluralCount;
+    }
+
+    /**
+     * Returns the formula as it is written in the Plural-Forms header
+     *
+     * @return the formula
+     */
+    public String getFormula()
+    {
+        return formula;
+    }
+
+    public int getPluralCount()
+    {
+        return pluralCount;
+    }
+}
@@ -28,4 +28,16 @@ public class ZeroExpr implements PluralExpr
     {
         return 0;
     }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        return obj != null && obj.getClass() == this.getClass();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.getClass().hashCode();
+    }
 }
@@ -33,11 +33,28 @@ public class BinaryOperatorExpr extends Expr {
         this.rhs = rhs;
     }
 
+    public Expr getLhs() {
+        return lhs;
+    }
+
+    public BinaryOperator getOperator() {
+        return op;
+    }
+
+    public Expr getRhs() {
+        return rhs;
+    }
+
     @Override
     public int eval(int n) {
         return op.apply(lhs.eval(n), rhs.eval(n));
     }
 
+    @Override
+    public int eval(int n, int[] frame) {
+        return op.apply(lhs.eval(n, frame), rhs.eval(n, frame));
+    }
+
     @Override
     public String toString() {
         return "(" + lhs + op + rhs + ")";
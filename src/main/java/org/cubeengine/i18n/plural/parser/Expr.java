@@ -25,6 +25,14 @@ package org.cubeengine.i18n.plural.parser;
 public abstract class Expr {
     public abstract int eval(int n);
 
+    /**
+     * Evaluates this expression with a frame holding the subexpressions shared within one evaluation,
+     * see {@link SharedExpr}. Expressions containing no shared subexpressions ignore the frame.
+     */
+    public int eval(int n, int[] frame) {
+        return eval(n);
+    }
+
     public boolean isTrue(int n) {
         return eval(n) != 0;
     }
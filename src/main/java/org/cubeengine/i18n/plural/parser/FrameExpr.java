@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural.parser;
+
+import java.util.Arrays;
+
+/**
+ * The root of a rule containing {@link SharedExpr shared subexpressions}, it provides a cleared frame to every evaluation.
+ * All rules share the frame of a thread, which grows to the largest number of slots evaluated on it, so evaluating
+ * does not allocate. Frames never nest, as a rule has a single root.
+ */
+public final class FrameExpr extends Expr {
+    private static final ThreadLocal<int[]> FRAMES = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[0];
+        }
+    };
+
+    private final Expr body;
+    private final int slots;
+
+    public FrameExpr(Expr body, int slots) {
+        this.body = body;
+        this.slots = slots;
+    }
+
+    @Override
+    public int eval(int n) {
+        int size = slots << 1;
+        int[] frame = FRAMES.get();
+        if (frame.length < size) {
+            frame = new int[size];
+            FRAMES.set(frame);
+        } else {
+            Arrays.fill(frame, 0, size, 0);
+        }
+        return body.eval(n, frame);
+    }
+
+    @Override
+    public int eval(int n, int[] frame) {
+        return eval(n);
+    }
+
+    @Override
+    public String toString() {
+        return body.toString();
+    }
+}
@@ -29,6 +29,10 @@ public class LiteralExpr extends Expr {
         this.literal = literal;
     }
 
+    public int getLiteral() {
+        return literal;
+    }
+
     public int eval(int n) {
         return literal;
     }
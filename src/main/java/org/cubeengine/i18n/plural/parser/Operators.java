@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural.parser;
+
+/**
+ * The operators of plural expressions. The parser only uses these instances, so an expression tree
+ * can be inspected by comparing its operators against them.
+ * {@link #AND} and {@link #OR} evaluate both operands, the parser creates the short-circuiting
+ * {@link AndExpr} and {@link OrExpr} instead.
+ */
+public final class Operators {
+    public static final BinaryOperator OR = new NamedBinary("||") {
+        @Override
+        public int apply(int lhs, int rhs) {
+            return Expr.toInt(Expr.toBool(lhs) || Expr.toBool(rhs));
+        }
+    };
+    public static final BinaryOperator AND = new NamedBinary("&&") {
+        @Override
+        public int apply(int lhs, int rhs) {
+            return Expr.toInt(Expr.toBool(lhs) && Expr.toBool(rhs));
+        }
+    };
+    public static final BinaryOperator GREATER_EQUAL = new NamedComparison(">=") {
+        @Override
+        public boolean compare(int lhs, int rhs) {
+            return lhs >= rhs;
+        }
+    };
+    public static final BinaryOperator GREATER = new NamedComparison(">") {
+        @Override
+        public boolean compare(int lhs, int rhs) {
+            return lhs > rhs;
+        }
+    };
+    public static final BinaryOperator LESS_EQUAL = new NamedComparison("<=") {
+        @Override
+        public boolean compare(int lhs, int rhs) {
+            return lhs <= rhs;
+        }
+    };
+    public static final BinaryOperator LESS = new NamedComparison("<") {
+        @Override
+        public boolean compare(int lhs, int rhs) {
+            return lhs < rhs;
+        }
+    };
+    public static final BinaryOperator NOT_EQUAL = new NamedComparison("!=") {
+        @Override
+        public boolean compare(int lhs, int rhs) {
+            return lhs != rhs;
+        }
+    };
+    public static final BinaryOperator EQUAL = new NamedComparison("==") {
+        @Override
+        public boolean compare(int lhs, int rhs) {
+            return lhs == rhs;
+        }
+    };
+    public static final BinaryOperator ADD = new NamedBinary("+") {
+        @Override
+        public int apply(int lhs, int rhs) {
+            return lhs + rhs;
+        }
+    };
+    public static final BinaryOperator SUBTRACT = new NamedBinary("-") {
+        @Override
+        public int apply(int lhs, int rhs) {
+            return lhs - rhs;
+        }
+    };
+    public static final BinaryOperator MULTIPLY = new NamedBinary("*") {
+        @Override
+        public int apply(int lhs, int rhs) {
+            return lhs * rhs;
+        }
+    };
+    public static final BinaryOperator DIVIDE = new NamedBinary("/") {
+        @Override
+        public int apply(int lhs, int rhs) {
+            return lhs / rhs;
+        }
+    };
+    public static final BinaryOperator MODULO = new NamedBinary("%") {
+        @Override
+        public int apply(int lhs, int rhs) {
+            return lhs % rhs;
+        }
+    };
+    public static final UnaryOperator NOT = new UnaryOperator() {
+        @Override
+        public int apply(int v) {
+            return v != 0 ? 0 : 1;
+        }
+
+        @Override
+        public String toString() {
+            return "!%s";
+        }
+    };
+
+    public static final UnaryOperator NEGATE = new UnaryOperator() {
+        @Override
+        public int apply(int v) {
+            return -v;
+        }
+
+        @Override
+        public String toString() {
+            return "-%s";
+        }
+    };
+
+    private Operators() {
+    }
+
+    private abstract static class NamedBinary implements BinaryOperator {
+        private final String name;
+
+        NamedBinary(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private abstract static class NamedComparison extends ComparisonOperator {
+        private final String name;
+
+        NamedComparison(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
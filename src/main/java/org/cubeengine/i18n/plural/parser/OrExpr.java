@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural.parser;
+
+/**
+ * The logical disjunction of C, the right side is only evaluated if the left side does not decide the result
+ */
+public final class OrExpr extends Expr {
+    private final Expr lhs;
+    private final Expr rhs;
+
+    public OrExpr(Expr lhs, Expr rhs) {
+        this.lhs = lhs;
+        this.rhs = rhs;
+    }
+
+    public Expr getLhs() {
+        return lhs;
+    }
+
+    public Expr getRhs() {
+        return rhs;
+    }
+
+    @Override
+    public int eval(int n) {
+        return toInt(lhs.eval(n) != 0 || rhs.eval(n) != 0);
+    }
+
+    @Override
+    public int eval(int n, int[] frame) {
+        return toInt(lhs.eval(n, frame) != 0 || rhs.eval(n, frame) != 0);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + lhs + "||" + rhs + ")";
+    }
+}
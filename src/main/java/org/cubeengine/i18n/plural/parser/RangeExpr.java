@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural.parser;
+
+/**
+ * Checks whether a value lies within min and max, both inclusive, or outside of them if negated.
+ * Replaces comparisons against literals and conjunctions of two such comparisons.
+ */
+public final class RangeExpr extends Expr {
+    private final Expr value;
+    private final int min;
+    private final int max;
+    private final boolean negated;
+
+    public RangeExpr(Expr value, int min, int max, boolean negated) {
+        this.value = value;
+        this.min = min;
+        this.max = max;
+        this.negated = negated;
+    }
+
+    public Expr getValue() {
+        return value;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public boolean isNegated() {
+        return negated;
+    }
+
+    @Override
+    public int eval(int n) {
+        return test(value.eval(n));
+    }
+
+    @Override
+    public int eval(int n, int[] frame) {
+        return test(value.eval(n, frame));
+    }
+
+    private int test(int v) {
+        return (v >= min && v <= max) != negated ? 1 : 0;
+    }
+
+    @Override
+    public String toString() {
+        String bound = min == max ? "==" + min : " in [" + min + "," + max + "]";
+        return "(" + (negated ? "!" : "") + value + bound + ")";
+    }
+}
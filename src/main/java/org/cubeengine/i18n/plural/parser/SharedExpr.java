@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural.parser;
+
+/**
+ * A subexpression occurring several times in a rule. It is evaluated once per evaluation of the rule
+ * when it is first needed and read from the frame afterwards, so subexpressions in branches that are
+ * not taken are never evaluated, just like without sharing.
+ * The frame holds the value of slot i at 2 * i and whether it was evaluated at 2 * i + 1.
+ */
+public final class SharedExpr extends Expr {
+    private final int slot;
+    private final Expr value;
+
+    public SharedExpr(int slot, Expr value) {
+        this.slot = slot;
+        this.value = value;
+    }
+
+    @Override
+    public int eval(int n) {
+        return value.eval(n);
+    }
+
+    @Override
+    public int eval(int n, int[] frame) {
+        if (frame == null) {
+            return value.eval(n);
+        }
+        int index = slot << 1;
+        if (frame[index + 1] == 0) {
+            frame[index] = value.eval(n, frame);
+            frame[index + 1] = 1;
+        }
+        return frame[index];
+    }
+
+    @Override
+    public String toString() {
+        return "$" + slot + value;
+    }
+}
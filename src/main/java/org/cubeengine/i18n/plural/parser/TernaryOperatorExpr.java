@@ -33,11 +33,28 @@ public class TernaryOperatorExpr extends Expr {
         this.falsePath = falsePath;
     }
 
+    public Expr getCondition() {
+        return condition;
+    }
+
+    public Expr getTruePath() {
+        return truePath;
+    }
+
+    public Expr getFalsePath() {
+        return falsePath;
+    }
+
     @Override
     public int eval(int n) {
         return condition.isTrue(n) ? truePath.eval(n) : falsePath.eval(n);
     }
 
+    @Override
+    public int eval(int n, int[] frame) {
+        return condition.eval(n, frame) != 0 ? truePath.eval(n, frame) : falsePath.eval(n, frame);
+    }
+
     @Override
     public String toString() {
         return "(" + condition + "?" + truePath + ":" + falsePath + ")";
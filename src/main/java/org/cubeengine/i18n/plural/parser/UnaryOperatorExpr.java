@@ -31,11 +31,24 @@ public class UnaryOperatorExpr extends Expr {
         this.value = value;
     }
 
+    public UnaryOperator getOperator() {
+        return op;
+    }
+
+    public Expr getValue() {
+        return value;
+    }
+
     @Override
     public int eval(int n) {
         return op.apply(value.eval(n));
     }
 
+    @Override
+    public int eval(int n, int[] frame) {
+        return op.apply(value.eval(n, frame));
+    }
+
     @Override
     public String toString() {
         return "(" + String.format(op.toString(), value) + ")";
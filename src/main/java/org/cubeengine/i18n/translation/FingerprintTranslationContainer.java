@@ -0,0 +1,284 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.translation;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * An immutable translation container that keeps a 64 bit fingerprint of every message instead of the message.
+ * Messages with the same fingerprint are detected while building the container and keep their full message.
+ * A lookup of a message that is not in the container answers a translation only if its fingerprint equals
+ * the one of a contained message, which is about as likely as n / 2^64 for n messages.
+ * As the dropped messages can not be enumerated, {@link #getSingularMessages()} and {@link #getPluralMessages()}
+ * only return the translations of the messages that were kept, see {@link #isEnumerable()}.
+ */
+public class FingerprintTranslationContainer extends TranslationContainer
+{
+    private static final ToLongFunction<String> FINGERPRINT = new ToLongFunction<String>()
+    {
+        public long applyAsLong(String message)
+        {
+            return fingerprint(message);
+        }
+    };
+
+    private final FingerprintKeys keys;
+    private final TranslationTable table;
+
+    public FingerprintTranslationContainer(TranslationContainer container)
+    {
+        this(container.getSingularMessages(), container.getPluralMessages());
+    }
+
+    public FingerprintTranslationContainer(Map<String, String> singularMessages, Map<String, String[]> pluralMessages)
+    {
+        this(singularMessages, pluralMessages, FINGERPRINT);
+    }
+
+    /**
+     * Creates a container using the given fingerprint function, which allows to provoke collisions
+     */
+    FingerprintTranslationContainer(Map<String, String> singularMessages, Map<String, String[]> pluralMessages, ToLongFunction<String> fingerprint)
+    {
+        this(singularMessages, pluralMessages, fingerprint, collisions(singularMessages, pluralMessages, fingerprint));
+    }
+
+    private FingerprintTranslationContainer(Map<String, String> singularMessages, Map<String, String[]> pluralMessages, ToLongFunction<String> fingerprint, Set<String> collisions)
+    {
+        super(retain(singularMessages, collisions), retain(pluralMessages, collisions));
+        Set<String> messages = new HashSet<String>(singularMessages.keySet());
+        messages.addAll(pluralMessages.keySet());
+        messages.removeAll(collisions);
+        int capacity = TranslationTable.capacityFor(messages.size());
+        this.keys = new FingerprintKeys(capacity, fingerprint);
+        this.table = new TranslationTable(this.keys, capacity, messages, singularMessages, pluralMessages);
+    }
+
+    /**
+     * Returns the messages sharing their fingerprint with another message
+     */
+    private static Set<String> collisions(Map<String, String> singularMessages, Map<String, String[]> pluralMessages, ToLongFunction<String> fingerprint)
+    {
+        Set<String> messages = new HashSet<String>(singularMessages.keySet());
+        messages.addAll(pluralMessages.keySet());
+        Map<Long, String> owners = new HashMap<Long, String>();
+        Set<String> collisions = new HashSet<String>();
+        for (String message : messages)
+        {
+            String owner = owners.put(fingerprintOf(fingerprint, message), message);
+            if (owner != null)
+            {
+                collisions.add(owner);
+                collisions.add(message);
+            }
+        }
+        return collisions;
+    }
+
+    /**
+     * Returns the fingerprint of a message, 0 marks empty slots and is mapped to 1
+     */
+    private static long fingerprintOf(ToLongFunction<String> fingerprint, String message)
+    {
+        long hash = fingerprint.applyAsLong(message);
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static <T> Map<String, T> retain(Map<String, T> translations, Set<String> messages)
+    {
+        Map<String, T> retained = new HashMap<String, T>();
+        for (String message : messages)
+        {
+            if (translations.containsKey(message))
+            {
+                retained.put(message, translations.get(message));
+            }
+        }
+        return retained;
+    }
+
+    /**
+     * Returns the fingerprint of a message: FNV-1a over its chars followed by the finalizer of MurmurHash3
+     *
+     * @param message the message
+     *
+     * @return the fingerprint
+     */
+    private static long fingerprint(String message)
+    {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < message.length(); i++)
+        {
+            hash ^= message.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Returns the number of messages keeping their full message because their fingerprint collides
+     *
+     * @return the number of colliding messages
+     */
+    public int getCollisionCount()
+    {
+        return super.size();
+    }
+
+    @Override
+    public String getSingular(String message)
+    {
+        String translation = this.table.getSingular(message);
+        if (translation == null)
+        {
+            translation = super.getSingular(message);
+        }
+        return translation;
+    }
+
+    @Override
+    public String getPlural(String message, int index)
+    {
+        String translation = this.table.getPlural(message, index);
+        if (translation == null)
+        {
+            translation = super.getPlural(message, index);
+        }
+        return translation;
+    }
+
+    /**
+     * The messages of the fingerprinted translations are dropped, so only the colliding translations are enumerated
+     */
+    @Override
+    public boolean isEnumerable()
+    {
+        return false;
+    }
+
+    /**
+     * The messages are dropped, so there are no symbols to keep
+     */
+    @Override
+    public boolean usesSymbols()
+    {
+        return false;
+    }
+
+    @Override
+    public int size()
+    {
+        return this.table.size() + super.size();
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by the tables of this container, not counting the translations
+     *
+     * @return the estimated size
+     */
+    public long getTableSize()
+    {
+        // the fingerprints
+        return this.table.getTableSize() + 16 + (long)this.table.capacity() * 8;
+    }
+
+    @Override
+    public FingerprintTranslationContainer freeze()
+    {
+        return this;
+    }
+
+    @Override
+    public FingerprintTranslationContainer fingerprint()
+    {
+        return this;
+    }
+
+    @Override
+    public void merge(Map<String, String> singularMessages, Map<String, String[]> pluralMessages)
+    {
+        throw new UnsupportedOperationException("A fingerprint translation container can not be modified!");
+    }
+
+    @Override
+    public void putAll(Map<String, String> singularMessages, Map<String, String[]> pluralMessages)
+    {
+        throw new UnsupportedOperationException("A fingerprint translation container can not be modified!");
+    }
+
+    @Override
+    public void putSingular(String singular, String result)
+    {
+        throw new UnsupportedOperationException("A fingerprint translation container can not be modified!");
+    }
+
+    @Override
+    public void putPlural(String plural, String result, int n, int maxN)
+    {
+        throw new UnsupportedOperationException("A fingerprint translation container can not be modified!");
+    }
+
+    /**
+     * Keeps only the fingerprints of the messages, 0 marks an empty slot
+     */
+    private static final class FingerprintKeys implements TranslationTable.Keys
+    {
+        private final long[] fingerprints;
+        private final ToLongFunction<String> fingerprint;
+
+        private FingerprintKeys(int capacity, ToLongFunction<String> fingerprint)
+        {
+            this.fingerprints = new long[capacity];
+            this.fingerprint = fingerprint;
+        }
+
+        public long hash(String message)
+        {
+            return fingerprintOf(this.fingerprint, message);
+        }
+
+        public boolean isEmpty(int slot)
+        {
+            return this.fingerprints[slot] == 0;
+        }
+
+        public boolean matches(int slot, long hash, String message)
+        {
+            return this.fingerprints[slot] == hash;
+        }
+
+        public void store(int slot, long hash, String message)
+        {
+            this.fingerprints[slot] = hash;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.translation;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable translation container packing its translations into open-addressed parallel arrays.
+ * Every message has a single slot holding its singular translation and the range of its plural forms
+ * in one shared array, so no map nodes or per-message arrays are retained.
+ * All fields are final, so a frozen container can be shared between threads without locking.
+ */
+public class FrozenTranslationContainer extends TranslationContainer
+{
+    private final HashedKeys keys;
+    private final TranslationTable table;
+    /**
+     * Whether the messages were taken from a container interning them
+     */
+    private final boolean symbols;
+
+    public FrozenTranslationContainer(TranslationContainer container)
+    {
+        this(container.getSingularMessages(), container.getPluralMessages(), container.usesSymbols());
+    }
+
+    public FrozenTranslationContainer(Map<String, String> singularMessages, Map<String, String[]> pluralMessages)
+    {
+        this(singularMessages, pluralMessages, false);
+    }
+
+    private FrozenTranslationContainer(Map<String, String> singularMessages, Map<String, String[]> pluralMessages, boolean symbols)
+    {
+        super(Collections.<String, String>emptyMap(), Collections.<String, String[]>emptyMap());
+        this.symbols = symbols;
+        Set<String> messages = new HashSet<String>(singularMessages.keySet());
+        messages.addAll(pluralMessages.keySet());
+        int capacity = TranslationTable.capacityFor(messages.size());
+        this.keys = new HashedKeys(capacity);
+        this.table = new TranslationTable(this.keys, capacity, messages, singularMessages, pluralMessages);
+    }
+
+    @Override
+    public String getSingular(String message)
+    {
+        return this.table.getSingular(message);
+    }
+
+    @Override
+    public String getPlural(String message, int index)
+    {
+        return this.table.getPlural(message, index);
+    }
+
+    @Override
+    public Map<String, String> getSingularMessages()
+    {
+        Map<String, String> messages = new HashMap<String, String>();
+        for (int slot = 0; slot < this.table.capacity(); slot++)
+        {
+            String singular = this.table.singularAt(slot);
+            if (singular != null)
+            {
+                messages.put(this.keys.keys[slot], singular);
+            }
+        }
+        return Collections.unmodifiableMap(messages);
+    }
+
+    @Override
+    public Map<String, String[]> getPluralMessages()
+    {
+        Map<String, String[]> messages = new HashMap<String, String[]>();
+        for (int slot = 0; slot < this.table.capacity(); slot++)
+        {
+            String[] plural = this.table.pluralAt(slot);
+            if (plural != null)
+            {
+                messages.put(this.keys.keys[slot], plural);
+            }
+        }
+        return Collections.unmodifiableMap(messages);
+    }
+
+    @Override
+    public int size()
+    {
+        return this.table.size();
+    }
+
+    @Override
+    public boolean usesSymbols()
+    {
+        return this.symbols;
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by the tables of this container, not counting the strings
+     *
+     * @return the estimated size
+     */
+    public long getTableSize()
+    {
+        // the keys and their hash codes
+        return this.table.getTableSize() + 2 * 16 + (long)this.keys.keys.length * 8;
+    }
+
+    @Override
+    public FrozenTranslationContainer freeze()
+    {
+        return this;
+    }
+
+    @Override
+    public void merge(Map<String, String> singularMessages, Map<String, String[]> pluralMessages)
+    {
+        throw new UnsupportedOperationException("A frozen translation container can not be modified!");
+    }
+
+    @Override
+    public void putAll(Map<String, String> singularMessages, Map<String, String[]> pluralMessages)
+    {
+        throw new UnsupportedOperationException("A frozen translation container can not be modified!");
+    }
+
+    @Override
+    public void putSingular(String singular, String result)
+    {
+        throw new UnsupportedOperationException("A frozen translation container can not be modified!");
+    }
+
+    @Override
+    public void putPlural(String plural, String result, int n, int maxN)
+    {
+        throw new UnsupportedOperationException("A frozen translation container can not be modified!");
+    }
+
+    /**
+     * Keeps the messages and their hash codes, comparing the hash codes first avoids touching the strings of colliding messages
+     */
+    private static final class HashedKeys implements TranslationTable.Keys
+    {
+        private final String[] keys;
+        private final int[] hashes;
+
+        private HashedKeys(int capacity)
+        {
+            this.keys = new String[capacity];
+            this.hashes = new int[capacity];
+        }
+
+        public long hash(String message)
+        {
+            return message.hashCode() & 0xFFFFFFFFL;
+        }
+
+        public boolean isEmpty(int slot)
+        {
+            return this.keys[slot] == null;
+        }
+
+        public boolean matches(int slot, long hash, String message)
+        {
+            String key = this.keys[slot];
+            return this.hashes[slot] == (int)hash && (key == message || key.equals(message));
+        }
+
+        public void store(int slot, long hash, String message)
+        {
+            this.keys[slot] = message;
+            this.hashes[slot] = (int)hash;
+        }
+    }
+}
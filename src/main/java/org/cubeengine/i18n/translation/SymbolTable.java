@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.translation;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interns the messages translation containers are keyed by, so a message translated by many languages exists once.
+ * A symbol table is shared by all containers of a service and keeps its symbols until they are dropped
+ * by {@link #retainAll(Collection)}, e.g. when a language is unloaded.
+ */
+public class SymbolTable
+{
+    /**
+     * The estimated bytes of a string besides its chars on a 64 bit JVM with compressed references:
+     * the string object and the header of its char array
+     */
+    private static final int STRING_OVERHEAD = 40;
+
+    private final ConcurrentMap<String, String> symbols = new ConcurrentHashMap<String, String>();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    /**
+     * Returns the symbol equal to the given string, the string itself becomes the symbol if there is none
+     *
+     * @param string the string
+     *
+     * @return the symbol or null if the string is null
+     */
+    public String intern(String string)
+    {
+        if (string == null)
+        {
+            return null;
+        }
+        String symbol = this.symbols.get(string);
+        if (symbol == null)
+        {
+            symbol = this.symbols.putIfAbsent(string, string);
+            if (symbol == null)
+            {
+                return string;
+            }
+        }
+        if (symbol != string)
+        {
+            this.duplicates.incrementAndGet();
+            this.savedBytes.addAndGet(STRING_OVERHEAD + 2L * string.length());
+        }
+        return symbol;
+    }
+
+    /**
+     * Drops the symbols none of the given containers is keyed by. Only containers {@link TranslationContainer#usesSymbols() using symbols}
+     * are enumerated, others are keyed by none and might be expensive to enumerate.
+     * A string interned concurrently by a container that is not given may be dropped, it is interned again by the next
+     * container, which only costs the sharing of that string.
+     *
+     * @param containers the containers still in use
+     *
+     * @return the number of dropped symbols
+     */
+    public int retainAll(Collection<? extends TranslationContainer> containers)
+    {
+        Set<String> used = new HashSet<String>();
+        for (TranslationContainer container : containers)
+        {
+            if (container.usesSymbols() && container.isEnumerable())
+            {
+                used.addAll(container.getSingularMessages().keySet());
+                used.addAll(container.getPluralMessages().keySet());
+            }
+        }
+        int size = this.symbols.size();
+        this.symbols.keySet().retainAll(used);
+        return size - this.symbols.size();
+    }
+
+    /**
+     * Returns the number of symbols
+     *
+     * @return the number of symbols
+     */
+    public int size()
+    {
+        return this.symbols.size();
+    }
+
+    /**
+     * Returns the number of interned strings that were replaced by an existing symbol
+     *
+     * @return the number of duplicates
+     */
+    public long getDuplicates()
+    {
+        return this.duplicates.get();
+    }
+
+    /**
+     * Returns an estimate of the bytes saved by replacing duplicates with their symbols. It assumes two bytes per char,
+     * JVMs with compact strings store Latin-1 strings with one byte per char, so for them it is an upper bound.
+     *
+     * @return the estimated saved bytes
+     */
+    public long getSavedBytes()
+    {
+        return this.savedBytes.get();
+    }
+}
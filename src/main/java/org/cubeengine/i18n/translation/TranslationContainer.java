@@ -22,18 +22,38 @@
  */
 package org.cubeengine.i18n.translation;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 public class TranslationContainer
 {
+    /**
+     * Separates the context from the message in the key of a translation with context, as done by GNU gettext
+     */
+    public static final char CONTEXT_SEPARATOR = '\u0004';
+
     private final Map<String, String> singularMessages;
     private final Map<String, String[]> pluralMessages;
+    private final SymbolTable symbols;
 
     public TranslationContainer(Map<String, String> singularMessages, Map<String, String[]> pluralMessages)
+    {
+        this(singularMessages, pluralMessages, null);
+    }
+
+    /**
+     * Creates a container interning the messages put into it
+     *
+     * @param singularMessages the singular translations
+     * @param pluralMessages   the plural translations
+     * @param symbols          the symbol table or null to keep the messages as they are
+     */
+    public TranslationContainer(Map<String, String> singularMessages, Map<String, String[]> pluralMessages, SymbolTable symbols)
     {
         this.singularMessages = singularMessages;
         this.pluralMessages = pluralMessages;
+        this.symbols = symbols;
     }
 
     public TranslationContainer()
@@ -41,6 +61,28 @@ public class TranslationContainer
         this(new HashMap<String, String>(), new HashMap<String, String[]>());
     }
 
+    public TranslationContainer(SymbolTable symbols)
+    {
+        this(new HashMap<String, String>(), new HashMap<String, String[]>(), symbols);
+    }
+
+    /**
+     * Returns the key a message with context is stored with
+     *
+     * @param context the context or null
+     * @param message the message
+     *
+     * @return the message prefixed by the context if there is one
+     */
+    public static String contextKey(String context, String message)
+    {
+        if (context == null)
+        {
+            return message;
+        }
+        return context + CONTEXT_SEPARATOR + message;
+    }
+
     public String getSingular(String message)
     {
         return this.singularMessages.get(message);
@@ -49,7 +91,7 @@ public class TranslationContainer
     public String getPlural(String message, int index)
     {
         String[] translations = this.pluralMessages.get(message);
-        if (translations != null)
+        if (translations != null && index >= 0 && index < translations.length)
         {
             String translation = translations[index];
             if (translation != null)
@@ -60,6 +102,128 @@ public class TranslationContainer
         return null;
     }
 
+    /**
+     * Returns a read-only view of the singular translations keyed by their message
+     *
+     * @return the singular translations
+     */
+    public Map<String, String> getSingularMessages()
+    {
+        return Collections.unmodifiableMap(this.singularMessages);
+    }
+
+    /**
+     * Returns a read-only view of the plural translations keyed by their plural message
+     *
+     * @return the plural translations
+     */
+    public Map<String, String[]> getPluralMessages()
+    {
+        return Collections.unmodifiableMap(this.pluralMessages);
+    }
+
+    /**
+     * Returns the number of singular and plural entries in this container
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return this.singularMessages.size() + this.pluralMessages.size();
+    }
+
+    /**
+     * Returns whether {@link #getSingularMessages()} and {@link #getPluralMessages()} return all translations
+     * of this container. Containers dropping their messages only return the translations they kept.
+     *
+     * @return whether all translations are enumerated
+     */
+    public boolean isEnumerable()
+    {
+        return true;
+    }
+
+    /**
+     * Returns whether the messages of this container are interned by a {@link SymbolTable}, only such containers
+     * are enumerated to find the symbols still in use, see {@link SymbolTable#retainAll(java.util.Collection)}
+     *
+     * @return whether the messages are symbols
+     */
+    public boolean usesSymbols()
+    {
+        return this.symbols != null;
+    }
+
+    /**
+     * Packs the translations of this container into an immutable container that retains less memory
+     * and can be shared between threads without locking.
+     *
+     * @return the frozen container
+     */
+    public TranslationContainer freeze()
+    {
+        return new FrozenTranslationContainer(this);
+    }
+
+    /**
+     * Packs the translations of this container into an immutable container keeping fingerprints instead of messages,
+     * see {@link FingerprintTranslationContainer}
+     *
+     * @return the fingerprint container
+     */
+    public TranslationContainer fingerprint()
+    {
+        return new FingerprintTranslationContainer(this);
+    }
+
+    /**
+     * Returns a container with the translations of this container that differ from the ones of the base container.
+     * Looking up a message in the returned container first and in the base container afterwards
+     * yields the same translations as this container.
+     *
+     * @param base    the base container
+     * @param plurals whether plural translations are compared, the base has to use the same plural rule
+     *
+     * @return the differing translations
+     */
+    public TranslationContainer difference(TranslationContainer base, boolean plurals)
+    {
+        if (base == null)
+        {
+            throw new IllegalArgumentException("The base container must not be null!");
+        }
+        Map<String, String> singular = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : this.getSingularMessages().entrySet())
+        {
+            if (entry.getValue() != null && !entry.getValue().equals(base.getSingular(entry.getKey())))
+            {
+                singular.put(entry.getKey(), entry.getValue());
+            }
+        }
+        Map<String, String[]> plural = new HashMap<String, String[]>();
+        for (Map.Entry<String, String[]> entry : this.getPluralMessages().entrySet())
+        {
+            if (!plurals || !this.hasPluralForms(base, entry.getKey(), entry.getValue()))
+            {
+                plural.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new TranslationContainer(singular, plural, this.symbols);
+    }
+
+    private boolean hasPluralForms(TranslationContainer base, String message, String[] forms)
+    {
+        for (int i = 0; i < forms.length; i++)
+        {
+            // a missing form falls back to the base anyway
+            if (forms[i] != null && !forms[i].equals(base.getPlural(message, i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void merge(Map<String, String> singularMessages, Map<String, String[]> pluralMessages)
     {
         singularMessages.keySet().removeAll(this.singularMessages.keySet());
@@ -69,13 +233,25 @@ public class TranslationContainer
 
     public void putAll(Map<String, String> singularMessages, Map<String, String[]> pluralMessages)
     {
-        this.singularMessages.putAll(singularMessages);
-        this.pluralMessages.putAll(pluralMessages);
+        if (this.symbols == null)
+        {
+            this.singularMessages.putAll(singularMessages);
+            this.pluralMessages.putAll(pluralMessages);
+            return;
+        }
+        for (Map.Entry<String, String> entry : singularMessages.entrySet())
+        {
+            this.singularMessages.put(this.symbols.intern(entry.getKey()), entry.getValue());
+        }
+        for (Map.Entry<String, String[]> entry : pluralMessages.entrySet())
+        {
+            this.pluralMessages.put(this.symbols.intern(entry.getKey()), entry.getValue());
+        }
     }
 
     public void putSingular(String singular, String result)
     {
-        this.singularMessages.put(singular, result);
+        this.singularMessages.put(this.intern(singular), result);
     }
 
     public void putPlural(String plural, String result, int n, int maxN)
@@ -84,8 +260,13 @@ public class TranslationContainer
         if (translations == null)
         {
             translations = new String[maxN];
-            this.pluralMessages.put(plural, translations);
+            this.pluralMessages.put(this.intern(plural), translations);
         }
         translations[n] = result;
     }
+
+    private String intern(String message)
+    {
+        return this.symbols == null ? message : this.symbols.intern(message);
+    }
 }
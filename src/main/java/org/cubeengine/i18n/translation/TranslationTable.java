@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.translation;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The open-addressed parallel arrays of the immutable translation containers.
+ * Every message has a single slot holding its singular translation and the range of its plural forms
+ * in one shared array. How messages are hashed and how a slot is matched against a message is up to the {@link Keys}.
+ */
+final class TranslationTable
+{
+    private static final String[] NO_STRINGS = new String[0];
+
+    private final Keys keys;
+    private final String[] singulars;
+    /**
+     * The plural forms of the slot i are forms[pluralOffsets[i]] to forms[pluralOffsets[i + 1] - 1]
+     */
+    private final int[] pluralOffsets;
+    private final String[] forms;
+    private final int mask;
+    private final int singularCount;
+    private final int pluralCount;
+
+    /**
+     * Builds the table
+     *
+     * @param keys             the key storage, allocated for the capacity
+     * @param capacity         the capacity, see {@link #capacityFor(int)}
+     * @param messages         the messages to put into the table
+     * @param singularMessages the singular translations
+     * @param pluralMessages   the plural translations
+     */
+    TranslationTable(Keys keys, int capacity, Collection<String> messages, Map<String, String> singularMessages, Map<String, String[]> pluralMessages)
+    {
+        this.keys = keys;
+        this.mask = capacity - 1;
+        this.singulars = new String[capacity];
+        this.pluralOffsets = new int[capacity + 1];
+
+        // the messages by slot, only needed to lay out the plural forms
+        String[] placed = new String[capacity];
+        int singularCount = 0;
+        int pluralCount = 0;
+        int formCount = 0;
+        for (String message : messages)
+        {
+            long hash = keys.hash(message);
+            int slot = spread(hash) & this.mask;
+            while (!keys.isEmpty(slot))
+            {
+                slot = (slot + 1) & this.mask;
+            }
+            keys.store(slot, hash, message);
+            placed[slot] = message;
+            String singular = singularMessages.get(message);
+            if (singular != null)
+            {
+                this.singulars[slot] = singular;
+                singularCount++;
+            }
+            String[] plural = pluralMessages.get(message);
+            if (plural != null && plural.length != 0)
+            {
+                formCount += plural.length;
+                pluralCount++;
+            }
+        }
+
+        this.forms = formCount == 0 ? NO_STRINGS : new String[formCount];
+        int offset = 0;
+        for (int slot = 0; slot < capacity; slot++)
+        {
+            this.pluralOffsets[slot] = offset;
+            String[] plural = placed[slot] == null ? null : pluralMessages.get(placed[slot]);
+            if (plural != null)
+            {
+                System.arraycopy(plural, 0, this.forms, offset, plural.length);
+                offset += plural.length;
+            }
+        }
+        this.pluralOffsets[capacity] = offset;
+        this.singularCount = singularCount;
+        this.pluralCount = pluralCount;
+    }
+
+    /**
+     * Returns the capacity of a table for the number of messages, keeping the load factor at or below 0.75
+     */
+    static int capacityFor(int size)
+    {
+        int capacity = 2;
+        while (capacity * 3 < size * 4)
+        {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Scatters the hashes of similar messages, which often only differ in their last bits and would
+     * otherwise form long runs of occupied slots
+     */
+    private static int spread(long hash)
+    {
+        int h = (int)(hash ^ (hash >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the slot of a message, there is none for null as no message is null
+     *
+     * @return the slot or -1 if the message has none
+     */
+    int slotOf(String message)
+    {
+        if (message == null)
+        {
+            return -1;
+        }
+        long hash = this.keys.hash(message);
+        int slot = spread(hash) & this.mask;
+        while (!this.keys.isEmpty(slot))
+        {
+            if (this.keys.matches(slot, hash, message))
+            {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    int capacity()
+    {
+        return this.singulars.length;
+    }
+
+    String getSingular(String message)
+    {
+        int slot = this.slotOf(message);
+        return slot < 0 ? null : this.singulars[slot];
+    }
+
+    String getPlural(String message, int index)
+    {
+        int slot = this.slotOf(message);
+        if (slot < 0 || index < 0)
+        {
+            return null;
+        }
+        int form = this.pluralOffsets[slot] + index;
+        return form < this.pluralOffsets[slot + 1] ? this.forms[form] : null;
+    }
+
+    String singularAt(int slot)
+    {
+        return this.singulars[slot];
+    }
+
+    /**
+     * Returns a copy of the plural forms of a slot
+     *
+     * @return the plural forms or null if the slot has none
+     */
+    String[] pluralAt(int slot)
+    {
+        int from = this.pluralOffsets[slot];
+        int to = this.pluralOffsets[slot + 1];
+        if (from == to)
+        {
+            return null;
+        }
+        String[] plural = new String[to - from];
+        System.arraycopy(this.forms, from, plural, 0, plural.length);
+        return plural;
+    }
+
+    int size()
+    {
+        return this.singularCount + this.pluralCount;
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by the arrays of this table, not counting the keys and the strings
+     */
+    long getTableSize()
+    {
+        // array headers of 16 bytes and compressed references of 4 bytes
+        return 3 * 16 + (long)this.singulars.length * 4 + this.pluralOffsets.length * 4 + this.forms.length * 4;
+    }
+
+    /**
+     * The key storage of a table
+     */
+    interface Keys
+    {
+        /**
+         * Hashes a message
+         */
+        long hash(String message);
+
+        boolean isEmpty(int slot);
+
+        /**
+         * Returns whether the slot holds the message of the hash
+         */
+        boolean matches(int slot, long hash, String message);
+
+        void store(int slot, long hash, String message);
+    }
+}
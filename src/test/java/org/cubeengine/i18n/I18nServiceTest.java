@@ -0,0 +1,709 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n;
+
+import org.cubeengine.i18n.fallback.ExplicitFallback;
+import org.cubeengine.i18n.fallback.TruncatingFallback;
+import org.cubeengine.i18n.language.DefinitionLoadingException;
+import org.cubeengine.i18n.language.Language;
+import org.cubeengine.i18n.language.LanguageDefinition;
+import org.cubeengine.i18n.language.LanguageLoader;
+import org.cubeengine.i18n.language.NormalLanguage;
+import org.cubeengine.i18n.language.SourceLanguage;
+import org.cubeengine.i18n.plural.ComplexExpr;
+import org.cubeengine.i18n.plural.NotOneExpr;
+import org.cubeengine.i18n.plural.PluralExpr;
+import org.cubeengine.i18n.plural.PluralRules;
+import org.cubeengine.i18n.translation.FingerprintTranslationContainer;
+import org.cubeengine.i18n.translation.TranslationContainer;
+import org.cubeengine.i18n.translation.TranslationLoader;
+import org.cubeengine.i18n.translation.TranslationLoadingException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class I18nServiceTest
+{
+    private static final Locale DE_DE = new Locale("de", "DE");
+    private static final Locale DE_AT = new Locale("de", "AT");
+
+    @Test
+    public void testConcurrentLoadsShareOneLoad() throws Exception
+    {
+        final TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.define(DE_AT, DE_DE);
+        loaders.translate(DE_DE, "Hello World", "Hallo Welt");
+        final I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+
+        final int threads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Language>> results = new ArrayList<Future<Language>>();
+            for (int i = 0; i < threads; i++)
+            {
+                final Locale locale = i % 2 == 0 ? DE_DE : DE_AT;
+                results.add(executor.submit(new Callable<Language>()
+                {
+                    public Language call() throws Exception
+                    {
+                        start.await();
+                        return service.getLanguage(locale);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Language> result : results)
+            {
+                Assert.assertNotNull(result.get());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(1, loaders.loadCount(DE_DE));
+        Assert.assertEquals(1, loaders.loadCount(DE_AT));
+        Assert.assertSame(service.getLanguage(DE_DE), service.getLanguage(DE_AT).getParent());
+        Assert.assertEquals("Hallo Welt", service.translate(DE_AT, "Hello World"));
+    }
+
+    @Test
+    public void testFallbackChain() throws Exception
+    {
+        Locale deCh = new Locale("de", "CH");
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.define(deCh, null);
+        loaders.define(Locale.FRANCE, null);
+        loaders.translate(DE_DE, "Hello World", "Hallo Welt");
+        loaders.translate(deCh, "Goodbye", "Ade");
+        loaders.translate(Locale.FRANCE, "Goodbye", "Au revoir");
+        loaders.translate(Locale.FRANCE, "Thanks", "Merci");
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.FRANCE);
+
+        Assert.assertEquals("Ade", service.translate(deCh, "Goodbye"));
+        Assert.assertEquals("Hallo Welt", service.translate(deCh, "Hello World"));
+        Assert.assertEquals("Merci", service.translate(deCh, "Thanks"));
+        Assert.assertEquals("Unknown", service.translate(deCh, "Unknown"));
+
+        Map<Locale, List<Locale>> fallbacks = new HashMap<Locale, List<Locale>>();
+        fallbacks.put(deCh, Collections.singletonList(Locale.FRANCE));
+        service.setFallbackStrategy(new ExplicitFallback(fallbacks));
+        Assert.assertEquals("Hello World", service.translate(deCh, "Hello World"));
+        Assert.assertEquals("Merci", service.translate(deCh, "Thanks"));
+    }
+
+    @Test
+    public void testFlattening() throws Exception
+    {
+        Locale deLu = new Locale("de", "LU");
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.define(DE_AT, DE_DE);
+        loaders.define(deLu, DE_AT);
+        loaders.translate(DE_DE, "Hello World", "Hallo Welt");
+        loaders.translate(DE_DE, "Goodbye", "Auf Wiedersehen");
+        loaders.translate(DE_AT, "Goodbye", "Servus");
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        service.setFlattening(true);
+
+        NormalLanguage language = (NormalLanguage)service.getLanguage(deLu);
+        Assert.assertTrue(language.isFlattened());
+        Assert.assertEquals("Hallo Welt", language.getTranslation("Hello World"));
+        Assert.assertEquals("Servus", language.getTranslation("Goodbye"));
+        Assert.assertNull(language.getTranslation("Unknown"));
+        Assert.assertEquals(2, language.flatten());
+        Assert.assertTrue(service.getFlatteningOverhead() > 0);
+
+        service.setFlattening(false);
+        Assert.assertFalse(language.isFlattened());
+        Assert.assertEquals("Servus", language.getTranslation("Goodbye"));
+        Assert.assertEquals(0, service.getFlatteningOverhead());
+    }
+
+    @Test
+    public void testNegativeCache() throws Exception
+    {
+        Locale unknown = new Locale("xx", "XX");
+        TestLoaders loaders = new TestLoaders();
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+
+        Assert.assertNull(service.getLanguage(unknown));
+        Assert.assertEquals("Hello World", service.translate(unknown, "Hello World"));
+        int definitionLoads = loaders.definitionLoads.get();
+        for (int i = 0; i < 10; i++)
+        {
+            Assert.assertEquals("Hello World", service.translate(unknown, "Hello World"));
+        }
+        Assert.assertEquals(definitionLoads, loaders.definitionLoads.get());
+        Assert.assertTrue(service.getNegativeCacheHits() > 0);
+        // the base locale en_EN of the default locale is missing as well
+        Assert.assertEquals(2, service.getNegativeCacheSize());
+
+        loaders.define(unknown, null);
+        loaders.translate(unknown, "Hello World", "Xello Xorld");
+        Assert.assertEquals("Hello World", service.translate(unknown, "Hello World"));
+        service.invalidate(unknown);
+        Assert.assertEquals("Xello Xorld", service.translate(unknown, "Hello World"));
+        Assert.assertEquals(1, service.getNegativeCacheSize());
+    }
+
+    @Test
+    public void testNegativeCacheIsBounded() throws Exception
+    {
+        TestLoaders loaders = new TestLoaders();
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        service.setLocaleCacheCapacity(5);
+        for (int i = 0; i < 50; i++)
+        {
+            Assert.assertEquals("Hello World", service.translate(new Locale("x" + i), "Hello World"));
+        }
+        Assert.assertTrue(service.getNegativeCacheSize() <= 5);
+
+        // entries are removed once their backoff is over
+        service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        service.setNegativeCacheTtl(1, TimeUnit.MILLISECONDS);
+        service.setNegativeCacheMaxTtl(1, TimeUnit.MILLISECONDS);
+        Assert.assertNull(service.getLanguage(new Locale("xx")));
+        Thread.sleep(20);
+        Assert.assertNull(service.getLanguage(new Locale("yy")));
+        Assert.assertEquals(1, service.getNegativeCacheSize());
+    }
+
+    @Test
+    public void testLongAndDecimalAmounts()
+    {
+        SourceLanguage source = new SourceLanguage(Locale.US, "English", 2, PluralRules.NOT_ONE);
+        I18nService service = new I18nService(source, new TestLoaders(), new TestLoaders(), Locale.US);
+
+        Assert.assertEquals("apple", service.translateN("apple", "apples", 1L));
+        Assert.assertEquals("apples", service.translateN("apple", "apples", 10000000000L));
+        Assert.assertEquals("apples", service.translateN("apple", "apples", 4294967297L));
+        Assert.assertEquals("apple", service.translateN("apple", "apples", 1, 0));
+        Assert.assertEquals("apples", service.translateN("apple", "apples", 10, 1));
+        Assert.assertEquals("apples", service.translateN("apple", "apples", 15, 1));
+    }
+
+    @Test
+    public void testMessageKeys() throws Exception
+    {
+        Locale deLu = new Locale("de", "LU");
+        Locale deLi = new Locale("de", "LI");
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null, deLi);
+        loaders.define(DE_AT, DE_DE);
+        loaders.define(deLu, DE_AT);
+        loaders.translate(DE_DE, "Hello World", "Hallo Welt");
+        loaders.translate(DE_AT, "Goodbye", "Servus");
+        I18nService service = new I18nService(new SourceLanguage(Locale.US, "English", 2, PluralRules.NOT_ONE), loaders, loaders, Locale.US);
+
+        MessageKey hello = service.key("Hello World");
+        MessageKey goodbye = service.key("Goodbye");
+        MessageKey apples = service.key("apple", "apples");
+        Assert.assertSame(hello, service.key("Hello World"));
+        Assert.assertNotSame(service.key("apple"), apples);
+
+        for (int i = 0; i < 2; i++)
+        {
+            Assert.assertEquals("Hallo Welt", service.translate(deLu, hello));
+            Assert.assertEquals("Servus", service.translate(deLu, goodbye));
+            Assert.assertEquals("Hallo Welt", service.translate(deLi, hello));
+            Assert.assertEquals("Goodbye", service.translate(deLi, goodbye));
+            Assert.assertEquals("Unknown", service.translate(deLu, service.key("Unknown")));
+            Assert.assertEquals("apple", service.translateN(deLu, apples, 1));
+            Assert.assertEquals("apples", service.translateN(deLu, apples, 2));
+            Assert.assertEquals("apples", service.translateN(deLu, apples, 15, 1));
+        }
+
+        service.setFlattening(true);
+        Assert.assertTrue(((NormalLanguage)service.getLanguage(deLu)).isFlattened());
+        Assert.assertEquals("Hallo Welt", service.translate(deLu, hello));
+        Assert.assertEquals("Servus", service.translate(deLu, goodbye));
+    }
+
+    @Test
+    public void testMessageKeysAreScopedAndBounded() throws Exception
+    {
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.translate(DE_DE, "Hello World", "Hallo Welt");
+        loaders.translate(DE_DE, "Goodbye", "Auf Wiedersehen");
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        I18nService other = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+
+        MessageKey hello = service.key("Hello World");
+        MessageKey otherHello = other.key("Hello World");
+        Assert.assertNotSame(hello, otherHello);
+        Assert.assertSame(other.getMessageKeys(), otherHello.getRegistry());
+        Assert.assertEquals(0, hello.getId());
+        Assert.assertEquals(0, otherHello.getId());
+        Assert.assertEquals("Hallo Welt", service.translate(DE_DE, hello));
+        // keys of another registry do not share the slots of the language
+        Assert.assertEquals("Auf Wiedersehen", other.translate(DE_DE, other.key("Goodbye")));
+
+        service.getMessageKeys().setCapacity(1);
+        MessageKey goodbye = service.key("Goodbye");
+        Assert.assertEquals(-1, goodbye.getId());
+        Assert.assertEquals(1, service.getMessageKeys().size());
+        Assert.assertEquals("Auf Wiedersehen", service.translate(DE_DE, goodbye));
+        Assert.assertEquals("Hallo Welt", service.translate(DE_DE, hello));
+    }
+
+    @Test
+    public void testSymbolTable() throws Exception
+    {
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.define(Locale.FRANCE, null);
+        loaders.translate(DE_DE, new String("Hello World"), "Hallo Welt");
+        loaders.translate(Locale.FRANCE, new String("Hello World"), "Bonjour le monde");
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+
+        String german = service.getLanguage(DE_DE).getMessages().getSingularMessages().keySet().iterator().next();
+        String french = service.getLanguage(Locale.FRANCE).getMessages().getSingularMessages().keySet().iterator().next();
+        Assert.assertSame(german, french);
+        Assert.assertEquals(1, service.getSymbolTable().size());
+        Assert.assertEquals(1, service.getSymbolTable().getDuplicates());
+        Assert.assertEquals(40 + 2 * "Hello World".length(), service.getSymbolTable().getSavedBytes());
+    }
+
+    @Test
+    public void testUnloadDropsSymbols() throws Exception
+    {
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.define(DE_AT, DE_DE);
+        loaders.define(Locale.FRANCE, null);
+        loaders.translate(DE_DE, "Hello World", "Hallo Welt");
+        loaders.translate(DE_AT, "Goodbye", "Servus");
+        loaders.translate(Locale.FRANCE, "Hello World", "Bonjour le monde");
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        service.getLanguage(DE_AT);
+        service.getLanguage(Locale.FRANCE);
+        Assert.assertEquals(2, service.getSymbolTable().size());
+
+        // unloading the parent unloads its child, the symbol French is keyed by stays
+        Assert.assertEquals(2, service.unload(DE_DE));
+        List<Locale> loaded = new ArrayList<Locale>();
+        for (Language language : service.getLoadedLanguages())
+        {
+            loaded.add(language.getLocale());
+        }
+        Assert.assertFalse(loaded.contains(DE_DE));
+        Assert.assertFalse(loaded.contains(DE_AT));
+        Assert.assertTrue(loaded.contains(Locale.FRANCE));
+        Assert.assertEquals(1, service.getSymbolTable().size());
+        Assert.assertEquals(0, service.unload(DE_DE));
+
+        Assert.assertEquals("Servus", service.translate(DE_AT, "Goodbye"));
+        Assert.assertEquals(2, loaders.loadCount(DE_AT));
+        Assert.assertEquals(2, service.getSymbolTable().size());
+    }
+
+    @Test
+    public void testContextTranslation() throws Exception
+    {
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.define(DE_AT, DE_DE);
+        loaders.translate(DE_DE, "File", "Ablage");
+        loaders.translate(DE_DE, TranslationContainer.contextKey("menu", "File"), "Datei");
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+
+        Assert.assertEquals("Datei", service.translateInContext(DE_AT, "menu", "File"));
+        Assert.assertEquals("Ablage", service.translate(DE_AT, "File"));
+        Assert.assertEquals("Ablage", service.translateInContext(DE_AT, null, "File"));
+        Assert.assertEquals("File", service.translateInContext(DE_AT, "toolbar", "File"));
+        Assert.assertEquals("Files", service.translateNInContext(DE_AT, "toolbar", "File", "Files", 2));
+    }
+
+    @Test
+    public void testFingerprinting() throws Exception
+    {
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.define(DE_AT, DE_DE);
+        loaders.translate(DE_DE, "Hello World", "Hallo Welt");
+        loaders.translate(DE_AT, "Goodbye", "Servus");
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        service.setFingerprinting(true);
+        service.setFlattening(true);
+
+        NormalLanguage language = (NormalLanguage)service.getLanguage(DE_AT);
+        Assert.assertTrue(language.getMessages() instanceof FingerprintTranslationContainer);
+        Assert.assertFalse(language.isFlattened());
+        Assert.assertEquals("Servus", language.getTranslation("Goodbye"));
+        Assert.assertEquals("Hallo Welt", language.getTranslation("Hello World"));
+        Assert.assertNull(language.getTranslation("Unknown"));
+        Assert.assertEquals("Hallo Welt", service.translate(DE_AT, service.key("Hello World")));
+        Assert.assertEquals(0, service.getSymbolTable().size());
+    }
+
+    @Test
+    public void testDeltaEncoding() throws Exception
+    {
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.define(DE_AT, DE_DE);
+        for (int i = 0; i < 100; i++)
+        {
+            loaders.translate(DE_DE, "Message " + i, "Nachricht " + i);
+            loaders.translate(DE_AT, "Message " + i, "Nachricht " + i);
+        }
+        loaders.translate(DE_DE, "Goodbye", "Auf Wiedersehen");
+        loaders.translate(DE_AT, "Goodbye", "Servus");
+        loaders.translate(DE_AT, "Hello", "Grüß Gott");
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        service.setDeltaEncoding(true);
+        service.setFreezing(true);
+
+        Language language = service.getLanguage(DE_AT);
+        Assert.assertEquals(2, language.getMessages().size());
+        Assert.assertEquals(101, service.getLanguage(DE_DE).getMessages().size());
+        Assert.assertEquals("Servus", language.getTranslation("Goodbye"));
+        Assert.assertEquals("Grüß Gott", language.getTranslation("Hello"));
+        Assert.assertEquals("Nachricht 42", language.getTranslation("Message 42"));
+        Assert.assertEquals("Nachricht 42", service.translate(DE_AT, service.key("Message 42")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSingularKeyWithAmount()
+    {
+        I18nService service = new I18nService(SourceLanguage.EN_US, new TestLoaders(), new TestLoaders(), Locale.US);
+        service.translateN(service.key("Hello World"), 2);
+    }
+
+    @Test
+    public void testTruncatingFallback()
+    {
+        Assert.assertEquals(Arrays.asList(Locale.forLanguageTag("de-Latn-CH"), Locale.forLanguageTag("de-Latn"), Locale.forLanguageTag("de")),
+                            new TruncatingFallback().getFallbacks(Locale.forLanguageTag("de-Latn-CH-x-test")));
+    }
+
+    @Test
+    public void testPreload() throws Exception
+    {
+        Locale deLu = new Locale("de", "LU");
+        Locale frCa = new Locale("fr", "CA");
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.define(DE_AT, DE_DE);
+        loaders.define(deLu, DE_AT);
+        loaders.define(Locale.FRANCE, null, frCa);
+        loaders.translate(DE_DE, "Hello World", "Hallo Welt");
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            service.setExecutor(executor);
+            PreloadReport report = service.preload(Arrays.asList(deLu, DE_AT, frCa, new Locale("xx", "XX"))).get();
+
+            // xx_XX has no language, which is no failure but not a success either
+            Assert.assertFalse(report.isSuccessful());
+            Assert.assertTrue(report.getFailures().isEmpty());
+            Assert.assertEquals(Collections.singleton(new Locale("xx", "XX")), report.getMissing());
+            Assert.assertEquals(5, report.getLanguages().size());
+            Assert.assertEquals(6, report.getLoadTimes(TimeUnit.NANOSECONDS).size());
+            Assert.assertTrue(report.getTotalTime(TimeUnit.NANOSECONDS) > 0);
+            for (Locale locale : Arrays.asList(DE_DE, DE_AT, deLu, Locale.FRANCE))
+            {
+                Assert.assertEquals(1, loaders.loadCount(locale));
+            }
+            // the definitions of de_LU, de_AT, fr_CA, xx_XX, de_DE and fr_FR are loaded once each
+            Assert.assertEquals(6, loaders.definitionLoads.get());
+            Assert.assertTrue(loaders.loadOrder.indexOf(DE_DE) < loaders.loadOrder.indexOf(DE_AT));
+            Assert.assertTrue(loaders.loadOrder.indexOf(DE_AT) < loaders.loadOrder.indexOf(deLu));
+            Assert.assertSame(report.getLanguages().get(deLu), service.getLanguage(deLu));
+            Assert.assertEquals("Hallo Welt", service.translate(deLu, "Hello World"));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testNonBlocking() throws Exception
+    {
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null);
+        loaders.define(DE_AT, DE_DE);
+        loaders.translate(DE_DE, "Hello World", "Hallo Welt");
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        service.setNonBlocking(true);
+
+        // the load takes at least 20 ms, meanwhile the source language answers
+        Assert.assertEquals("Hello World", service.translate(DE_AT, "Hello World"));
+        Language language = service.getLanguageAsync(DE_AT).get();
+        Assert.assertEquals(DE_AT, language.getLocale());
+        Assert.assertSame(language, service.getLanguageAsync(DE_AT).get());
+        Assert.assertEquals("Hallo Welt", service.translate(DE_AT, "Hello World"));
+        Assert.assertEquals(1, loaders.loadCount(DE_AT));
+        Assert.assertNull(service.getLanguageAsync(new Locale("xx", "XX")).get());
+    }
+
+    @Test
+    public void testPluralTableValidatesExpression() throws Exception
+    {
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, null, new ComplexExpr("n == 5 ? 2 : n != 1"));
+        loaders.define(Locale.FRANCE, null, new ComplexExpr("n / 0"));
+        loaders.define(Locale.ITALY, null);
+        I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        Assert.assertEquals(0, service.getPluralTableSize());
+        Assert.assertEquals(DE_DE, service.getLanguage(DE_DE).getLocale());
+
+        service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        service.setPluralTableSize(1001);
+        try
+        {
+            // the rule returns an index beyond the plural count for 5
+            service.getLanguage(DE_DE);
+            Assert.fail("A language with an invalid plural expression loaded");
+        }
+        catch (DefinitionLoadingException e)
+        {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("n = 5"));
+        }
+        try
+        {
+            service.getLanguage(Locale.FRANCE);
+            Assert.fail("A language with an invalid plural expression loaded");
+        }
+        catch (DefinitionLoadingException e)
+        {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("n = 0"));
+        }
+        Assert.assertEquals(Locale.ITALY, service.getLanguage(Locale.ITALY).getLocale());
+    }
+
+    @Test(expected = DefinitionLoadingException.class)
+    public void testCyclicParentsFail() throws Exception
+    {
+        TestLoaders loaders = new TestLoaders();
+        loaders.define(DE_DE, DE_AT);
+        loaders.define(DE_AT, DE_DE);
+        new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US).getLanguage(DE_AT);
+    }
+
+    @Test
+    public void testCyclicParentsFailAcrossThreads() throws Exception
+    {
+        final CountDownLatch bothLoading = new CountDownLatch(2);
+        TestLoaders loaders = new TestLoaders()
+        {
+            @Override
+            public LanguageDefinition loadDefinition(Locale locale) throws DefinitionLoadingException
+            {
+                // both threads own their load before either asks for its parent
+                bothLoading.countDown();
+                try
+                {
+                    bothLoading.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new DefinitionLoadingException("Interrupted", e);
+                }
+                return super.loadDefinition(locale);
+            }
+        };
+        loaders.define(DE_DE, DE_AT);
+        loaders.define(DE_AT, DE_DE);
+        final I18nService service = new I18nService(SourceLanguage.EN_US, loaders, loaders, Locale.US);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            List<Future<Language>> results = new ArrayList<Future<Language>>();
+            for (final Locale locale : Arrays.asList(DE_DE, DE_AT))
+            {
+                results.add(executor.submit(new Callable<Language>()
+                {
+                    public Language call() throws Exception
+                    {
+                        return service.getLanguage(locale);
+                    }
+                }));
+            }
+            for (Future<Language> result : results)
+            {
+                try
+                {
+                    result.get(10, TimeUnit.SECONDS);
+                    Assert.fail("A language with a cyclic parent loaded");
+                }
+                catch (ExecutionException e)
+                {
+                    Assert.assertTrue(e.getCause() instanceof DefinitionLoadingException);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    static class TestLoaders extends LanguageLoader implements TranslationLoader
+    {
+        private final Map<Locale, LanguageDefinition> definitions = new HashMap<Locale, LanguageDefinition>();
+        private final Map<Locale, Map<String, String>> translations = new HashMap<Locale, Map<String, String>>();
+        private final ConcurrentHashMap<Locale, AtomicInteger> loads = new ConcurrentHashMap<Locale, AtomicInteger>();
+        private final AtomicInteger definitionLoads = new AtomicInteger();
+        private final List<Locale> loadOrder = Collections.synchronizedList(new ArrayList<Locale>());
+
+        void define(Locale locale, Locale parent, Locale... clones)
+        {
+            this.definitions.put(locale, new TestDefinition(locale, parent, clones));
+            for (Locale clone : clones)
+            {
+                this.definitions.put(clone, this.definitions.get(locale));
+            }
+        }
+
+        void define(Locale locale, Locale parent, PluralExpr pluralExpr)
+        {
+            this.definitions.put(locale, new TestDefinition(locale, parent, new Locale[0], pluralExpr));
+        }
+
+        void translate(Locale locale, String message, String translation)
+        {
+            if (!this.translations.containsKey(locale))
+            {
+                this.translations.put(locale, new HashMap<String, String>());
+            }
+            this.translations.get(locale).put(message, translation);
+        }
+
+        int loadCount(Locale locale)
+        {
+            AtomicInteger count = this.loads.get(locale);
+            return count == null ? 0 : count.get();
+        }
+
+        @Override
+        public LanguageDefinition loadDefinition(Locale locale) throws DefinitionLoadingException
+        {
+            this.definitionLoads.incrementAndGet();
+            return this.definitions.get(locale);
+        }
+
+        public TranslationContainer loadTranslations(TranslationContainer container, Locale locale) throws TranslationLoadingException
+        {
+            this.loads.putIfAbsent(locale, new AtomicInteger());
+            this.loads.get(locale).incrementAndGet();
+            this.loadOrder.add(locale);
+            try
+            {
+                // widen the window for racing loads
+                Thread.sleep(20);
+            }
+            catch (InterruptedException e)
+            {
+                throw new TranslationLoadingException(e);
+            }
+            Map<String, String> messages = this.translations.get(locale);
+            if (messages != null)
+            {
+                container.putAll(new HashMap<String, String>(messages), new HashMap<String, String[]>());
+            }
+            return container;
+        }
+    }
+
+    static class TestDefinition implements LanguageDefinition
+    {
+        private final Locale locale;
+        private final Locale parent;
+        private final Locale[] clones;
+        private final PluralExpr pluralExpr;
+
+        TestDefinition(Locale locale, Locale parent, Locale[] clones)
+        {
+            this(locale, parent, clones, new NotOneExpr());
+        }
+
+        TestDefinition(Locale locale, Locale parent, Locale[] clones, PluralExpr pluralExpr)
+        {
+            this.locale = locale;
+            this.parent = parent;
+            this.clones = clones;
+            this.pluralExpr = pluralExpr;
+        }
+
+        public Locale getLocale()
+        {
+            return this.locale;
+        }
+
+        public String getName()
+        {
+            return this.locale.getDisplayName(Locale.US);
+        }
+
+        public String getLocalName()
+        {
+            return this.locale.getDisplayName(this.locale);
+        }
+
+        public Locale getParent()
+        {
+            return this.parent;
+        }
+
+        public Locale[] getClones()
+        {
+            return this.clones;
+        }
+
+        public int getPluralCount()
+        {
+            return 2;
+        }
+
+        public PluralExpr getPluralExpression()
+        {
+            return this.pluralExpr;
+        }
+    }
+}
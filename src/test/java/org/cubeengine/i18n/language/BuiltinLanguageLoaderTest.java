@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.language;
+
+import org.cubeengine.i18n.I18nService;
+import org.cubeengine.i18n.plural.PluralExpr;
+import org.cubeengine.i18n.plural.PluralRules;
+import org.cubeengine.i18n.plural.StandardPluralRule;
+import org.cubeengine.i18n.translation.TranslationContainer;
+import org.cubeengine.i18n.translation.TranslationLoader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Locale;
+
+public class BuiltinLanguageLoaderTest
+{
+    private static final Locale DE_AT = new Locale("de", "AT");
+
+    @Test
+    public void testDefinitions()
+    {
+        BuiltinLanguageLoader loader = new BuiltinLanguageLoader();
+        LanguageDefinition russian = loader.loadDefinition(new Locale("ru", "RU"));
+        Assert.assertSame(StandardPluralRule.SLAVIC, russian.getPluralExpression());
+        Assert.assertEquals(3, russian.getPluralCount());
+        Assert.assertEquals(1, loader.loadDefinition(Locale.JAPAN).getPluralCount());
+        Assert.assertEquals(Locale.GERMANY, loader.loadDefinition(DE_AT).getLocale());
+        Assert.assertEquals(Locale.US, loader.loadDefinition(Locale.UK).getParent());
+        Assert.assertNull(loader.loadDefinition(new Locale("xx", "XX")));
+
+        for (Locale locale : BuiltinLanguageLoader.getBuiltinLocales())
+        {
+            LanguageDefinition definition = loader.loadDefinition(locale);
+            Assert.assertNotNull(locale.toString(), definition.getName());
+            Assert.assertNotNull(locale.toString(), definition.getLocalName());
+            if (definition.getParent() != null)
+            {
+                Assert.assertEquals(definition.getParent(), loader.loadDefinition(definition.getParent()).getLocale());
+            }
+            PluralExpr rule = definition.getPluralExpression();
+            for (int n = 0; n < 1000; n++)
+            {
+                int index = rule.evaluate(n);
+                Assert.assertTrue(locale + " for " + n, index >= 0 && index < definition.getPluralCount());
+            }
+        }
+    }
+
+    @Test
+    public void testOverride() throws Exception
+    {
+        BuiltinLanguageLoader loader = new BuiltinLanguageLoader();
+        final LanguageDefinition german = loader.loadDefinition(Locale.GERMANY);
+        loader.define(new LanguageDefinition()
+        {
+            public Locale getLocale()
+            {
+                return DE_AT;
+            }
+
+            public String getName()
+            {
+                return "Austrian German";
+            }
+
+            public String getLocalName()
+            {
+                return "Österreichisches Deutsch";
+            }
+
+            public Locale getParent()
+            {
+                return german.getLocale();
+            }
+
+            public Locale[] getClones()
+            {
+                return new Locale[0];
+            }
+
+            public int getPluralCount()
+            {
+                return 2;
+            }
+
+            public PluralExpr getPluralExpression()
+            {
+                return PluralRules.NOT_ONE;
+            }
+        });
+        Assert.assertEquals(DE_AT, loader.loadDefinition(DE_AT).getLocale());
+        Assert.assertSame(german, loader.loadDefinition(new Locale("de", "CH")));
+
+        TranslationLoader translations = new TranslationLoader()
+        {
+            public TranslationContainer loadTranslations(TranslationContainer container, Locale locale)
+            {
+                if (Locale.GERMANY.equals(locale))
+                {
+                    container.putSingular("Hello World", "Hallo Welt");
+                }
+                return container;
+            }
+        };
+        I18nService service = new I18nService(new SourceLanguage(Locale.US, "English", 2, PluralRules.NOT_ONE), translations, loader, Locale.US);
+        Assert.assertEquals("Hallo Welt", service.translate(DE_AT, "Hello World"));
+        Assert.assertTrue(service.getLanguage(new Locale("de", "CH")) instanceof ClonedLanguage);
+    }
+
+    @Test
+    public void testOverrideDropsClones()
+    {
+        BuiltinLanguageLoader loader = new BuiltinLanguageLoader();
+        Locale deCh = new Locale("de", "CH");
+        LanguageDefinition german = definition(Locale.GERMANY, DE_AT, deCh);
+        loader.define(german);
+        Assert.assertSame(german, loader.loadDefinition(deCh));
+
+        LanguageDefinition smaller = definition(Locale.GERMANY, DE_AT);
+        loader.define(smaller);
+        Assert.assertSame(smaller, loader.loadDefinition(Locale.GERMANY));
+        Assert.assertSame(smaller, loader.loadDefinition(DE_AT));
+        Assert.assertNull(loader.loadDefinition(deCh));
+        Assert.assertNull(loader.loadDefinition(new Locale("de", "LI")));
+
+        // the built-in clones of other definitions are kept
+        Assert.assertEquals(Locale.FRANCE, loader.loadDefinition(new Locale("fr", "CH")).getLocale());
+        Assert.assertEquals(Locale.GERMANY, new BuiltinLanguageLoader().loadDefinition(deCh).getLocale());
+    }
+
+    private static LanguageDefinition definition(final Locale locale, final Locale... clones)
+    {
+        return new LanguageDefinition()
+        {
+            public Locale getLocale()
+            {
+                return locale;
+            }
+
+            public String getName()
+            {
+                return locale.getDisplayName(Locale.US);
+            }
+
+            public String getLocalName()
+            {
+                return locale.getDisplayName(locale);
+            }
+
+            public Locale getParent()
+            {
+                return null;
+            }
+
+            public Locale[] getClones()
+            {
+                return clones;
+            }
+
+            public int getPluralCount()
+            {
+                return 2;
+            }
+
+            public PluralExpr getPluralExpression()
+            {
+                return PluralRules.NOT_ONE;
+            }
+        };
+    }
+}
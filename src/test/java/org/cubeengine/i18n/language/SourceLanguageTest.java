@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.language;
+
+import org.cubeengine.i18n.plural.PluralRules;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SourceLanguageTest
+{
+    @Test
+    public void testBoundedRegistration()
+    {
+        SourceLanguage source = new SourceLanguage(Locale.US, "English", 2, PluralRules.NOT_ONE);
+        source.setRegistrationCapacity(3);
+        Assert.assertEquals("Hello", source.getTranslation("Hello"));
+        Assert.assertEquals("apples", source.getTranslation("apple", "apples", 2));
+        Assert.assertEquals("apple", source.getTranslation("apple", "apples", 1));
+        Assert.assertEquals(3, source.getRegisteredCount());
+        Assert.assertEquals("apples", source.getMessages().getPlural("apples", 0));
+
+        Assert.assertEquals("Player Steve joined", source.getTranslation("Player Steve joined"));
+        Assert.assertEquals(3, source.getRegisteredCount());
+        Assert.assertNull(source.getMessages().getSingular("Hello"));
+        Assert.assertEquals("Player Steve joined", source.getMessages().getSingular("Player Steve joined"));
+
+        source.setRegistrationCapacity(1);
+        Assert.assertEquals(1, source.getRegisteredCount());
+        Assert.assertEquals(1, source.getMessages().size());
+
+        source.setRegistrationCapacity(0);
+        Assert.assertEquals("Goodbye", source.getTranslation("Goodbye"));
+        Assert.assertEquals(0, source.getRegisteredCount());
+        Assert.assertEquals(0, source.getMessages().size());
+    }
+
+    @Test
+    public void testUnboundedByDefault()
+    {
+        SourceLanguage source = SourceLanguage.enUs();
+        Assert.assertNotSame(SourceLanguage.EN_US, source);
+        Assert.assertEquals(SourceLanguage.UNBOUNDED, source.getRegistrationCapacity());
+        for (int i = 0; i < 20000; i++)
+        {
+            source.getTranslation("Message " + i);
+        }
+        Assert.assertEquals(20000, source.getRegisteredCount());
+        Assert.assertEquals("Message 0", source.getMessages().getSingular("Message 0"));
+        Assert.assertNull(SourceLanguage.EN_US.getMessages().getSingular("Message 0"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSharedSourceLanguageIsNotConfigurable()
+    {
+        SourceLanguage.EN_US.setRegistrationCapacity(10);
+    }
+
+    @Test
+    public void testConcurrentRegistration() throws Exception
+    {
+        final SourceLanguage source = new SourceLanguage(Locale.US, "English", 2, PluralRules.NOT_ONE);
+        source.setRegistrationCapacity(500);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int thread = 0; thread < 4; thread++)
+            {
+                final int offset = thread * 1000;
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    public Void call()
+                    {
+                        for (int i = 0; i < 5000; i++)
+                        {
+                            String message = "Message " + ((offset + i) % 2000);
+                            Assert.assertEquals(message, source.getTranslation(message));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(500, source.getRegisteredCount());
+        Assert.assertTrue(source.getMessages().size() <= 500);
+    }
+}
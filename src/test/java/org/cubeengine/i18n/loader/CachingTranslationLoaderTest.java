@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.loader;
+
+import org.cubeengine.i18n.translation.TranslationContainer;
+import org.cubeengine.i18n.translation.TranslationLoadingException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingTranslationLoaderTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSnapshot() throws Exception
+    {
+        File poFile = new File(this.folder.newFolder(), "de_DE.po");
+        write(poFile, "Hallo Welt");
+        File cache = new File(this.folder.getRoot(), "cache");
+
+        final AtomicInteger parses = new AtomicInteger();
+        GettextLoader gettext = new GettextLoader(UTF8, Arrays.asList(poFile.toURI().toURL()))
+        {
+            @Override
+            public TranslationContainer loadTranslations(TranslationContainer container, Locale locale) throws TranslationLoadingException
+            {
+                parses.incrementAndGet();
+                return super.loadTranslations(container, locale);
+            }
+        };
+
+        TranslationContainer container = new CachingTranslationLoader(gettext, cache).loadTranslations(new TranslationContainer(), Locale.GERMANY);
+        Assert.assertEquals("Hallo Welt", container.getSingular("Hello World"));
+        Assert.assertEquals(1, parses.get());
+
+        container = new CachingTranslationLoader(gettext, cache).loadTranslations(new TranslationContainer(), Locale.GERMANY);
+        Assert.assertEquals("Hallo Welt", container.getSingular("Hello World"));
+        Assert.assertEquals("ein Apfel", container.getPlural("apples", 0));
+        Assert.assertEquals("Ümlaut", container.getSingular("Umlaut"));
+        Assert.assertNull(container.getPlural("apples", 1));
+        Assert.assertEquals(1, parses.get());
+
+        write(poFile, "Servus Welt");
+        container = new TranslationContainer();
+        container.putSingular("Umlaut", "Kept");
+        container = new CachingTranslationLoader(gettext, cache).loadTranslations(container, Locale.GERMANY);
+        Assert.assertEquals("Servus Welt", container.getSingular("Hello World"));
+        Assert.assertEquals("Kept", container.getSingular("Umlaut"));
+        Assert.assertEquals(2, parses.get());
+
+        File[] snapshots = cache.listFiles();
+        Assert.assertEquals(1, snapshots.length);
+        Files.write(snapshots[0].toPath(), new byte[]{1, 2, 3});
+        container = new CachingTranslationLoader(gettext, cache).loadTranslations(new TranslationContainer(), Locale.GERMANY);
+        Assert.assertEquals("Servus Welt", container.getSingular("Hello World"));
+        Assert.assertEquals(3, parses.get());
+
+        // a well-formed snapshot with a null key, the header and checksum are kept
+        ByteBuffer damaged = ByteBuffer.allocate(40 + 17);
+        damaged.put(Files.readAllBytes(snapshots[0].toPath()), 0, 40);
+        damaged.putInt(1).putInt(-1).putInt(1).put((byte)'x').putInt(0);
+        Files.write(snapshots[0].toPath(), damaged.array());
+        container = new CachingTranslationLoader(gettext, cache).loadTranslations(new TranslationContainer(), Locale.GERMANY);
+        Assert.assertEquals("Servus Welt", container.getSingular("Hello World"));
+        Assert.assertFalse(container.getSingularMessages().containsKey(null));
+        Assert.assertEquals(4, parses.get());
+
+        // a plural entry claiming more forms than the snapshot can hold is not allocated
+        damaged = ByteBuffer.allocate(40 + 17);
+        damaged.put(Files.readAllBytes(snapshots[0].toPath()), 0, 40);
+        damaged.putInt(0).putInt(1).putInt(1).put((byte)'x').putInt(Integer.MAX_VALUE);
+        Files.write(snapshots[0].toPath(), damaged.array());
+        container = new CachingTranslationLoader(gettext, cache).loadTranslations(new TranslationContainer(), Locale.GERMANY);
+        Assert.assertEquals("Servus Welt", container.getSingular("Hello World"));
+        Assert.assertEquals(5, parses.get());
+    }
+
+    private static void write(File file, String hello) throws IOException
+    {
+        String po = "msgid \"Hello World\"\n"
+                  + "msgstr \"" + hello + "\"\n"
+                  + "\n"
+                  + "msgid \"Umlaut\"\n"
+                  + "msgstr \"Ümlaut\"\n"
+                  + "\n"
+                  + "msgid \"apple\"\n"
+                  + "msgid_plural \"apples\"\n"
+                  + "msgstr[0] \"ein Apfel\"\n"
+                  + "msgstr[1] \"\"\n";
+        Files.write(file.toPath(), po.getBytes(UTF8));
+    }
+}
@@ -22,16 +22,34 @@
  */
 package org.cubeengine.i18n.loader;
 
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.cubeengine.i18n.translation.TranslationContainer;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class GettextLoaderTest
 {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
 
     @Test
     public void testLoading()
@@ -52,6 +70,160 @@ public class GettextLoaderTest
                             new String[]{"msgstr 0 multiline", "msgstr 1 multiline"});
     }
 
+    @Test
+    public void testEntryKinds()
+    {
+        GettextLoader loader = new GettextLoader(Charset.forName("UTF-8"), Collections.<URL>emptyList());
+        Map<String, String> singularMessages = new HashMap<String, String>();
+        Map<String, String[]> pluralMessages = new HashMap<String, String[]>();
+        loader.parseTranslations(kindsFile, singularMessages, pluralMessages);
+
+        Assert.assertFalse(singularMessages.containsKey(""));
+        Assert.assertEquals("Datei", singularMessages.get("menu" + PoEntry.CONTEXT_SEPARATOR + "File"));
+        Assert.assertEquals("Tab\t \"quoted\" \u0007 A \u00e9", singularMessages.get("Escapes"));
+        Assert.assertEquals("Unscharf", singularMessages.get("Fuzzy"));
+        Assert.assertFalse(singularMessages.containsKey("Obsolete"));
+        Assert.assertFalse(singularMessages.containsKey("Untranslated"));
+        Assert.assertArrayEquals(new String[]{"ein Apfel", null}, pluralMessages.get("apples"));
+
+        singularMessages.clear();
+        loader.setIgnoreFuzzy(true);
+        loader.parseTranslations(kindsFile, singularMessages, pluralMessages);
+        Assert.assertFalse(singularMessages.containsKey("Fuzzy"));
+        Assert.assertEquals("Datei", singularMessages.get("menu" + PoEntry.CONTEXT_SEPARATOR + "File"));
+    }
+
+    @Test
+    public void testParallel()
+    {
+        StringBuilder po = new StringBuilder(kindsFile);
+        for (int i = 0; po.length() < 3000000; i++)
+        {
+            po.append("\n#: src/Item.java:").append(i).append("\n");
+            if (i % 7 == 0)
+            {
+                po.append("msgctxt \"item\"\n");
+            }
+            po.append("msgid \"Item ").append(i % 50000).append("\"\nmsgstr \"\"\n\"Gegenstand ").append(i).append("\"\n");
+            if (i % 11 == 0)
+            {
+                po.append("\nmsgid \"apple\"\nmsgid_plural \"apples\"\nmsgstr[0] \"Apfel ").append(i)
+                  .append("\"\nmsgstr[1] \"\u00c4pfel\"\n");
+            }
+        }
+        GettextLoader sequential = new GettextLoader(Charset.forName("UTF-8"), Collections.<URL>emptyList());
+        Map<String, String> singularMessages = new HashMap<String, String>();
+        Map<String, String[]> pluralMessages = new HashMap<String, String[]>();
+        sequential.parseTranslations(po.toString(), singularMessages, pluralMessages);
+
+        GettextLoader parallel = new GettextLoader(Charset.forName("UTF-8"), Collections.<URL>emptyList());
+        parallel.setParallelThreshold(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            parallel.setPool(pool);
+            Map<String, String> parallelSingular = new HashMap<String, String>();
+            Map<String, String[]> parallelPlural = new HashMap<String, String[]>();
+            parallel.parseTranslations(po.toString(), parallelSingular, parallelPlural);
+
+            Assert.assertEquals(singularMessages, parallelSingular);
+            Assert.assertEquals(pluralMessages.keySet(), parallelPlural.keySet());
+            Assert.assertArrayEquals(pluralMessages.get("apples"), parallelPlural.get("apples"));
+
+            po.append("\nmsgid \"Broken\"\nmsgstr \"Kaputt\n");
+            String expected = null;
+            try
+            {
+                sequential.parseTranslations(po.toString(), singularMessages, pluralMessages);
+            }
+            catch (IllegalArgumentException e)
+            {
+                expected = e.getMessage();
+            }
+            try
+            {
+                parallel.parseTranslations(po.toString(), parallelSingular, parallelPlural);
+                Assert.fail();
+            }
+            catch (IllegalArgumentException e)
+            {
+                Assert.assertNotNull(expected);
+                Assert.assertEquals(expected, e.getMessage());
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testOnlyLargeFilesAreBuffered() throws Exception
+    {
+        File directory = this.folder.newFolder();
+        File small = new File(directory, "de.po");
+        Files.write(small.toPath(), "msgid \"Hello World\"\nmsgstr \"Hallo Welt\"\n".getBytes(UTF8));
+        StringBuilder po = new StringBuilder();
+        for (int i = 0; po.length() < 20000; i++)
+        {
+            po.append("msgid \"Item ").append(i).append("\"\nmsgstr \"Gegenstand ").append(i).append("\"\n\n");
+        }
+        File large = new File(directory, "de_DE.po");
+        Files.write(large.toPath(), po.toString().getBytes(UTF8));
+
+        final List<Boolean> buffered = new ArrayList<Boolean>();
+        GettextLoader loader = new GettextLoader(UTF8, Arrays.asList(small.toURI().toURL(), large.toURI().toURL()))
+        {
+            @Override
+            public void parseTranslations(Reader reader, Map<String, String> singular, Map<String, String[]> plural) throws IOException
+            {
+                buffered.add(reader instanceof CharArrayReader);
+                super.parseTranslations(reader, singular, plural);
+            }
+        };
+        loader.setParallelThreshold(10000);
+        TranslationContainer container = loader.loadTranslations(new TranslationContainer(), Locale.GERMANY);
+        Assert.assertEquals(2, buffered.size());
+        Assert.assertEquals(new HashSet<Boolean>(Arrays.asList(false, true)), new HashSet<Boolean>(buffered));
+        Assert.assertEquals("Hallo Welt", container.getSingular("Hello World"));
+        Assert.assertEquals("Gegenstand 7", container.getSingular("Item 7"));
+    }
+
+    @Test
+    public void testByteEscapesUseCharset()
+    {
+        Map<String, String> singularMessages = new HashMap<String, String>();
+        Map<String, String[]> pluralMessages = new HashMap<String, String[]>();
+        new GettextLoader(Charset.forName("UTF-8"), Collections.<URL>emptyList())
+            .parseTranslations("msgid \"Escapes\"\nmsgstr \"\\xc3\\xa9t\\xc3\\xa9\\n\"\n", singularMessages, pluralMessages);
+        Assert.assertEquals("\u00e9t\u00e9\n", singularMessages.get("Escapes"));
+
+        new GettextLoader(Charset.forName("ISO-8859-1"), Collections.<URL>emptyList())
+            .parseTranslations("msgid \"Escapes\"\nmsgstr \"\\xe9t\\351\"\n", singularMessages, pluralMessages);
+        Assert.assertEquals("\u00e9t\u00e9", singularMessages.get("Escapes"));
+
+        // a character escaped as several bytes may be split across the strings of a field
+        new GettextLoader(Charset.forName("UTF-8"), Collections.<URL>emptyList())
+            .parseTranslations("msgid \"Split\"\nmsgstr \"\\303\"\n\"\\244\"\n\nmsgid \"End\"\nmsgstr \"\\303\"\n\"\\244\"\n",
+                               singularMessages, pluralMessages);
+        Assert.assertEquals("\u00e4", singularMessages.get("Split"));
+        Assert.assertEquals("\u00e4", singularMessages.get("End"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformed()
+    {
+        GettextLoader loader = new GettextLoader(Charset.forName("UTF-8"), Collections.<URL>emptyList());
+        loader.parseTranslations("msgid \"Hello\"\nmsgstr \"Hallo\n", new HashMap<String, String>(), new HashMap<String, String[]>());
+    }
+
+    private static String kindsFile = "msgid \"\"\n" + "msgstr \"\"\n" + "\"Content-Type: text/plain; charset=UTF-8\\n\"\n" + "\n"
+        + "# translator comment\n" + "#: src/Menu.java:12\n" + "msgctxt \"menu\"\n" + "msgid \"File\"\n" + "msgstr \"Datei\"\n"
+        + "\n" + "msgid \"Escapes\"\n" + "msgstr \"Tab\\t \\\"quoted\\\" \\a \\101 \\303\\251\"\n" + "\n" + "#, fuzzy, c-format\n"
+        + "msgid \"Fuzzy\"\n" + "msgstr \"Unscharf\"\n" + "\n" + "#~ msgid \"Obsolete\"\n" + "#~ msgstr \"Veraltet\"\n" + "\n"
+        + "msgid \"Untranslated\"\n" + "msgstr \"\"\n" + "msgid \"apple\"\n" + "msgid_plural \"apples\"\n"
+        + "msgstr[0] \"ein Apfel\"\n" + "msgstr[1] \"\"\n";
+
     private static String poFile = "msgid \"Hello World\"\n" + "msgstr \"Hallo Welt\"\n" + "\n" + "msgid \"\"\n"
         + "\"msgid multiline\"\n" + "msgid_plural \"\"\n" + "\"msgid_plural multiline\"\n" + "msgstr[0] \"\"\n"
         + "\"msgstr 0 multiline\"\n" + "msgstr[1] \"\"\n" + "\"msgstr 1 multiline\"\n" + "\n" + "msgid \"\"\n"
@@ -0,0 +1,278 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.loader;
+
+import org.cubeengine.i18n.I18nService;
+import org.cubeengine.i18n.language.BuiltinLanguageLoader;
+import org.cubeengine.i18n.language.SourceLanguage;
+import org.cubeengine.i18n.translation.TranslationContainer;
+import org.cubeengine.i18n.translation.TranslationLoader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MoLoaderTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLookup() throws Exception
+    {
+        this.testLookup(true, ByteOrder.LITTLE_ENDIAN);
+        this.testLookup(true, ByteOrder.BIG_ENDIAN);
+        this.testLookup(false, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void testLookup(boolean hashTable, ByteOrder order) throws Exception
+    {
+        Map<String, String> entries = new TreeMap<String, String>();
+        entries.put("", "Content-Type: text/plain; charset=UTF-8\n");
+        entries.put("Hello World", "Hallo Welt");
+        entries.put("Größe", "Größe ✓ 😀");
+        entries.put("menu\u0004File", "Datei");
+        entries.put("apple\0apples", "ein Apfel\0viele Äpfel");
+        for (int i = 0; i < 100; i++)
+        {
+            entries.put("Message " + i, "Nachricht " + i);
+        }
+        File file = this.folder.newFile("de_DE" + (hashTable ? "" : "_nohash") + order + ".mo");
+        File renamed = new File(this.folder.newFolder(), "de_DE.mo");
+        writeMo(file, entries, hashTable, order);
+        Assert.assertTrue(file.renameTo(renamed));
+
+        MoLoader loader = new MoLoader(UTF8, Arrays.asList(renamed));
+        TranslationContainer container = new TranslationContainer();
+        container.putSingular("Hello World", "Servus Welt");
+        container = loader.loadTranslations(container, Locale.GERMANY);
+
+        Assert.assertEquals("Servus Welt", container.getSingular("Hello World"));
+        Assert.assertEquals("Größe ✓ 😀", container.getSingular("Größe"));
+        Assert.assertEquals("Datei", container.getSingular("menu\u0004File"));
+        Assert.assertEquals("Nachricht 42", container.getSingular("Message 42"));
+        Assert.assertNull(container.getSingular("Message 100"));
+        Assert.assertNull(container.getSingular(""));
+        Assert.assertNull(container.getSingular("apple"));
+        Assert.assertEquals("ein Apfel", container.getPlural("apples", 0));
+        Assert.assertEquals("viele Äpfel", container.getPlural("apples", 1));
+        Assert.assertNull(container.getPlural("apples", 2));
+        Assert.assertNull(container.getPlural("pears", 0));
+        Assert.assertEquals(103, container.getSingularMessages().size());
+        Assert.assertArrayEquals(new String[]{"ein Apfel", "viele Äpfel"}, container.getPluralMessages().get("apples"));
+        // the catalog counts its entries without the header, the direct translation is counted as well
+        Assert.assertEquals(105, container.size());
+        // the plural forms are split once
+        Assert.assertSame(container.getPlural("apples", 1), container.getPlural("apples", 1));
+    }
+
+    @Test
+    public void testUnloadKeepsCatalogsMapped() throws Exception
+    {
+        Map<String, String> entries = new TreeMap<String, String>();
+        entries.put("Hello World", "Hallo Welt");
+        entries.put("apple\0apples", "ein Apfel\0viele Äpfel");
+        File file = this.folder.newFile("de_DE.mo");
+        writeMo(file, entries, true, ByteOrder.LITTLE_ENDIAN);
+        final MoCatalog catalog = MoCatalog.map(file, UTF8);
+        final AtomicInteger decoded = new AtomicInteger();
+        TranslationLoader loader = new TranslationLoader()
+        {
+            public TranslationContainer loadTranslations(TranslationContainer container, Locale locale)
+            {
+                if (!Locale.GERMANY.equals(locale))
+                {
+                    container.putSingular("Hello World", "Bonjour le monde");
+                    return container;
+                }
+                return new MoTranslationContainer(container, Arrays.asList(catalog))
+                {
+                    @Override
+                    public Map<String, String> getSingularMessages()
+                    {
+                        decoded.incrementAndGet();
+                        return super.getSingularMessages();
+                    }
+
+                    @Override
+                    public Map<String, String[]> getPluralMessages()
+                    {
+                        decoded.incrementAndGet();
+                        return super.getPluralMessages();
+                    }
+                };
+            }
+        };
+        I18nService service = new I18nService(SourceLanguage.EN_US, loader, new BuiltinLanguageLoader(), Locale.US);
+        service.getLanguage(Locale.GERMANY);
+        service.getLanguage(Locale.FRANCE);
+        decoded.set(0);
+
+        Assert.assertEquals(1, service.unload(Locale.FRANCE));
+        Assert.assertEquals(0, decoded.get());
+        Assert.assertEquals("Hallo Welt", service.translate(Locale.GERMANY, "Hello World"));
+    }
+
+    @Test
+    public void testDamagedHashTable() throws Exception
+    {
+        Map<String, String> entries = new TreeMap<String, String>();
+        entries.put("Hello World", "Hallo Welt");
+        entries.put("Goodbye", "Auf Wiedersehen");
+        File file = this.folder.newFile("damaged.mo");
+        writeMo(file, entries, true, ByteOrder.LITTLE_ENDIAN);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int hashSize = data.getInt(20);
+        int hashTable = data.getInt(24);
+
+        // a table without an empty slot must not make lookups of unknown messages spin
+        for (int i = 0; i < hashSize; i++)
+        {
+            data.putInt(hashTable + i * 4, 1);
+        }
+        MoCatalog catalog = new MoCatalog(ByteBuffer.wrap(bytes), UTF8);
+        Assert.assertNull(catalog.getSingular("Unknown"));
+        Assert.assertEquals("Auf Wiedersehen", catalog.getSingular("Goodbye"));
+
+        data.putInt(hashTable, -1);
+        try
+        {
+            new MoCatalog(ByteBuffer.wrap(bytes), UTF8);
+            Assert.fail("A negative entry of the hash table was accepted");
+        }
+        catch (IOException e)
+        {
+            Assert.assertEquals("Malformed mo file", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a mo file the way msgfmt does
+     */
+    private static void writeMo(File file, Map<String, String> entries, boolean hashTable, ByteOrder order) throws IOException
+    {
+        int count = entries.size();
+        int hashSize = hashTable ? nextPrime(count * 4 / 3) : 0;
+        int originals = 28;
+        int translations = originals + count * 8;
+        int hashOffset = translations + count * 8;
+        int strings = hashOffset + hashSize * 4;
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocate(strings).order(order);
+        header.putInt(0x950412de).putInt(0).putInt(count).putInt(originals).putInt(translations).putInt(hashSize).putInt(hashOffset);
+        int[] hashes = new int[hashSize];
+        int index = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet())
+        {
+            byte[] key = entry.getKey().getBytes(UTF8);
+            header.putInt(originals + index * 8, key.length).putInt(originals + index * 8 + 4, strings + data.size());
+            data.write(key);
+            data.write(0);
+            if (hashTable)
+            {
+                int hash = 0;
+                for (int i = 0; i < key.length && key[i] != 0; i++)
+                {
+                    hash = (hash << 4) + (key[i] & 0xFF);
+                    int high = hash & 0xF0000000;
+                    if (high != 0)
+                    {
+                        hash ^= high >>> 24;
+                        hash ^= high;
+                    }
+                }
+                int slot = Integer.remainderUnsigned(hash, hashSize);
+                int increment = 1 + Integer.remainderUnsigned(hash, hashSize - 2);
+                while (hashes[slot] != 0)
+                {
+                    slot = slot >= hashSize - increment ? slot - (hashSize - increment) : slot + increment;
+                }
+                hashes[slot] = index + 1;
+            }
+            index++;
+        }
+        index = 0;
+        for (String translation : entries.values())
+        {
+            byte[] value = translation.getBytes(UTF8);
+            header.putInt(translations + index * 8, value.length).putInt(translations + index * 8 + 4, strings + data.size());
+            data.write(value);
+            data.write(0);
+            index++;
+        }
+        for (int i = 0; i < hashSize; i++)
+        {
+            header.putInt(hashOffset + i * 4, hashes[i]);
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(header.array());
+            data.writeTo(out);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static int nextPrime(int n)
+    {
+        int candidate = Math.max(3, n) | 1;
+        while (true)
+        {
+            boolean prime = true;
+            for (int i = 3; i * i <= candidate; i += 2)
+            {
+                if (candidate % i == 0)
+                {
+                    prime = false;
+                    break;
+                }
+            }
+            if (prime)
+            {
+                return candidate;
+            }
+            candidate += 2;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.loader;
+
+import org.cubeengine.i18n.I18nService;
+import org.cubeengine.i18n.language.DefinitionLoadingException;
+import org.cubeengine.i18n.language.LanguageDefinition;
+import org.cubeengine.i18n.language.SourceLanguage;
+import org.cubeengine.i18n.plural.PluralRules;
+import org.cubeengine.i18n.plural.StandardPluralRule;
+import org.cubeengine.i18n.translation.TranslationContainer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+
+public class PoLanguageLoaderTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Locale RU_RU = new Locale("ru", "RU");
+    private static final Locale DE_AT = new Locale("de", "AT");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSinglePass() throws Exception
+    {
+        File dir = this.folder.newFolder();
+        File ru = new File(dir, "ru_RU.po");
+        write(ru, "UTF-8", "nplurals=3; plural=(n%10==1 && n%100!=11 ? 0 : n%10>=2 && n%10<=4 && (n%100<10 || n%100>=20) ? 1 : 2);", null,
+              "msgid \"apple\"\nmsgid_plural \"apples\"\nmsgstr[0] \"\u044f\u0431\u043b\u043e\u043a\u043e\"\n"
+                  + "msgstr[1] \"\u044f\u0431\u043b\u043e\u043a\u0430\"\nmsgstr[2] \"\u044f\u0431\u043b\u043e\u043a\"\n");
+        File de = new File(dir, "de_DE.po");
+        write(de, "ISO-8859-1", "nplurals=2; plural=n != 1;", null, "msgid \"Umlaut\"\nmsgstr \"\u00dcmlaut\"\n");
+        File at = new File(dir, "de_AT.po");
+        write(at, "CHARSET", null, "de_DE", "msgid \"Hello World\"\nmsgstr \"Servus Welt\"\n");
+
+        PoLanguageLoader loader = new PoLanguageLoader(UTF8, Arrays.asList(ru.toURI().toURL(), de.toURI().toURL(), at.toURI().toURL()));
+        LanguageDefinition definition = loader.loadDefinition(RU_RU);
+        Assert.assertEquals(RU_RU, definition.getLocale());
+        Assert.assertEquals(3, definition.getPluralCount());
+        Assert.assertSame(StandardPluralRule.SLAVIC, definition.getPluralExpression());
+        Assert.assertNull(definition.getParent());
+        Assert.assertSame(PluralRules.NOT_ONE, loader.loadDefinition(DE_AT).getPluralExpression());
+        Assert.assertEquals(Locale.GERMANY, loader.loadDefinition(DE_AT).getParent());
+        Assert.assertNull(loader.loadDefinition(Locale.FRANCE));
+
+        I18nService service = new I18nService(new SourceLanguage(Locale.US, "English", 2, PluralRules.NOT_ONE), loader, loader, Locale.US);
+        TranslationContainer messages = service.getLanguage(RU_RU).getMessages();
+        Assert.assertEquals("\u044f\u0431\u043b\u043e\u043a", messages.getPlural("apples", 2));
+        Assert.assertEquals("\u00dcmlaut", service.translate(Locale.GERMANY, "Umlaut"));
+        Assert.assertEquals("Servus Welt", service.translate(DE_AT, "Hello World"));
+        Assert.assertEquals("\u00dcmlaut", service.translate(DE_AT, "Umlaut"));
+    }
+
+    @Test(expected = DefinitionLoadingException.class)
+    public void testInvalidPluralForms() throws Exception
+    {
+        File po = new File(this.folder.newFolder(), "de_DE.po");
+        write(po, "UTF-8", "nplurals=2; plural=n !! 1;", null, "");
+        new PoLanguageLoader(UTF8, Arrays.asList(po.toURI().toURL())).loadDefinition(Locale.GERMANY);
+    }
+
+    private static void write(File file, String charset, String pluralForms, String parent, String entries) throws IOException
+    {
+        String header = "msgid \"\"\nmsgstr \"\"\n\"Content-Type: text/plain; charset=" + charset + "\\n\"\n";
+        if (pluralForms != null)
+        {
+            header += "\"Plural-Forms: " + pluralForms + "\\n\"\n";
+        }
+        if (parent != null)
+        {
+            header += "\"X-Parent-Language: " + parent + "\\n\"\n";
+        }
+        Charset encoding = Charset.isSupported(charset) ? Charset.forName(charset) : UTF8;
+        Files.write(file.toPath(), (header + "\n" + entries).getBytes(encoding));
+    }
+}
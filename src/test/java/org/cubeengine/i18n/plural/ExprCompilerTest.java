@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+import org.cubeengine.i18n.plural.parser.Expr;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExprCompilerTest
+{
+    private static final String[] RULES = {
+        "0",
+        "n != 1",
+        "n > 1",
+        "n%10==1 && n%100!=11 ? 0 : n != 0 ? 1 : 2",
+        "n==1 ? 0 : n==2 ? 1 : 2",
+        "n%10==1 && n%100!=11 ? 0 : n%10>=2 && n%10<=4 && (n%100<10 || n%100>=20) ? 1 : 2",
+        "n==1 ? 0 : (n==0 || (n%100 > 0 && n%100 < 20)) ? 1 : 2",
+        "n%100==1 ? 0 : n%100==2 ? 1 : n%100==3 || n%100==4 ? 2 : 3",
+        "n==0 ? 0 : n==1 ? 1 : n==2 ? 2 : n%100>=3 && n%100<=10 ? 3 : n%100>=11 ? 4 : 5",
+        "!(n==1)",
+        "n * 100000 - 70000 / 7 + -1",
+        "n <= 1000000 && n >= -1000000 ? n - 1234567 : 70000",
+        "-n - -3 - 2",
+        "n == 0 || 10 / n > 2",
+    };
+
+    @Test
+    public void testCompiledMatchesInterpreter()
+    {
+        for (String rule : RULES)
+        {
+            Expr expr = ExprParser.parse(rule);
+            PluralExpr compiled = ExprCompiler.compile(expr);
+            Assert.assertNotNull(rule, compiled);
+            for (int n = -1000; n <= 1000; n++)
+            {
+                Assert.assertEquals(rule + " for " + n, expr.eval(n), compiled.evaluate(n));
+            }
+            Assert.assertEquals(rule, expr.eval(Integer.MAX_VALUE), compiled.evaluate(Integer.MAX_VALUE));
+            Assert.assertEquals(rule, expr.eval(Integer.MIN_VALUE), compiled.evaluate(Integer.MIN_VALUE));
+        }
+        ComplexExpr complex = new ComplexExpr(RULES[5], true);
+        Assert.assertTrue(complex.isCompiled());
+        Assert.assertEquals(new ComplexExpr(RULES[5]), complex);
+        Assert.assertEquals(2, complex.evaluate(11));
+    }
+
+    @Test
+    public void testShortCircuit()
+    {
+        Assert.assertEquals(0, ExprCompiler.compile(ExprParser.parse("n != 0 && 1 / n")).evaluate(0));
+        Assert.assertEquals(1, ExprCompiler.compile(ExprParser.parse("n == 0 || 1 / n")).evaluate(0));
+        Assert.assertEquals(1, ExprCompiler.compile(ExprParser.parse("n != 0 && 1 / n")).evaluate(1));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testDivisionByZero()
+    {
+        ExprCompiler.compile(ExprParser.parse("n == 0 && 1 / n")).evaluate(0);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+import org.cubeengine.i18n.plural.parser.Expr;
+import org.cubeengine.i18n.plural.parser.FrameExpr;
+import org.cubeengine.i18n.plural.parser.LiteralExpr;
+import org.cubeengine.i18n.plural.parser.RangeExpr;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExprOptimizerTest
+{
+    private static final String[] RULES = {
+        "0",
+        "n != 1",
+        "n > 1",
+        "!(n == 1)",
+        "1 < n",
+        "n%10==1 && n%100!=11 ? 0 : n != 0 ? 1 : 2",
+        "n%10==1 && n%100!=11 ? 0 : n%10>=2 && n%10<=4 && (n%100<10 || n%100>=20) ? 1 : 2",
+        "n==1 ? 0 : (n==0 || (n%100 > 0 && n%100 < 20)) ? 1 : 2",
+        "n%100==1 ? 0 : n%100==2 ? 1 : n%100==3 || n%100==4 ? 2 : 3",
+        "n==0 ? 0 : n==1 ? 1 : n==2 ? 2 : n%100>=3 && n%100<=10 ? 3 : n%100>=11 ? 4 : 5",
+        "n == 0 ? 0 : 10 / n > 2 ? 10 / n : 1",
+        "(2 * 3 > 5) ? n % (4 - 4 + 7) : 1 / 0",
+        "n < -2147483648 || n > 2147483647",
+    };
+
+    @Test
+    public void testSameResults()
+    {
+        for (String rule : RULES)
+        {
+            Expr parsed = ExprParser.parse(rule);
+            Expr optimized = ExprOptimizer.optimize(parsed);
+            for (int n = -1000; n <= 1000; n++)
+            {
+                Assert.assertEquals(rule + " for " + n, parsed.eval(n), optimized.eval(n));
+            }
+            Assert.assertEquals(rule, parsed.eval(Integer.MAX_VALUE), optimized.eval(Integer.MAX_VALUE));
+            Assert.assertEquals(rule, parsed.eval(Integer.MIN_VALUE), optimized.eval(Integer.MIN_VALUE));
+        }
+    }
+
+    @Test
+    public void testInterleavedFrames()
+    {
+        // the rules share the frame of the thread, a rule must not see the slots of another one
+        Expr[] parsed = new Expr[RULES.length];
+        Expr[] optimized = new Expr[RULES.length];
+        for (int i = 0; i < RULES.length; i++)
+        {
+            parsed[i] = ExprParser.parse(RULES[i]);
+            optimized[i] = ExprOptimizer.optimize(parsed[i]);
+        }
+        for (int n = -100; n <= 100; n++)
+        {
+            for (int i = RULES.length - 1; i >= 0; i--)
+            {
+                Assert.assertEquals(RULES[i] + " for " + n, parsed[i].eval(n), optimized[i].eval(n));
+            }
+        }
+    }
+
+    @Test
+    public void testShapes()
+    {
+        Assert.assertTrue(ExprOptimizer.optimize(ExprParser.parse("(1 + 2) * 3")) instanceof LiteralExpr);
+        Assert.assertTrue(ExprOptimizer.optimize(ExprParser.parse("n >= 2 && n <= 4")) instanceof RangeExpr);
+        Assert.assertTrue(ExprOptimizer.optimize(ExprParser.parse("n%10==1 ? 0 : n%10==2 ? 1 : 2")) instanceof FrameExpr);
+        Assert.assertEquals(new ComplexExpr("n != 1", false, false), new ComplexExpr("n != 1", false, true));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testFailuresArePreserved()
+    {
+        ExprOptimizer.optimize(ExprParser.parse("1 / 0 + n")).eval(1);
+    }
+}
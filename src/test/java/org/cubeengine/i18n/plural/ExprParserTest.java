@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.cubeengine.i18n.plural.ExprParser.parse;
+import static org.junit.Assert.assertEquals;
+
+public class ExprParserTest
+{
+    @Test
+    public void testAssociativity()
+    {
+        assertEquals(5, parse("10 - 3 - 2").eval(0));
+        assertEquals(1, parse("12 / 4 / 3").eval(0));
+        assertEquals(0, parse("100 % 7 % 2").eval(0));
+        assertEquals(0, parse("3 > 2 > 1").eval(0));
+        assertEquals(2, parse("n ? 1 : n - 1 ? 2 : 3").eval(0));
+    }
+
+    @Test
+    public void testPrecedence()
+    {
+        assertEquals(1, parse("1 < 2 == 1").eval(0));
+        assertEquals(1, parse("!n == 1").eval(0));
+        assertEquals(0, parse("!n == 1").eval(5));
+        assertEquals(-6, parse("-n * 3").eval(2));
+        assertEquals(1, parse("0 && 1 || 1").eval(0));
+        assertEquals(-2147483648, parse("-2147483648").eval(0));
+    }
+
+    @Test
+    public void testShortCircuit()
+    {
+        assertEquals(0, parse("n != 0 && 1 / n").eval(0));
+        assertEquals(1, parse("n == 0 || 1 / n").eval(0));
+    }
+
+    @Test
+    public void testErrors()
+    {
+        assertError("n == 1 ?", 8);
+        assertError("n = 1", 2);
+        assertError("(n + 1", 6);
+        assertError("n + x", 4);
+        assertError("n 1", 2);
+        assertError("99999999999", 0);
+    }
+
+    private static void assertError(String expression, int position)
+    {
+        try
+        {
+            parse(expression);
+            Assert.fail(expression);
+        }
+        catch (PluralExpressionParseException e)
+        {
+            assertEquals(expression, position, e.getPosition());
+        }
+    }
+}
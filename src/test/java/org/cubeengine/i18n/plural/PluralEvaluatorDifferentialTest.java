@@ -0,0 +1,561 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+import org.cubeengine.i18n.plural.parser.Expr;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares every evaluation path of plural expressions with an independent reference evaluator of the C semantics:
+ * 32 bit two's complement arithmetic, truncating division, lazy ?: && || and failing divisions by zero.
+ * The standard formulas are swept over a large range of n, random expressions over a smaller one,
+ * both include the overflow edges. The sweep is split into chunks evaluated on all cores.
+ */
+public class PluralEvaluatorDifferentialTest
+{
+    private static final int STANDARD_RANGE = 1000000;
+    private static final int RANDOM_RANGE = 20000;
+    private static final int RANDOM_EXPRESSIONS = 300;
+    private static final int RANDOM_SAMPLES = 100000;
+    private static final int CHUNK_SIZE = 250000;
+    private static final long SEED = 0x5EEDL;
+
+    private static final int[] EDGES = {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, Integer.MIN_VALUE + 2, -65536, 65536,
+        46340, -46340, 46341, -46341, Integer.MAX_VALUE / 10, Integer.MAX_VALUE - 2, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+    private static final String[] LITERALS = {"0", "1", "2", "3", "4", "5", "7", "10", "11", "19", "20", "100", "1000",
+        "65536", "46341", "2147483647"};
+    private static final String[] OPERATORS = {"||", "&&", "==", "!=", "<", "<=", ">", ">=", "+", "-", "*", "/", "%"};
+
+    /**
+     * The value standing for a failed evaluation
+     */
+    private static final long FAILED = Long.MIN_VALUE;
+
+    @Test
+    public void testStandardFormulas() throws Exception
+    {
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        for (StandardPluralRule rule : StandardPluralRule.values())
+        {
+            candidates.add(new Candidate(rule.getFormula(), rule.getPluralCount(), rule));
+        }
+        candidates.add(new Candidate("0", 1, PluralRules.ZERO));
+        candidates.add(new Candidate("n != 1", 2, PluralRules.NOT_ONE));
+        candidates.add(new Candidate("n > 1", 2, PluralRules.GREATER_THAN_ONE));
+        this.sweep(candidates, STANDARD_RANGE, 0);
+    }
+
+    @Test
+    public void testRandomExpressions() throws Exception
+    {
+        Random random = new Random(SEED);
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        for (int i = 0; i < RANDOM_EXPRESSIONS; i++)
+        {
+            candidates.add(new Candidate(generate(random, 5), 0, null));
+        }
+        this.sweep(candidates, RANDOM_RANGE, RANDOM_SAMPLES);
+    }
+
+    @Test
+    public void testReferenceEvaluator()
+    {
+        Assert.assertEquals(7, new Reference("1 + 2 * 3").evaluate(0));
+        Assert.assertEquals(-1, new Reference("-7 / 4").evaluate(0));
+        Assert.assertEquals(-3, new Reference("n % 4").evaluate(-7));
+        Assert.assertEquals(Integer.MIN_VALUE, new Reference("n + 1").evaluate(Integer.MAX_VALUE));
+        Assert.assertEquals(Integer.MIN_VALUE, new Reference("(-2147483648) / -1").evaluate(0));
+        Assert.assertEquals(1, new Reference("1 ? 1 : 1 / n").evaluate(0));
+        Assert.assertEquals(2, new Reference("0 ? 1 : n ? 3 : 2").evaluate(0));
+        Assert.assertEquals(FAILED, outcome(new Reference("n || 1 / n"), 0));
+    }
+
+    private void sweep(List<Candidate> candidates, final int range, final int samples) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try
+        {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (final Candidate candidate : candidates)
+            {
+                for (long start = -range; start <= range; start += CHUNK_SIZE)
+                {
+                    final int from = (int)start;
+                    final int to = (int)Math.min(range, start + CHUNK_SIZE - 1);
+                    results.add(executor.submit(new Callable<String>()
+                    {
+                        public String call()
+                        {
+                            for (int n = from; n <= to; n++)
+                            {
+                                String mismatch = candidate.compare(n);
+                                if (mismatch != null)
+                                {
+                                    return mismatch;
+                                }
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                results.add(executor.submit(new Callable<String>()
+                {
+                    public String call()
+                    {
+                        for (int n : EDGES)
+                        {
+                            String mismatch = candidate.compare(n);
+                            if (mismatch != null)
+                            {
+                                return mismatch;
+                            }
+                        }
+                        Random random = new Random(SEED ^ candidate.formula.hashCode());
+                        for (int i = 0; i < samples; i++)
+                        {
+                            String mismatch = candidate.compare(random.nextInt());
+                            if (mismatch != null)
+                            {
+                                return mismatch;
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            List<String> mismatches = new ArrayList<String>();
+            for (Future<String> result : results)
+            {
+                String mismatch = result.get();
+                if (mismatch != null)
+                {
+                    mismatches.add(mismatch);
+                }
+            }
+            Assert.assertTrue(mismatches.toString(), mismatches.isEmpty());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates a random valid expression, unary operators only apply to operands
+     */
+    private static String generate(Random random, int depth)
+    {
+        int choice = depth == 0 ? random.nextInt(3) : random.nextInt(10);
+        switch (choice)
+        {
+            case 0:
+                return "n";
+            case 1:
+                return LITERALS[random.nextInt(LITERALS.length)];
+            case 2:
+                return random.nextBoolean() ? "(-2147483648)" : "(-" + LITERALS[random.nextInt(LITERALS.length)] + ")";
+            case 3:
+                return "(" + generate(random, depth - 1) + ")";
+            case 4:
+                return (random.nextBoolean() ? "!" : "-") + "(" + generate(random, depth - 1) + ")";
+            case 5:
+                return generate(random, depth - 1) + space(random) + "?" + space(random) + generate(random, depth - 1)
+                    + space(random) + ":" + space(random) + generate(random, depth - 1);
+            default:
+                return generate(random, depth - 1) + space(random) + OPERATORS[random.nextInt(OPERATORS.length)]
+                    + space(random) + generate(random, depth - 1);
+        }
+    }
+
+    private static String space(Random random)
+    {
+        return random.nextBoolean() ? " " : "";
+    }
+
+    private static long outcome(PluralExpr expr, int n)
+    {
+        try
+        {
+            return expr.evaluate(n);
+        }
+        catch (ArithmeticException e)
+        {
+            return FAILED;
+        }
+    }
+
+    /**
+     * A formula with all paths evaluating it
+     */
+    private static final class Candidate
+    {
+        private final String formula;
+        private final Reference reference;
+        private final String[] names;
+        private final PluralExpr[] paths;
+
+        private Candidate(String formula, int pluralCount, PluralExpr handWritten)
+        {
+            this.formula = formula;
+            this.reference = new Reference(formula);
+            final Expr parsed = ExprParser.parse(formula);
+            final Expr optimized = ExprOptimizer.optimize(parsed);
+            List<String> names = new ArrayList<String>();
+            List<PluralExpr> paths = new ArrayList<PluralExpr>();
+            names.add("parsed");
+            paths.add(new PluralExpr()
+            {
+                public int evaluate(int n)
+                {
+                    return parsed.eval(n);
+                }
+            });
+            names.add("optimized");
+            paths.add(new PluralExpr()
+            {
+                public int evaluate(int n)
+                {
+                    return optimized.eval(n);
+                }
+            });
+            PluralExpr compiled = ExprCompiler.compile(parsed);
+            Assert.assertNotNull(formula, compiled);
+            names.add("compiled");
+            paths.add(compiled);
+            if (handWritten != null)
+            {
+                names.add("registered");
+                paths.add(PluralRules.get(formula));
+                names.add("hand written");
+                paths.add(handWritten);
+                names.add("lookup table");
+                paths.add(new LookupTableExpr(new ComplexExpr(formula), pluralCount, 1000));
+            }
+            this.names = names.toArray(new String[names.size()]);
+            this.paths = paths.toArray(new PluralExpr[paths.size()]);
+        }
+
+        /**
+         * Returns a description of the first path disagreeing with the reference for n or null
+         */
+        private String compare(int n)
+        {
+            long expected = outcome(this.reference, n);
+            for (int i = 0; i < this.paths.length; i++)
+            {
+                long actual = outcome(this.paths[i], n);
+                if (actual != expected)
+                {
+                    return "The " + this.names[i] + " path of " + this.formula + " returns " + describe(actual)
+                        + " instead of " + describe(expected) + " for n = " + n;
+                }
+            }
+            return null;
+        }
+
+        private static String describe(long outcome)
+        {
+            return outcome == FAILED ? "a failure" : String.valueOf(outcome);
+        }
+    }
+
+    /**
+     * A reference evaluator written along the C grammar, one method per precedence level.
+     * It shares no code with {@link ExprParser} and the nodes of the parsed tree.
+     */
+    private static final class Reference implements PluralExpr
+    {
+        private final String input;
+        private int position;
+        private final Node root;
+
+        private Reference(String input)
+        {
+            this.input = input;
+            this.root = this.conditional();
+            this.skip();
+            Assert.assertEquals(input, this.input.length(), this.position);
+        }
+
+        public int evaluate(int n)
+        {
+            return this.root.eval(n);
+        }
+
+        private Node conditional()
+        {
+            final Node condition = this.logicalOr();
+            if (!this.accept("?"))
+            {
+                return condition;
+            }
+            final Node whenTrue = this.conditional();
+            Assert.assertTrue(this.input, this.accept(":"));
+            final Node whenFalse = this.conditional();
+            return new Node()
+            {
+                int eval(int n)
+                {
+                    return condition.eval(n) != 0 ? whenTrue.eval(n) : whenFalse.eval(n);
+                }
+            };
+        }
+
+        private Node logicalOr()
+        {
+            Node lhs = this.logicalAnd();
+            while (this.accept("||"))
+            {
+                final Node left = lhs;
+                final Node right = this.logicalAnd();
+                lhs = new Node()
+                {
+                    int eval(int n)
+                    {
+                        return left.eval(n) != 0 || right.eval(n) != 0 ? 1 : 0;
+                    }
+                };
+            }
+            return lhs;
+        }
+
+        private Node logicalAnd()
+        {
+            Node lhs = this.equality();
+            while (this.accept("&&"))
+            {
+                final Node left = lhs;
+                final Node right = this.equality();
+                lhs = new Node()
+                {
+                    int eval(int n)
+                    {
+                        return left.eval(n) != 0 && right.eval(n) != 0 ? 1 : 0;
+                    }
+                };
+            }
+            return lhs;
+        }
+
+        private Node equality()
+        {
+            Node lhs = this.relational();
+            while (true)
+            {
+                String operator = this.acceptAny("==", "!=");
+                if (operator == null)
+                {
+                    return lhs;
+                }
+                lhs = binary(operator, lhs, this.relational());
+            }
+        }
+
+        private Node relational()
+        {
+            Node lhs = this.additive();
+            while (true)
+            {
+                String operator = this.acceptAny("<=", ">=", "<", ">");
+                if (operator == null)
+                {
+                    return lhs;
+                }
+                lhs = binary(operator, lhs, this.additive());
+            }
+        }
+
+        private Node additive()
+        {
+            Node lhs = this.multiplicative();
+            while (true)
+            {
+                String operator = this.acceptAny("+", "-");
+                if (operator == null)
+                {
+                    return lhs;
+                }
+                lhs = binary(operator, lhs, this.multiplicative());
+            }
+        }
+
+        private Node multiplicative()
+        {
+            Node lhs = this.unary();
+            while (true)
+            {
+                String operator = this.acceptAny("*", "/", "%");
+                if (operator == null)
+                {
+                    return lhs;
+                }
+                lhs = binary(operator, lhs, this.unary());
+            }
+        }
+
+        private Node unary()
+        {
+            this.skip();
+            if (this.accept("!"))
+            {
+                final Node operand = this.unary();
+                return new Node()
+                {
+                    int eval(int n)
+                    {
+                        return operand.eval(n) == 0 ? 1 : 0;
+                    }
+                };
+            }
+            if (this.accept("-"))
+            {
+                final Node operand = this.unary();
+                return new Node()
+                {
+                    int eval(int n)
+                    {
+                        return (int)-(long)operand.eval(n);
+                    }
+                };
+            }
+            if (this.accept("+"))
+            {
+                return this.unary();
+            }
+            if (this.accept("("))
+            {
+                Node inner = this.conditional();
+                Assert.assertTrue(this.input, this.accept(")"));
+                return inner;
+            }
+            if (this.accept("n"))
+            {
+                return new Node()
+                {
+                    int eval(int n)
+                    {
+                        return n;
+                    }
+                };
+            }
+            long value = 0;
+            int start = this.position;
+            while (this.position < this.input.length() && Character.isDigit(this.input.charAt(this.position)))
+            {
+                value = value * 10 + this.input.charAt(this.position++) - '0';
+            }
+            Assert.assertTrue(this.input, this.position > start);
+            // 2147483648 only appears negated, the wrapped value negates to itself
+            final int literal = (int)value;
+            return new Node()
+            {
+                int eval(int n)
+                {
+                    return literal;
+                }
+            };
+        }
+
+        private static Node binary(String operator, final Node lhs, final Node rhs)
+        {
+            final char first = operator.charAt(0);
+            final boolean twoChars = operator.length() == 2;
+            return new Node()
+            {
+                int eval(int n)
+                {
+                    long a = lhs.eval(n);
+                    long b = rhs.eval(n);
+                    switch (first)
+                    {
+                        case '=':
+                            return a == b ? 1 : 0;
+                        case '!':
+                            return a != b ? 1 : 0;
+                        case '<':
+                            return (twoChars ? a <= b : a < b) ? 1 : 0;
+                        case '>':
+                            return (twoChars ? a >= b : a > b) ? 1 : 0;
+                        case '+':
+                            return (int)(a + b);
+                        case '-':
+                            return (int)(a - b);
+                        case '*':
+                            return (int)(a * b);
+                        default:
+                            if (b == 0)
+                            {
+                                throw new ArithmeticException("Division by zero");
+                            }
+                            return (int)(first == '/' ? a / b : a % b);
+                    }
+                }
+            };
+        }
+
+        private boolean accept(String token)
+        {
+            this.skip();
+            if (this.input.startsWith(token, this.position))
+            {
+                this.position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private String acceptAny(String... tokens)
+        {
+            for (String token : tokens)
+            {
+                if (this.accept(token))
+                {
+                    return token;
+                }
+            }
+            return null;
+        }
+
+        private void skip()
+        {
+            while (this.position < this.input.length() && Character.isWhitespace(this.input.charAt(this.position)))
+            {
+                this.position++;
+            }
+        }
+    }
+
+    private abstract static class Node
+    {
+        abstract int eval(int n);
+    }
+}
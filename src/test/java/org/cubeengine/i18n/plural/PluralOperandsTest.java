@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PluralOperandsTest
+{
+    @Test
+    public void testOperands()
+    {
+        Assert.assertEquals(12, PluralOperands.integerPart(1250, 2));
+        Assert.assertEquals(50, PluralOperands.fraction(1250, 2));
+        Assert.assertEquals(-1, PluralOperands.integerPart(-105, 2));
+        Assert.assertEquals(5, PluralOperands.fraction(-105, 2));
+        Assert.assertEquals(9, PluralOperands.integerPart(Long.MAX_VALUE, PluralOperands.MAX_SCALE));
+    }
+
+    @Test
+    public void testReduceKeepsForms()
+    {
+        PluralExpr slavic = StandardPluralRule.SLAVIC;
+        ComplexExpr complex = new ComplexExpr(StandardPluralRule.SLAVIC.getFormula());
+        long[] counts = {0, 1, 21, 111, 4294967297L, 10000000001L, 10000000022L, 10000000011L, Long.MAX_VALUE, -4294967297L};
+        for (long n : counts)
+        {
+            Assert.assertEquals(slavic.evaluate(Math.abs(n % 100) + 100), slavic.evaluate(n));
+            Assert.assertEquals(slavic.evaluate(n), complex.evaluate(n));
+        }
+        Assert.assertEquals(1, PluralRules.NOT_ONE.evaluate(4294967297L));
+        Assert.assertEquals(1, PluralRules.GREATER_THAN_ONE.evaluate(4294967297L));
+    }
+
+    @Test
+    public void testDecimals()
+    {
+        Assert.assertEquals(0, PluralRules.NOT_ONE.evaluate(1, 0));
+        Assert.assertEquals(1, PluralRules.NOT_ONE.evaluate(10, 1));
+        Assert.assertEquals(1, PluralRules.NOT_ONE.evaluate(15, 1));
+        // gettext rules choose the form of the integer part
+        Assert.assertEquals(0, PluralRules.GREATER_THAN_ONE.evaluate(15, 1));
+        Assert.assertEquals(StandardPluralRule.SLAVIC.evaluate(21), StandardPluralRule.SLAVIC.evaluate(2150, 2));
+        Assert.assertEquals(1, new LookupTableExpr(PluralRules.NOT_ONE, 2, 100).evaluate(10, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeScale()
+    {
+        PluralRules.NOT_ONE.evaluate(1, -1);
+    }
+}
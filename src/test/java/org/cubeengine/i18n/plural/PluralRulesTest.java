@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.plural;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PluralRulesTest
+{
+    @Test
+    public void testStandardRulesMatchFormulas()
+    {
+        for (StandardPluralRule rule : StandardPluralRule.values())
+        {
+            ComplexExpr parsed = new ComplexExpr(rule.getFormula(), false, false);
+            for (int n = -1000; n <= 1000; n++)
+            {
+                Assert.assertEquals(rule + " for " + n, parsed.evaluate(n), rule.evaluate(n));
+                Assert.assertTrue(rule + " for " + n, rule.evaluate(n) < rule.getPluralCount());
+            }
+            Assert.assertEquals(rule.name(), parsed.evaluate(Integer.MIN_VALUE), rule.evaluate(Integer.MIN_VALUE));
+            Assert.assertEquals(rule.name(), parsed.evaluate(Integer.MAX_VALUE), rule.evaluate(Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testRegistry()
+    {
+        Assert.assertSame(PluralRules.NOT_ONE, PluralRules.get("(n != 1);"));
+        Assert.assertSame(PluralRules.GREATER_THAN_ONE, PluralRules.get("n>1"));
+        Assert.assertSame(StandardPluralRule.SLAVIC,
+                          PluralRules.get("(n%10==1 && n%100!=11) ? 0 : ((n%10>=2 && n%10<=4 && (n%100<10 || n%100>=20)) ? 1 : 2)"));
+        Assert.assertTrue(PluralRules.isStandard("n==1 ? 0 : n==2 ? 1 : 2"));
+
+        PluralExpr unknown = PluralRules.get("n%7 == 3 ? 1 : 0");
+        Assert.assertTrue(unknown instanceof ComplexExpr);
+        Assert.assertSame(unknown, PluralRules.get("(n % 7 == 3) ? 1 : 0"));
+        Assert.assertFalse(PluralRules.isStandard("n%7 == 3 ? 1 : 0"));
+    }
+
+    @Test
+    public void testParsedFormulaFollowsRegisteredRule()
+    {
+        ComplexExpr parsed = new ComplexExpr("n != 1");
+        Assert.assertEquals(PluralRules.NOT_ONE.evaluate(15, 1), parsed.evaluate(15, 1));
+        Assert.assertEquals(1, parsed.evaluate(15, 1));
+        Assert.assertEquals(0, parsed.evaluate(1, 0));
+        Assert.assertTrue(PluralRules.isSameRule(parsed, PluralRules.NOT_ONE));
+        Assert.assertTrue(PluralRules.isSameRule(PluralRules.NOT_ONE, new ComplexExpr("(n!=1)")));
+        Assert.assertEquals(parsed, new ComplexExpr("(n != 1)"));
+        Assert.assertFalse(PluralRules.isSameRule(parsed, PluralRules.GREATER_THAN_ONE));
+
+        ComplexExpr custom = new ComplexExpr("n%7 == 3 ? 1 : 0");
+        Assert.assertEquals(custom.evaluate(3), custom.evaluate(35, 1));
+        Assert.assertTrue(PluralRules.isSameRule(custom, new ComplexExpr("(n % 7 == 3) ? 1 : 0")));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.translation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.function.ToLongFunction;
+
+public class FingerprintTranslationContainerTest
+{
+    private static TranslationContainer createContainer()
+    {
+        TranslationContainer container = new TranslationContainer();
+        for (int i = 0; i < 1000; i++)
+        {
+            container.putSingular("Message " + i, "Nachricht " + i);
+        }
+        container.putSingular("apple", "Apfel");
+        container.putPlural("apples", "ein Apfel", 0, 2);
+        container.putPlural("apples", "viele Äpfel", 1, 2);
+        container.putPlural("pears", "Birnen", 1, 2);
+        return container;
+    }
+
+    @Test
+    public void testLookup()
+    {
+        TranslationContainer container = createContainer();
+        FingerprintTranslationContainer fingerprinted = new FingerprintTranslationContainer(container);
+        Assert.assertSame(fingerprinted, fingerprinted.fingerprint());
+        Assert.assertSame(fingerprinted, fingerprinted.freeze());
+        Assert.assertEquals(0, fingerprinted.getCollisionCount());
+        Assert.assertEquals(container.size(), fingerprinted.size());
+        Assert.assertEquals("Nachricht 999", fingerprinted.getSingular("Message 999"));
+        Assert.assertNull(fingerprinted.getSingular("Message 1000"));
+        Assert.assertEquals("Apfel", fingerprinted.getSingular("apple"));
+        Assert.assertNull(fingerprinted.getSingular("apples"));
+        Assert.assertEquals("viele Äpfel", fingerprinted.getPlural("apples", 1));
+        Assert.assertNull(fingerprinted.getPlural("apples", 2));
+        Assert.assertNull(fingerprinted.getPlural("pears", 0));
+        Assert.assertEquals("Birnen", fingerprinted.getPlural("pears", 1));
+        Assert.assertNull(fingerprinted.getPlural("apple", 0));
+        Assert.assertEquals(0, new TranslationContainer().fingerprint().size());
+
+        // the fingerprints replace the keys and hashes of a frozen container
+        FrozenTranslationContainer frozen = new FrozenTranslationContainer(container);
+        Assert.assertTrue(fingerprinted.getTableSize() <= frozen.getTableSize());
+    }
+
+    @Test
+    public void testCollisions()
+    {
+        TranslationContainer container = createContainer();
+        // messages of the length 5 share their fingerprint
+        FingerprintTranslationContainer fingerprinted = new FingerprintTranslationContainer(container.getSingularMessages(), container.getPluralMessages(), new ToLongFunction<String>()
+        {
+            public long applyAsLong(String message)
+            {
+                return message.length() == 5 ? 5 : message.hashCode();
+            }
+        });
+        // "apple" and "pears" collide and keep their messages
+        Assert.assertEquals(2, fingerprinted.getCollisionCount());
+        Assert.assertEquals(container.size(), fingerprinted.size());
+        Assert.assertEquals("Apfel", fingerprinted.getSingular("apple"));
+        Assert.assertNull(fingerprinted.getSingular("pears"));
+        Assert.assertEquals("Birnen", fingerprinted.getPlural("pears", 1));
+        Assert.assertNull(fingerprinted.getSingular("grape"));
+        Assert.assertEquals("viele Äpfel", fingerprinted.getPlural("apples", 1));
+        Assert.assertEquals("Nachricht 42", fingerprinted.getSingular("Message 42"));
+
+        // only the colliding translations keep their messages
+        Assert.assertFalse(fingerprinted.isEnumerable());
+        Assert.assertEquals(Collections.singletonMap("apple", "Apfel"), fingerprinted.getSingularMessages());
+        Assert.assertEquals(Collections.singleton("pears"), fingerprinted.getPluralMessages().keySet());
+        Assert.assertTrue(new FingerprintTranslationContainer(container).getSingularMessages().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable()
+    {
+        new TranslationContainer().fingerprint().putSingular("Hello World", "Hallo Welt");
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.translation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrozenTranslationContainerTest
+{
+    @Test
+    public void testLookup()
+    {
+        TranslationContainer container = new TranslationContainer();
+        for (int i = 0; i < 1000; i++)
+        {
+            container.putSingular("Message " + i, "Nachricht " + i);
+        }
+        container.putSingular("apple", "Apfel");
+        container.putPlural("apples", "ein Apfel", 0, 2);
+        container.putPlural("apples", "viele Äpfel", 1, 2);
+        container.putPlural("pears", "Birnen", 1, 2);
+
+        TranslationContainer frozen = container.freeze();
+        Assert.assertSame(frozen, frozen.freeze());
+        Assert.assertEquals(container.size(), frozen.size());
+        Assert.assertEquals(container.getSingularMessages(), frozen.getSingularMessages());
+        Assert.assertEquals("Nachricht 999", frozen.getSingular("Message 999"));
+        Assert.assertNull(frozen.getSingular("Message 1000"));
+        Assert.assertEquals("Apfel", frozen.getSingular("apple"));
+        Assert.assertNull(frozen.getSingular("apples"));
+        Assert.assertEquals("viele Äpfel", frozen.getPlural("apples", 1));
+        Assert.assertNull(frozen.getPlural("apples", 2));
+        Assert.assertNull(frozen.getPlural("pears", 0));
+        Assert.assertEquals("Birnen", frozen.getPlural("pears", 1));
+        Assert.assertNull(frozen.getPlural("apple", 0));
+        Assert.assertNull(frozen.getSingular(null));
+        Assert.assertNull(frozen.getPlural(null, 0));
+        Assert.assertNull(container.fingerprint().getSingular(null));
+        Assert.assertArrayEquals(new String[]{"ein Apfel", "viele Äpfel"}, frozen.getPluralMessages().get("apples"));
+        Assert.assertEquals(0, new TranslationContainer().freeze().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable()
+    {
+        new TranslationContainer().freeze().putSingular("Hello World", "Hallo Welt");
+    }
+}
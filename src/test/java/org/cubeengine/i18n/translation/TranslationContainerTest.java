@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ * Copyright © 2013 Cube Island
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.cubeengine.i18n.translation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TranslationContainerTest
+{
+    @Test
+    public void testDifference()
+    {
+        TranslationContainer base = new TranslationContainer();
+        base.putSingular("Hello World", "Hallo Welt");
+        base.putSingular("Goodbye", "Auf Wiedersehen");
+        base.putPlural("apples", "ein Apfel", 0, 2);
+        base.putPlural("apples", "viele Äpfel", 1, 2);
+        base.putPlural("pears", "eine Birne", 0, 2);
+        base.putPlural("pears", "Birnen", 1, 2);
+
+        TranslationContainer variant = new TranslationContainer();
+        variant.putSingular("Hello World", "Hallo Welt");
+        variant.putSingular("Goodbye", "Servus");
+        variant.putSingular("Good morning", "Guten Morgen");
+        variant.putPlural("apples", "ein Apfel", 0, 2);
+        variant.putPlural("apples", "viele Äpfel", 1, 2);
+        variant.putPlural("pears", "eine Birne", 0, 2);
+        variant.putPlural("pears", "Birnbäume", 1, 2);
+        // a missing form is answered by the base anyway
+        variant.putPlural("cherries", null, 0, 2);
+
+        TranslationContainer difference = variant.difference(base.freeze(), true);
+        Assert.assertEquals(3, difference.size());
+        Assert.assertNull(difference.getSingular("Hello World"));
+        Assert.assertEquals("Servus", difference.getSingular("Goodbye"));
+        Assert.assertEquals("Guten Morgen", difference.getSingular("Good morning"));
+        Assert.assertNull(difference.getPlural("apples", 1));
+        Assert.assertEquals("Birnbäume", difference.getPlural("pears", 1));
+
+        // a base with another plural rule chooses other forms, so every plural is kept
+        Assert.assertEquals(5, variant.difference(base, false).size());
+    }
+
+    @Test
+    public void testPluralOutOfRange()
+    {
+        TranslationContainer container = new TranslationContainer();
+        container.putPlural("apples", "Äpfel", 1, 2);
+        Assert.assertNull(container.getPlural("apples", 2));
+        Assert.assertNull(container.getPlural("apples", -1));
+    }
+}